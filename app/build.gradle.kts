@@ -29,6 +29,10 @@ android {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
     }
+    packaging {
+        // smbj が依存する BouncyCastle の重複するマニフェスト
+        resources.excludes += "META-INF/versions/9/OSGI-INF/MANIFEST.MF"
+    }
 }
 
 dependencies {
@@ -43,4 +47,5 @@ dependencies {
     implementation("com.google.zxing:core:3.5.3")
     implementation("com.journeyapps:zxing-android-embedded:4.3.0")
     implementation("jcifs:jcifs:1.3.17")
+    implementation("com.hierynomus:smbj:0.13.0") // SMB2/3（TRANSPORT_SMB2）
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+/***********************************************************************************
+ * <目的>
+ * 読み取った文字列の種類（Code39の端末No／Code128のバーコード）を判定し、検証するクラス。
+ *
+ * <説明>
+ * - 文字ごとの属性を参照表（ASCII 128文字分）で引くため、正規表現や部分文字列を使用せず、
+ *   CharSequence をコピーせずに1回の走査で判定する。オブジェクトを生成しない。
+ * - Code39: 先頭（開始文字"*"を除く）が"T"または"P"の場合に端末Noとして扱う。
+ *   前後の"*"（開始・終了文字）は除いて検証する。使用できる文字は A-Z 0-9 - . 空白 $ / + % の43文字。
+ *   チェックデジットを有効にした場合は、最後の1文字を mod 43 のチェックデジットとして検証する。
+ * - Code128: ASCII（0～127）の文字で構成される。使用するコードセット（A/B/C）を指定した場合は、
+ *   指定したコードセットだけで表せる文字列かどうかを検証する（Cのみの場合は偶数桁の数字）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+// バーコード検証クラス
+public final class BarcodeValidator {
+
+    // 判定結果
+    public enum Symbology {
+        CODE39, // 有効なCode39（端末No）
+        CODE128, // 有効なCode128（バーコード）
+        INVALID // 無効な形式
+    }
+
+    public static final int SET_A = 1; // Code128 コードセットA（制御文字・数字・英大文字・記号、0～95）
+    public static final int SET_B = 2; // Code128 コードセットB（数字・英大小文字・記号、32～127）
+    public static final int SET_C = 4; // Code128 コードセットC（2桁ずつの数字）
+    public static final int SET_ALL = SET_A | SET_B | SET_C;
+
+    // 文字の属性（参照表のビット）
+    private static final byte F_A = SET_A; // コードセットAで表せる
+    private static final byte F_B = SET_B; // コードセットBで表せる
+    private static final byte F_DIGIT = SET_C; // 数字（コードセットCで表せる）
+    private static final byte F_39 = 8; // Code39で使用できる
+
+    private static final byte[] FLAGS = new byte[128]; // 文字 → 属性
+    private static final byte[] VALUE_39 = new byte[128]; // 文字 → Code39の値（0～42）
+    private static final char[] CHARS_39 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%".toCharArray();
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            if (c <= 95) FLAGS[c] |= F_A;
+            if (c >= 32) FLAGS[c] |= F_B;
+            if (c >= '0' && c <= '9') FLAGS[c] |= F_DIGIT;
+        }
+        for (int v = 0; v < CHARS_39.length; v++) {
+            FLAGS[CHARS_39[v]] |= F_39;
+            VALUE_39[CHARS_39[v]] = (byte) v;
+        }
+    }
+
+    private BarcodeValidator() {
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 文字列の種類を判定し、その種類の形式として有効かどうかを検証する
+     *
+     * <引数>
+     * s: 読み取った文字列
+     * code39Check: Code39の最後の1文字をチェックデジットとして検証する場合はtrue
+     * code128Sets: Code128で使用できるコードセット（SET_A | SET_B | SET_C の組み合わせ）
+     *
+     * <戻り値>
+     * 有効なCode39の場合は CODE39、有効なCode128の場合は CODE128、それ以外は INVALID
+     ***********************************************************************************/
+    public static Symbology classify(CharSequence s, boolean code39Check, int code128Sets) {
+        int len = s.length();
+        if (len == 0) return Symbology.INVALID;
+
+        // 先頭（開始文字"*"を除く）が"T"または"P"の場合はCode39
+        boolean star = s.charAt(0) == '*';
+        if (star && len == 1) return isCode128(s, code128Sets) ? Symbology.CODE128 : Symbology.INVALID;
+        char first = s.charAt(star ? 1 : 0);
+        if (first == 'T' || first == 'P') {
+            return isCode39(s, code39Check) ? Symbology.CODE39 : Symbology.INVALID;
+        }
+        return isCode128(s, code128Sets) ? Symbology.CODE128 : Symbology.INVALID;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * Code39形式の文字列かどうかを検証する。前後の"*"（開始・終了文字）は除いて検証する
+     *
+     * <引数>
+     * s: 検証する文字列
+     * checkDigit: 最後の1文字を mod 43 のチェックデジットとして検証する場合はtrue
+     *
+     * <戻り値>
+     * 有効なCode39形式の場合はtrue
+     ***********************************************************************************/
+    public static boolean isCode39(CharSequence s, boolean checkDigit) {
+        int start = 0;
+        int end = s.length();
+        if (end >= 2 && s.charAt(0) == '*' && s.charAt(end - 1) == '*') {
+            start = 1;
+            end--;
+        }
+        int dataEnd = checkDigit ? end - 1 : end;
+        if (dataEnd <= start) return false;
+
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 128 || (FLAGS[c] & F_39) == 0) return false;
+            if (i < dataEnd) sum += VALUE_39[c];
+        }
+        return !checkDigit || VALUE_39[s.charAt(dataEnd)] == sum % 43;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * Code128形式の文字列かどうかを検証する
+     *
+     * <引数>
+     * s: 検証する文字列
+     * sets: 使用できるコードセット（SET_A | SET_B | SET_C の組み合わせ）
+     *
+     * <戻り値>
+     * 指定したコードセットで表せる場合はtrue
+     ***********************************************************************************/
+    public static boolean isCode128(CharSequence s, int sets) {
+        int len = s.length();
+        if (len == 0) return false;
+
+        int mask = sets & SET_ALL;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 128 || (FLAGS[c] & mask) == 0) return false;
+        }
+        // コードセットCだけの場合は、数字を2桁ずつ表すため偶数桁でなければならない
+        return mask != SET_C || (len & 1) == 0;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * Code39のチェックデジットを計算する
+     *
+     * <引数>
+     * data: チェックデジットを除くデータ（開始・終了文字を含まない）
+     *
+     * <戻り値>
+     * チェックデジット。使用できない文字を含む場合は 0
+     ***********************************************************************************/
+    public static char code39CheckDigit(CharSequence data) {
+        int sum = 0;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c >= 128 || (FLAGS[c] & F_39) == 0) return 0;
+            sum += VALUE_39[c];
+        }
+        return CHARS_39[sum % 43];
+    }
+}
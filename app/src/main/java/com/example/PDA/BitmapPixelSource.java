@@ -0,0 +1,39 @@
+/***********************************************************************************
+ * <目的>
+ * Android の Bitmap から画素を読み出す PixelSource。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import android.graphics.Bitmap;
+
+// Bitmap画素読み出しクラス
+public class BitmapPixelSource implements PixelSource {
+
+    private final Bitmap bitmap;
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * bitmap: 読み出す画像
+     ***********************************************************************************/
+    public BitmapPixelSource(Bitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    @Override
+    public int getWidth() {
+        return bitmap.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return bitmap.getHeight();
+    }
+
+    @Override
+    public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        bitmap.getPixels(pixels, offset, stride, x, y, width, height);
+    }
+}
@@ -0,0 +1,302 @@
+/***********************************************************************************
+ * <目的>
+ * 複数の画像（ラベルの写真）をまとめて取り込み、並列にバーコードを読み取るクラス。
+ *
+ * <説明>
+ * - 画像は上限付きのキューを経由してワーカースレッドに渡す。キューが満杯の場合、submitAll() は空きが
+ *   できるまで待つ（数百枚を選択しても、読み込み中の画像はスレッド数＋キューの長さ分に抑えられる）。
+ * - ワーカーは画像のデータを1回だけ読み込み、読み込みながら内容のハッシュ（SHA-256）を計算する。
+ *   ContentHashCache に記録済みの画像は読み取りを行わずに DUPLICATE とする。
+ * - 読み取りは DecodeEngine で行う。読み取れた画像のハッシュは、読み取った内容が送信を受け付けられた時点で
+ *   呼び出し側が markImported() で記録する。受け付けられなかった場合は release() で解放し、再度取り込めるようにする
+ *   （読み取れなかった画像も、読み取りの方法を見直した後に再度取り込めるよう記録しない）。
+ * - 記録または解放されるまでの間は、同じ内容の画像を処理中として DUPLICATE とする。
+ * - 1枚ごとの結果と進捗（処理枚数、枚/秒）をリスナーに通知する。リスナーはワーカースレッドから
+ *   呼び出される。進捗は progress() でも取得できる。
+ *
+ * @param <K> 画像を指すもの（Android では Uri）
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 画像一括取り込みクラス
+public class BulkImporter<K> {
+
+    /***********************************************************************************
+     * <目的>
+     * 画像のデータを開く（Android では ContentResolver.openInputStream）
+     ***********************************************************************************/
+    public interface Opener<K> {
+        InputStream open(K item) throws IOException;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 画像のデータ（JPEG など）を輝度に変換する（Android では BitmapFactory + StripLuminanceSource）
+     ***********************************************************************************/
+    public interface ImageDecoder {
+        LuminanceSource decode(byte[] data) throws IOException;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 1枚ごとの結果を受け取るリスナー（ワーカースレッドから呼び出される）
+     ***********************************************************************************/
+    public interface Listener<K> {
+        /*
+         * item: 画像
+         * outcome: 結果
+         * text: 読み取った内容（DECODED 以外はnull）
+         * hash: 画像の内容のハッシュ（DECODED 以外はnull。markImported() または release() に渡す）
+         * progress: この画像までの進捗
+         */
+        void onImage(K item, Outcome outcome, String text, byte[] hash, Progress progress);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 1枚ごとの結果
+     ***********************************************************************************/
+    public enum Outcome {
+        DECODED, // 読み取れた
+        DUPLICATE, // 取り込み済み・処理中（読み取りを行わない）
+        NOT_FOUND, // バーコードが見つからない
+        ERROR // 画像を読み込めない
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 進捗
+     ***********************************************************************************/
+    public static final class Progress {
+        public final int submitted; // 受け付けた枚数
+        public final int done; // 処理済みの枚数
+        public final int decoded; // 読み取れた枚数
+        public final int duplicates; // 取り込み済みの枚数
+        public final int failed; // 読み取れなかった・読み込めなかった枚数
+        public final double imagesPerSecond; // 最初の受け付けからの処理速度（枚/秒）
+
+        Progress(int submitted, int done, int decoded, int duplicates, int failed, long elapsedNanos) {
+            this.submitted = submitted;
+            this.done = done;
+            this.decoded = decoded;
+            this.duplicates = duplicates;
+            this.failed = failed;
+            this.imagesPerSecond = elapsedNanos <= 0 ? 0 : done * 1e9 / elapsedNanos;
+        }
+
+        // 全て処理済みかどうか
+        public boolean isFinished() {
+            return done == submitted;
+        }
+    }
+
+    private final Opener<K> opener;
+    private final ImageDecoder imageDecoder;
+    private final DecodeEngine engine;
+    private final ContentHashCache cache;
+    private final Listener<K> listener;
+    private final ArrayBlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+    private final Set<ByteBuffer> claimed = new HashSet<>(); // 読み取れたが記録・解放されていないハッシュ
+
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger decoded = new AtomicInteger();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong startNanos = new AtomicLong(); // 最初の受け付けの時刻（0: 未受け付け）
+    private volatile long lastNanos; // 最後に処理を終えた時刻
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ。ワーカースレッドを起動する
+     *
+     * <引数>
+     * threads: ワーカースレッドの数
+     * capacity: 処理待ちのキューの長さ
+     * opener: 画像のデータを開く処理
+     * imageDecoder: 画像のデータを輝度に変換する処理
+     * engine: バーコードの読み取り
+     * cache: 取り込み済みの画像のハッシュ
+     * listener: 結果の通知先
+     ***********************************************************************************/
+    public BulkImporter(int threads, int capacity, Opener<K> opener, ImageDecoder imageDecoder,
+                        DecodeEngine engine, ContentHashCache cache, Listener<K> listener) {
+        this.opener = opener;
+        this.imageDecoder = imageDecoder;
+        this.engine = engine;
+        this.cache = cache;
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread t = new Thread(r, "bulk-import");
+            t.setDaemon(true);
+            return t;
+        });
+        // スレッドを起動しておき、キューへの追加だけで処理されるようにする
+        executor.prestartAllCoreThreads();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 画像をまとめて取り込む。処理待ちのキューが満杯の場合は空きができるまで待つ（UIスレッドから呼び出さないこと）。
+     * 全ての画像を先に受け付けた枚数に数えるため、ワーカーが受け付けに追いついても途中で処理済みとはならない。
+     *
+     * <引数>
+     * items: 画像
+     *
+     * <例外>
+     * InterruptedException: 待機中に割り込まれた場合（残りの画像は受け付けない）
+     ***********************************************************************************/
+    public void submitAll(List<K> items) throws InterruptedException {
+        startNanos.compareAndSet(0, System.nanoTime());
+        submitted.addAndGet(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            K item = items.get(i);
+            try {
+                queue.put(() -> process(item));
+            } catch (InterruptedException e) {
+                submitted.addAndGet(-(items.size() - i));
+                throw e;
+            }
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 現在の進捗を取得する
+     ***********************************************************************************/
+    public Progress progress() {
+        return snapshot(done.get());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取った内容が送信を受け付けられた画像を、取り込み済みとして記録する
+     *
+     * <引数>
+     * hash: リスナーに渡された画像のハッシュ
+     *
+     * <例外>
+     * IOException: ファイルへの書き込みに失敗した場合（処理中のまま残し、この実行中は再度取り込まない）
+     ***********************************************************************************/
+    public void markImported(byte[] hash) throws IOException {
+        cache.add(hash);
+        synchronized (claimed) {
+            claimed.remove(ByteBuffer.wrap(hash));
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取った内容を送信しなかった画像を解放し、再度取り込めるようにする
+     *
+     * <引数>
+     * hash: リスナーに渡された画像のハッシュ
+     ***********************************************************************************/
+    public void release(byte[] hash) {
+        synchronized (claimed) {
+            claimed.remove(ByteBuffer.wrap(hash));
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * ワーカースレッドを停止する（処理待ちの画像は破棄する）
+     ***********************************************************************************/
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 1枚の画像を処理する
+    private void process(K item) {
+        Outcome outcome;
+        String text = null;
+        byte[] hash = null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] data = read(item, digest);
+            byte[] digested = digest.digest();
+
+            if (cache.contains(digested)) {
+                outcome = Outcome.DUPLICATE;
+            } else {
+                Result result = engine.decode(imageDecoder.decode(data));
+                // 同じ内容の画像を別のワーカーが先に読み取った場合（記録・解放前）も重複とする
+                if (claim(digested)) {
+                    outcome = Outcome.DECODED;
+                    text = result.getText();
+                    hash = digested;
+                } else {
+                    outcome = Outcome.DUPLICATE;
+                }
+            }
+        } catch (NotFoundException e) {
+            outcome = Outcome.NOT_FOUND;
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            outcome = Outcome.ERROR;
+        }
+
+        switch (outcome) {
+            case DECODED:
+                decoded.incrementAndGet();
+                break;
+            case DUPLICATE:
+                duplicates.incrementAndGet();
+                break;
+            default:
+                failed.incrementAndGet();
+                break;
+        }
+        lastNanos = System.nanoTime();
+        listener.onImage(item, outcome, text, hash, snapshot(done.incrementAndGet()));
+    }
+
+    // 読み取れた画像のハッシュを処理中とする（取り込み済み・処理中の場合はfalse）
+    private boolean claim(byte[] hash) {
+        synchronized (claimed) {
+            return !cache.contains(hash) && claimed.add(ByteBuffer.wrap(hash));
+        }
+    }
+
+    // 画像のデータを読み込み、同時にハッシュを計算する
+    private byte[] read(K item, MessageDigest digest) throws IOException {
+        try (InputStream in = opener.open(item)) {
+            if (in == null) throw new IOException("cannot open " + item);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(32, in.available()));
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private Progress snapshot(int doneCount) {
+        long start = startNanos.get();
+        long end = doneCount == submitted.get() ? lastNanos : System.nanoTime();
+        return new Progress(submitted.get(), doneCount, decoded.get(), duplicates.get(), failed.get(),
+                start == 0 ? 0 : end - start);
+    }
+}
@@ -0,0 +1,96 @@
+/***********************************************************************************
+ * <目的>
+ * バックグラウンドスレッドからの表示更新をまとめ、UIスレッドへの投稿を最小限にするクラス。
+ *
+ * <説明>
+ * update() を何回呼び出しても、投稿済みの更新が実行されるまでは新たに投稿せず、
+ * 実行時にキーごとの最新の値を反映する。値が変わるたびに投稿は最大1回となる。
+ * キーが異なる値はまとめないため、ある送信の最終状態が別の送信の途中の状態で上書きされることはない。
+ * 反映の順序は、キーごとに最後に更新された順とする。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+// 表示更新の集約クラス
+public class CoalescingUpdater<T> {
+
+    /***********************************************************************************
+     * <目的>
+     * 値を表示に反映する処理（UIスレッドで呼び出される）
+     ***********************************************************************************/
+    public interface Target<T> {
+        void apply(T value);
+    }
+
+    private final Executor executor; // UIスレッドへの投稿（Handler::post など）
+    private final Function<? super T, ?> key; // まとめる単位のキー
+    private final Target<T> target;
+    private final Map<Object, T> latest = new LinkedHashMap<>(); // キーごとの未反映の値（最後に更新された順）
+    private boolean posted; // 未実行の投稿があるかどうか（latest で同期する）
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ（全ての値を1つにまとめる）
+     *
+     * <引数>
+     * executor: UIスレッドへの投稿（Handler::post など）
+     * target: 値を表示に反映する処理
+     ***********************************************************************************/
+    public CoalescingUpdater(Executor executor, Target<T> target) {
+        this(executor, value -> CoalescingUpdater.class, target);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * executor: UIスレッドへの投稿（Handler::post など）
+     * key: まとめる単位のキー（キーが等しい値は最新の値だけを反映する）
+     * target: 値を表示に反映する処理
+     ***********************************************************************************/
+    public CoalescingUpdater(Executor executor, Function<? super T, ?> key, Target<T> target) {
+        this.executor = executor;
+        this.key = key;
+        this.target = target;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 表示する値を更新する。未実行の投稿がなければUIスレッドに投稿する
+     *
+     * <引数>
+     * value: 表示する値（nullは不可）
+     ***********************************************************************************/
+    public void update(T value) {
+        Object k = key.apply(value);
+        synchronized (latest) {
+            latest.remove(k); // 最後に更新された順にする
+            latest.put(k, value);
+            if (posted) return;
+            posted = true;
+        }
+        executor.execute(this::flush);
+    }
+
+    // キーごとの最新の値を反映する
+    private void flush() {
+        List<T> values;
+        synchronized (latest) {
+            posted = false;
+            values = new ArrayList<>(latest.values());
+            latest.clear();
+        }
+        for (T value : values) {
+            target.apply(value);
+        }
+    }
+}
@@ -6,7 +6,9 @@
  * - エラーメッセージ定数
  * - サーバーの共有フォルダのパス
  * - PDAとSOPサーバーの要求＆応答ファイル保管場所
+ * - SMB認証情報および通信方式
  * - 待機時間（秒）
+ * - バッチ送信の設定
  ***********************************************************************************/
 package com.example.PDA;
 
@@ -30,6 +32,8 @@ public class Constants {
     public static final String PDAERR14 = "該当端末なし";
     public static final String PDAERR15 = "SOP接続失敗";
     public static final String PDAERR16 = "同file存在";
+    public static final String PDAERR17 = "送信待ち";
+    public static final String PDAERR18 = "ﾊﾞｯﾁ送信のみ";
 
 
     // SOPサーバーの共有フォルダへのパス（TODO: クライアントのサーバーIPを更新してください）
@@ -38,6 +42,93 @@ public class Constants {
     // PDAおよびSOPサーバーの要求と応答ファイルの保存場所（特定のフォルダ構造に更新してください）
     public static final String RESPONSEFOLDER = "interface/bcr/";
 
+    // SMB認証情報（TODO: ユーザー名、ドメイン、パスワードは環境に合わせて変更する）
+    public static final String SMBDOMAIN = "INYKGW";
+    public static final String SMBUSER = "SRVYF03";
+    public static final String SMBPASSWORD = "Srvyf03";
+
+    // 通信方式（TRANSPORT_SMB: SMB共有フォルダー（jcifs、SMB1）, TRANSPORT_SMB2: SMB共有フォルダー（smbj、SMB2/3）,
+    //          TRANSPORT_LOCAL: ローカルディレクトリ）
+    public static final String TRANSPORT_SMB = "smb";
+    public static final String TRANSPORT_SMB2 = "smb2";
+    public static final String TRANSPORT_LOCAL = "local";
+    public static final String TRANSPORT = TRANSPORT_SMB;
+
+    // ローカル通信方式で使用するルートディレクトリ（この配下のRESPONSEFOLDERを使用する）
+    public static final String LOCALSOPFOLDER = "/sdcard/PDA/";
+
     // 待機時間（秒）
     public static final int WAITTIME = 60;
+
+    // バッチ送信モード（true: 複数件の端末No／バーコードを1つの要求ファイルにまとめて送信する）
+    public static final boolean BATCHMODE = false;
+
+    // バッチ送信の件数の閾値
+    public static final int BATCHSIZE = 20;
+
+    // バッチ送信の最大待ち時間（秒）
+    public static final int BATCHAGE = 30;
+
+    // 同時に応答待ちにできる要求の数（1: 応答を受け取るまで次の要求を送信しない, 2以上: パイプライン送信）
+    public static final int PIPELINEWINDOW = 1;
+
+    // オフライン送信待ちキュー（true: 共有フォルダーに接続できない場合、スキャンをローカルに保存して後で再送する）
+    public static final boolean OFFLINEQUEUE = true;
+
+    // Code39（端末No）の最後の1文字を mod 43 のチェックデジットとして検証するかどうか
+    public static final boolean CODE39CHECKDIGIT = false;
+
+    // Code128（バーコード）で使用できるコードセット（BarcodeValidator.SET_A／SET_B／SET_C の組み合わせ）
+    public static final int CODE128SETS = BarcodeValidator.SET_ALL;
+
+    // GS1-128 ラベルを項目に分解して検証し、"(AI)データ" の形式で送信するかどうか
+    public static final boolean GS1SPLIT = false;
+
+    // スキャナーが末尾に付加する終端文字（受け取った時点でスキャンの終わりと判定する）
+    public static final String SCANSUFFIX = "\n\r\t";
+
+    // スキャナーの連続入力とみなす文字の最大間隔（ミリ秒）
+    public static final long SCANBURSTGAP = 30;
+
+    // 手入力の終わりとみなす無入力時間（ミリ秒）
+    public static final long SCANMANUALDELAY = 500;
+
+    // 1枚の画像に写った複数のバーコードを全て読み取るかどうか（画像をタイルに分割して全コアで並列に読み取る。
+    //   読み取った全てのバーコードをバッチに追加するため、BATCHMODE が true の場合のみ使用できる）
+    public static final boolean MULTIBARCODE = false;
+
+    // 複数バーコード読み取りのタイルの大きさ（画素。タイルは半分ずつ重ねるため、読み取るバーコードの2倍以上にする）
+    public static final int TILESIZE = 800;
+
+    // 画像からの読み取りで QR コードと DataMatrix も読み取るかどうか（false: Code39／Code128 のみ）
+    public static final boolean DECODE2D = false;
+
+    // 画像からの読み取りで試す方法とその順序（読み取れた時点で終了する。統計画面の結果から調整する）
+    public static final DecodeEngine.Strategy[] DECODEORDER = DecodeEngine.DEFAULT_ORDER;
+
+    // 画像の一括取り込みで並列に読み取るスレッド数の上限（端末のコア数との小さい方を使用する。1枚あたり数十MBのメモリを使用する）
+    public static final int IMPORTTHREADS = 4;
+
+    // 画像の一括取り込みの処理待ちキューの長さ（満杯の場合は空きができるまで次の画像の受け付けを待つ）
+    public static final int IMPORTQUEUE = 8;
+
+    // 応答ファイルの文字コード（SOPサーバーの設定に合わせる。例: "UTF-8", "Shift_JIS"）
+    public static final String RESPONSECHARSET = "UTF-8";
+
+    // 応答ファイルの大きさの上限（バイト。超える応答は SYSTEMエラー とする）
+    public static final int RESPONSEMAXBYTES = 16 * 1024;
+
+    // 診断情報（段階ごとの処理時間の分布、SMBの操作の回数）をファイルに出力する間隔（秒。0以下の場合は出力しない）
+    public static final long DIAGEXPORTINTERVAL = 300;
+
+    // 要求ファイルを一時ファイル名で書き込んでから要求ファイル名に変更するかどうか
+    // （SOPサーバーが書き込み途中の要求ファイルを読むことがなく、往復回数も少ない。false: 要求ファイル名で作成して書き込む）
+    public static final boolean ATOMICPUBLISH = true;
+
+    // 要求ファイルを書き込む一時ファイル名の末尾（SOPサーバーが要求ファイルとして扱わない名前にする）
+    public static final String PUBLISHTEMPSUFFIX = ".tmp";
+
+    // 応答フォルダーの変更を監視し、応答ファイルが作成された時点で確認するかどうか
+    // （通信が変更通知に対応しない場合や監視が終了した場合は、間隔を調整しながら定期的に確認する）
+    public static final boolean RESPONSEWATCH = true;
 }
@@ -0,0 +1,106 @@
+/***********************************************************************************
+ * <目的>
+ * 取り込み済みの画像の内容のハッシュ（SHA-256）を保持し、同じ画像を再度処理しないようにするクラス。
+ *
+ * <説明>
+ * - ハッシュはファイルに32バイトずつ追記し、起動時に全件を読み込む（1万件で約320KB）。
+ * - ファイル名や URI ではなく内容で判定するため、名前を変えて再選択した同じ写真も重複と判定する。
+ * - 書き込み途中で終了した場合の末尾の不完全なレコードは読み込み時に無視する。
+ * スレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+// 取り込み済み画像のハッシュ管理クラス
+public class ContentHashCache implements AutoCloseable {
+
+    public static final int HASH_LENGTH = 32; // ハッシュの長さ（SHA-256）
+
+    private final Set<ByteBuffer> hashes = new HashSet<>();
+    private final FileChannel channel;
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ。ファイルがあれば読み込み、なければ作成する
+     *
+     * <引数>
+     * file: ハッシュを保存するファイル
+     *
+     * <例外>
+     * IOException: ファイルの読み込み・作成に失敗した場合
+     ***********************************************************************************/
+    public ContentHashCache(Path file) throws IOException {
+        if (Files.exists(file)) {
+            byte[] data = Files.readAllBytes(file);
+            int complete = data.length - data.length % HASH_LENGTH;
+            for (int i = 0; i < complete; i += HASH_LENGTH) {
+                hashes.add(ByteBuffer.wrap(data, i, HASH_LENGTH).slice());
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // 不完全なレコードを切り捨ててから追記する
+        channel.truncate(channel.size() - channel.size() % HASH_LENGTH);
+        channel.position(channel.size());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 取り込み済みかどうかを判定する
+     *
+     * <引数>
+     * hash: 画像の内容のハッシュ
+     *
+     * <戻り値>
+     * 取り込み済みの場合はtrue
+     ***********************************************************************************/
+    public synchronized boolean contains(byte[] hash) {
+        return hashes.contains(ByteBuffer.wrap(hash));
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 取り込み済みとして記録する
+     *
+     * <引数>
+     * hash: 画像の内容のハッシュ
+     *
+     * <戻り値>
+     * 新たに記録した場合はtrue、既に記録済みの場合はfalse
+     *
+     * <例外>
+     * IOException: ファイルへの書き込みに失敗した場合
+     ***********************************************************************************/
+    public synchronized boolean add(byte[] hash) throws IOException {
+        if (hash.length != HASH_LENGTH) throw new IllegalArgumentException("hash length " + hash.length);
+        ByteBuffer key = ByteBuffer.wrap(hash.clone());
+        if (hashes.contains(key)) return false;
+
+        ByteBuffer record = key.duplicate();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        hashes.add(key);
+        return true;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 記録済みの件数を取得する
+     ***********************************************************************************/
+    public synchronized int size() {
+        return hashes.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
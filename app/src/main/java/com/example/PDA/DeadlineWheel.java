@@ -0,0 +1,218 @@
+/***********************************************************************************
+ * <目的>
+ * 応答待ちの要求の期限を管理するタイミングホイール（hashed timing wheel）。
+ *
+ * <説明>
+ * - 期限は System.nanoTime() を基準とした単調な時刻で管理するため、端末の時計が
+ *   変更されても（NTP補正、手動変更など）タイムアウトの判定がずれない。
+ * - 時間を TICK 単位のスロットに区切り、期限をスロット番号 (期限 & マスク) に振り分ける。
+ *   登録と取り消しは O(1)、期限切れの確認は経過したスロットだけを調べるため、
+ *   応答待ちの件数に関係なく一定のコストで行える。
+ * - ホイール1周より長い期限は、スロットを訪れたときに期限を比較して持ち越す。
+ *
+ * 全メソッドはスレッドセーフ。期限切れの通知はロックの外で expire() の呼び出し元スレッドから行う。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 期限管理クラス
+public class DeadlineWheel<T> {
+
+    /***********************************************************************************
+     * <目的>
+     * 単調な現在時刻（ナノ秒）を返す時計。テストでは任意の時刻を返す実装に差し替える。
+     ***********************************************************************************/
+    public interface Ticker {
+        long nanoTime();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 期限切れを通知するリスナー
+     ***********************************************************************************/
+    public interface Listener<T> {
+        void onExpired(T item);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 登録した期限。cancel() で取り消す。
+     ***********************************************************************************/
+    public final class Timeout {
+        private final T item;
+        private final long deadlineTick; // 期限のスロット番号（通算）
+        private Timeout prev, next; // 同じスロットの期限を結ぶ双方向リスト
+        private boolean linked;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        // 期限を取り消す。取り消せた場合（期限切れ前だった場合）はtrue
+        public boolean cancel() {
+            synchronized (DeadlineWheel.this) {
+                if (!linked) return false;
+                unlink(this);
+                return true;
+            }
+        }
+    }
+
+    private final long tickNanos; // 1スロットの時間（ナノ秒）
+    private final int mask; // スロット数 - 1
+    private final Object[] heads; // スロットごとの先頭の期限（Timeout）
+    private final Ticker ticker;
+    private final Listener<T> listener;
+    private final long origin; // 基準時刻（ナノ秒）
+
+    private long currentTick; // 確認済みのスロット番号（通算）
+    private int size; // 登録中の期限の数
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ（System.nanoTime() を使用する）
+     *
+     * <引数>
+     * tickMillis: 1スロットの時間（ミリ秒）。期限の精度になる
+     * slots: スロット数（2のべき乗に切り上げる）
+     * listener: 期限切れの通知先
+     ***********************************************************************************/
+    public DeadlineWheel(long tickMillis, int slots, Listener<T> listener) {
+        this(tickMillis, slots, listener, System::nanoTime);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * tickMillis: 1スロットの時間（ミリ秒）
+     * slots: スロット数（2のべき乗に切り上げる）
+     * listener: 期限切れの通知先
+     * ticker: 時計
+     ***********************************************************************************/
+    public DeadlineWheel(long tickMillis, int slots, Listener<T> listener, Ticker ticker) {
+        int n = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.mask = n - 1;
+        this.heads = new Object[n];
+        this.ticker = ticker;
+        this.listener = listener;
+        this.origin = ticker.nanoTime();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 期限を登録する
+     *
+     * <引数>
+     * item: 期限切れのときに通知する値
+     * delayMillis: 現在からの期限（ミリ秒）
+     *
+     * <戻り値>
+     * 登録した期限（取り消しに使用する）
+     ***********************************************************************************/
+    public synchronized Timeout schedule(T item, long delayMillis) {
+        long elapsed = ticker.nanoTime() - origin + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        // 期限を含むスロットの終わりで通知する（期限より早く通知しない）
+        long tick = Math.max((elapsed + tickNanos - 1) / tickNanos, currentTick + 1);
+        Timeout t = new Timeout(item, tick);
+        link(t);
+        return t;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 前回の確認以降に経過したスロットを調べ、期限切れの値を通知する
+     *
+     * <戻り値>
+     * 期限切れになった数
+     ***********************************************************************************/
+    public int expire() {
+        List<T> expired = null;
+        synchronized (this) {
+            long nowTick = (ticker.nanoTime() - origin) / tickNanos;
+            if (nowTick <= currentTick) return 0;
+
+            // 1周以上経過した場合も、各スロットを1回だけ調べる
+            long from = Math.max(currentTick + 1, nowTick - mask);
+            for (long tick = from; tick <= nowTick; tick++) {
+                @SuppressWarnings("unchecked")
+                Timeout t = (Timeout) heads[(int) (tick & mask)];
+                while (t != null) {
+                    Timeout next = t.next;
+                    if (t.deadlineTick <= nowTick) {
+                        unlink(t);
+                        if (expired == null) expired = new ArrayList<>();
+                        expired.add(t.item);
+                    }
+                    t = next;
+                }
+            }
+            currentTick = nowTick;
+        }
+
+        if (expired == null) return 0;
+        for (T item : expired) {
+            listener.onExpired(item);
+        }
+        return expired.size();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 最も早い期限切れを expire() で検出できるようになるまでの時間を取得する。
+     * 期限切れの確認を間隔を空けて行う場合に、次の確認の時刻を決めるために使用する
+     * （スロットを最大1周調べる。1周以内に期限がない場合は1周後までの時間を返す）
+     *
+     * <戻り値>
+     * 現在からの時間（ミリ秒、0以上）。登録中の期限がない場合は -1
+     ***********************************************************************************/
+    public synchronized long nextExpiryMillis() {
+        if (size == 0) return -1;
+        long tick = currentTick + 1;
+        long last = currentTick + mask + 1;
+        for (; tick < last; tick++) {
+            @SuppressWarnings("unchecked")
+            Timeout t = (Timeout) heads[(int) (tick & mask)];
+            while (t != null && t.deadlineTick != tick) t = t.next;
+            if (t != null) break;
+        }
+        long remaining = tick * tickNanos - (ticker.nanoTime() - origin);
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+    }
+
+    // 登録中の期限の数を返す
+    public synchronized int size() {
+        return size;
+    }
+
+    // 期限をスロットの先頭に追加する
+    @SuppressWarnings("unchecked")
+    private void link(Timeout t) {
+        int slot = (int) (t.deadlineTick & mask);
+        Timeout head = (Timeout) heads[slot];
+        t.next = head;
+        if (head != null) head.prev = t;
+        heads[slot] = t;
+        t.linked = true;
+        size++;
+    }
+
+    // 期限をスロットから外す
+    private void unlink(Timeout t) {
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            heads[(int) (t.deadlineTick & mask)] = t.next;
+        }
+        if (t.next != null) t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.linked = false;
+        size--;
+    }
+}
@@ -0,0 +1,312 @@
+/***********************************************************************************
+ * <目的>
+ * 画像からバーコードを1つ読み取るクラス。処理の軽い方法から順に試し、読み取れた時点で終了する。
+ *
+ * <説明>
+ * - 読み取る種類は、アプリで扱う Code39（端末No）と Code128（バーコード）に限定する
+ *   （twoDimensional が true の場合は QR コードと DataMatrix も読み取る）。
+ *   ZXing は種類を指定しないと全ての種類を試すため、読み取れない画像ほど時間がかかる。
+ * - 読み取りの方法（Strategy）は次の順に試す（順序はコンストラクタで変更できる）。
+ *   GLOBAL: 画像全体のヒストグラムで2値化する（最も軽い。照明が均一な画像向け）
+ *   HYBRID: 局所的な明るさで2値化する（影や明るさのむらがある画像向け）。
+ *           ZXing の HybridBinarizer は行単位の2値化（1次元バーコードが使用する）を全体のヒストグラムで
+ *           行うため、行は LocalRowBinarizer で局所的に2値化する
+ *   ROTATED: 画像を90度回転して読み取る（縦向きに撮影したバーコード向け）
+ *   INVERTED: 明暗を反転して読み取る（黒地に白のバーコード向け）
+ *   TRY_HARDER: ZXing の TRY_HARDER（走査する行を増やす。最も重い）
+ * - 方法ごとに試行回数、読み取れた回数、処理時間の合計を記録し、stats() で取得できる
+ *   （現場のデータから順序を調整するため）。
+ * スレッドセーフ（ZXing の Reader は読み取りごとに生成する）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// バーコード読み取りクラス
+public class DecodeEngine {
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取りの方法
+     ***********************************************************************************/
+    public enum Strategy {
+        GLOBAL, HYBRID, ROTATED, INVERTED, TRY_HARDER
+    }
+
+    // 標準の順序（処理の軽い順）
+    public static final Strategy[] DEFAULT_ORDER = Strategy.values();
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取りの方法ごとの統計
+     ***********************************************************************************/
+    public static final class StrategyStats {
+        public final Strategy strategy; // 読み取りの方法
+        public final long attempts; // 試行回数
+        public final long hits; // 読み取れた回数
+        public final double avgMillis; // 1回あたりの処理時間の平均（ミリ秒）
+
+        StrategyStats(Strategy strategy, long attempts, long hits, long totalNanos) {
+            this.strategy = strategy;
+            this.attempts = attempts;
+            this.hits = hits;
+            this.avgMillis = attempts == 0 ? 0 : totalNanos / 1e6 / attempts;
+        }
+    }
+
+    private final Strategy[] order;
+    private final Map<DecodeHintType, Object> hints;
+    private final Map<DecodeHintType, Object> tryHarderHints;
+
+    // 方法ごとの統計（Strategy の ordinal で参照する）
+    private final AtomicLongArray attempts = new AtomicLongArray(Strategy.values().length);
+    private final AtomicLongArray hits = new AtomicLongArray(Strategy.values().length);
+    private final AtomicLongArray totalNanos = new AtomicLongArray(Strategy.values().length);
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * twoDimensional: QR コードと DataMatrix も読み取るかどうか
+     * order: 読み取りの方法を試す順序（含まれない方法は試さない）
+     ***********************************************************************************/
+    public DecodeEngine(boolean twoDimensional, Strategy... order) {
+        if (order.length == 0) throw new IllegalArgumentException("no strategy");
+        this.order = order.clone();
+
+        EnumSet<BarcodeFormat> formats = EnumSet.of(BarcodeFormat.CODE_39, BarcodeFormat.CODE_128);
+        if (twoDimensional) {
+            formats.add(BarcodeFormat.QR_CODE);
+            formats.add(BarcodeFormat.DATA_MATRIX);
+        }
+        hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        tryHarderHints = new EnumMap<>(hints);
+        tryHarderHints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 画像からバーコードを読み取る
+     *
+     * <引数>
+     * source: 画像
+     *
+     * <戻り値>
+     * 読み取り結果
+     *
+     * <例外>
+     * NotFoundException: 全ての方法で読み取れなかった場合
+     ***********************************************************************************/
+    public Result decode(LuminanceSource source) throws NotFoundException {
+        MultiFormatReader reader = new MultiFormatReader();
+        Map<DecodeHintType, Object> current = null;
+
+        for (Strategy strategy : order) {
+            Map<DecodeHintType, Object> h = strategy == Strategy.TRY_HARDER ? tryHarderHints : hints;
+            if (h != current) {
+                reader.setHints(h);
+                current = h;
+            }
+
+            int i = strategy.ordinal();
+            long start = System.nanoTime();
+            try {
+                Result result = reader.decodeWithState(new BinaryBitmap(binarizer(strategy, source)));
+                hits.incrementAndGet(i);
+                return result;
+            } catch (NotFoundException e) {
+                // 次の方法を試す
+            } finally {
+                attempts.incrementAndGet(i);
+                totalNanos.addAndGet(i, System.nanoTime() - start);
+            }
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取りの方法ごとの統計を取得する
+     *
+     * <戻り値>
+     * 試す順序での統計
+     ***********************************************************************************/
+    public List<StrategyStats> stats() {
+        List<StrategyStats> list = new ArrayList<>(order.length);
+        for (Strategy strategy : order) {
+            int i = strategy.ordinal();
+            list.add(new StrategyStats(strategy, attempts.get(i), hits.get(i), totalNanos.get(i)));
+        }
+        return list;
+    }
+
+    // 読み取りの方法に応じた2値化処理を作成する
+    private static Binarizer binarizer(Strategy strategy, LuminanceSource source) {
+        switch (strategy) {
+            case GLOBAL:
+                return new GlobalHistogramBinarizer(source);
+            case ROTATED:
+                return new HybridBinarizer(source.isRotateSupported()
+                        ? source.rotateCounterClockwise() : new RotatedLuminanceSource(source));
+            case INVERTED:
+                return new HybridBinarizer(source.invert());
+            default:
+                return new LocalRowBinarizer(source);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 行を局所的な明るさで2値化する処理（1次元バーコード用）。
+     *
+     * <説明>
+     * ZXing の HybridBinarizer は getBlackRow() を GlobalHistogramBinarizer から継承しているため、
+     * そのままでは1次元バーコードの読み取りが GLOBAL と同じ結果になる。また、HybridBinarizer の
+     * 2値化画像から行を取り出すと、バーに隣接する余白にノイズによる点が残り、読み取れない。
+     * そのため行は次のように2値化する。
+     * - バーは縦方向に続くため、上下 ROW_AVERAGE 行の輝度を平均してノイズを抑える。
+     * - 各画素を、前後 WINDOW_DIVISOR 分の1の幅の平均輝度と比較する（影による明るさの傾きに追従する）。
+     * - 範囲内の明暗の差（標準偏差）が MIN_DEVIATION に満たない場合はバーがないものとして白とする。
+     * 2次元バーコードは HybridBinarizer の2値化画像を使用する。
+     ***********************************************************************************/
+    static final class LocalRowBinarizer extends Binarizer {
+        private static final int ROW_AVERAGE = 5; // 平均する行数
+        private static final int WINDOW_DIVISOR = 16; // 平均を取る範囲（片側）の幅 = 画像の幅 / WINDOW_DIVISOR
+        private static final int MIN_WINDOW = 16; // 平均を取る範囲（片側）の最小の幅
+        private static final int MIN_DEVIATION = 12; // バーがあるとみなす輝度の標準偏差の最小値
+
+        private final HybridBinarizer hybrid; // 2次元バーコード用
+        private int[] luminance; // 行の輝度（上下の行との平均）
+        private long[] sums; // 輝度の累積和
+        private long[] squares; // 輝度の2乗の累積和
+
+        LocalRowBinarizer(LuminanceSource source) {
+            super(source);
+            hybrid = new HybridBinarizer(source);
+        }
+
+        @Override
+        public BitArray getBlackRow(int y, BitArray row) {
+            LuminanceSource source = getLuminanceSource();
+            int width = source.getWidth();
+            int from = Math.max(0, Math.min(y - ROW_AVERAGE / 2, source.getHeight() - ROW_AVERAGE));
+            int to = Math.min(source.getHeight(), from + ROW_AVERAGE);
+            if (luminance == null || luminance.length < width) {
+                luminance = new int[width];
+                sums = new long[width + 1];
+                squares = new long[width + 1];
+            }
+
+            // 上下の行の輝度を平均する
+            Arrays.fill(luminance, 0, width, 0);
+            byte[] buffer = null;
+            for (int yy = from; yy < to; yy++) {
+                buffer = source.getRow(yy, buffer);
+                for (int x = 0; x < width; x++) {
+                    luminance[x] += buffer[x] & 0xff;
+                }
+            }
+            int rows = to - from;
+            for (int x = 0; x < width; x++) {
+                int v = luminance[x] / rows;
+                luminance[x] = v;
+                sums[x + 1] = sums[x] + v;
+                squares[x + 1] = squares[x] + v * v;
+            }
+
+            if (row == null || row.getSize() < width) {
+                row = new BitArray(width);
+            } else {
+                row.clear();
+            }
+            int half = Math.max(MIN_WINDOW, width / WINDOW_DIVISOR);
+            long minVariance = (long) MIN_DEVIATION * MIN_DEVIATION;
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(0, x - half);
+                int right = Math.min(width, x + half + 1);
+                int n = right - left;
+                long sum = sums[right] - sums[left];
+                long variance = ((squares[right] - squares[left]) * n - sum * sum) / ((long) n * n);
+                if (variance >= minVariance && (long) luminance[x] * n < sum) {
+                    row.set(x);
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public BitMatrix getBlackMatrix() throws NotFoundException {
+            return hybrid.getBlackMatrix();
+        }
+
+        @Override
+        public Binarizer createBinarizer(LuminanceSource source) {
+            // TRY_HARDER で画像を回転した場合も同じ2値化を使用する
+            return new LocalRowBinarizer(source);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 回転に対応していない画像を反時計回りに90度回転した画像
+     * （元の画像の輝度を1回だけ読み出して回転した配列を作成する）
+     ***********************************************************************************/
+    static final class RotatedLuminanceSource extends LuminanceSource {
+        private final byte[] matrix;
+
+        RotatedLuminanceSource(LuminanceSource source) {
+            super(source.getHeight(), source.getWidth());
+            int width = source.getWidth();
+            int height = source.getHeight();
+            byte[] original = source.getMatrix();
+            matrix = new byte[width * height];
+            // 回転後の (x, y) は元の (width - 1 - y, x)
+            for (int y = 0; y < width; y++) {
+                int from = width - 1 - y;
+                int to = y * height;
+                for (int x = 0; x < height; x++) {
+                    matrix[to + x] = original[x * width + from];
+                }
+            }
+        }
+
+        @Override
+        public byte[] getRow(int y, byte[] row) {
+            if (y < 0 || y >= getHeight()) {
+                throw new IllegalArgumentException("Requested row is outside the image: " + y);
+            }
+            int width = getWidth();
+            if (row == null || row.length < width) {
+                row = new byte[width];
+            }
+            System.arraycopy(matrix, y * width, row, 0, width);
+            return row;
+        }
+
+        @Override
+        public byte[] getMatrix() {
+            return matrix;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/***********************************************************************************
+ * <目的>
+ * 送信の各段階の処理時間の分布と、SMBの操作ごとの呼び出し回数・処理時間・エラー回数を記録するクラス。
+ *
+ * <説明>
+ * 記録する段階（Stage）:
+ *   INPUT: スキャンの最初の文字から、1回分のスキャンと判定するまで（ScanFramer）
+ *   VALIDATE／CONNECT／WRITE: 送信パイプラインの各段階の処理時間（次の段階のキューの空きを待つ時間を除く）。
+ *     キューでの待ち時間（キューの空きを待つ時間を含む）は段階ごとに別の分布（.wait）に記録する
+ *   AWAIT: 要求ファイルの作成から応答の受信まで（応答確認の間隔を含む）
+ *   TOTAL: 送信の依頼から結果の確定まで
+ * SMBの操作（SmbOp）は SmbSopTransport／Smb2SopTransport のSMB呼び出しと、
+ * SmbSessionManager／Smb2SessionManager の接続・キープアライブごとに記録する。
+ *
+ * 記録先は段階・操作ごとに固定の LatencyHistogram で、プロセス内で共有する。
+ * 記録はロックを取らず、オブジェクトを生成しない。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 診断情報クラス
+public final class Diagnostics {
+
+    /***********************************************************************************
+     * <目的>
+     * 送信の段階
+     ***********************************************************************************/
+    public enum Stage {
+        INPUT, VALIDATE, CONNECT, WRITE, AWAIT, TOTAL
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * SMBの操作
+     ***********************************************************************************/
+    public enum SmbOp {
+        CONNECT, SESSION_SETUP, TREE_CONNECT, KEEPALIVE,
+        EXISTS, IS_DIRECTORY, CREATE, WRITE, RENAME, LIST, OPEN, READ, CLOSE, DELETE
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 処理時間を記録するSMBの呼び出し
+     ***********************************************************************************/
+    public interface SmbCall<T> {
+        T call() throws IOException;
+    }
+
+    // キューを持つ段階（待ち時間を処理時間とは別に記録する）
+    private static final Set<Stage> QUEUED = EnumSet.of(Stage.VALIDATE, Stage.CONNECT, Stage.WRITE);
+
+    private static final LatencyHistogram[] STAGES = histograms(Stage.values().length);
+    private static final LatencyHistogram[] STAGE_WAITS = histograms(Stage.values().length);
+    private static final LatencyHistogram[] SMB_OPS = histograms(SmbOp.values().length);
+    private static final AtomicLongArray SMB_ERRORS = new AtomicLongArray(SmbOp.values().length);
+
+    private Diagnostics() {
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 段階の処理時間を記録する
+     *
+     * <引数>
+     * stage: 段階
+     * nanos: 処理時間（ナノ秒）
+     ***********************************************************************************/
+    public static void record(Stage stage, long nanos) {
+        STAGES[stage.ordinal()].record(nanos);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 段階のキューでの待ち時間を記録する
+     *
+     * <引数>
+     * stage: 段階
+     * nanos: 待ち時間（ナノ秒）
+     ***********************************************************************************/
+    public static void recordWait(Stage stage, long nanos) {
+        STAGE_WAITS[stage.ordinal()].record(nanos);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * SMBの操作の処理時間を記録する（呼び出し回数も数える）
+     *
+     * <引数>
+     * op: 操作
+     * nanos: 処理時間（ナノ秒）
+     * failed: 例外で終了したかどうか
+     ***********************************************************************************/
+    public static void smb(SmbOp op, long nanos, boolean failed) {
+        SMB_OPS[op.ordinal()].record(nanos);
+        if (failed) SMB_ERRORS.incrementAndGet(op.ordinal());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * SMBの呼び出しを実行し、処理時間と例外の有無を記録する
+     *
+     * <引数>
+     * op: 操作
+     * call: 呼び出し
+     *
+     * <戻り値>
+     * 呼び出しの結果
+     ***********************************************************************************/
+    public static <T> T timed(SmbOp op, SmbCall<T> call) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            smb(op, System.nanoTime() - start, failed);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 段階の処理時間の集計を取得する
+     ***********************************************************************************/
+    public static LatencyHistogram.Snapshot snapshot(Stage stage) {
+        return STAGES[stage.ordinal()].snapshot();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 段階のキューでの待ち時間の集計を取得する
+     ***********************************************************************************/
+    public static LatencyHistogram.Snapshot snapshotWait(Stage stage) {
+        return STAGE_WAITS[stage.ordinal()].snapshot();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * SMBの操作の処理時間の集計を取得する（count が呼び出し回数）
+     ***********************************************************************************/
+    public static LatencyHistogram.Snapshot snapshot(SmbOp op) {
+        return SMB_OPS[op.ordinal()].snapshot();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * SMBの操作のエラー回数を取得する
+     ***********************************************************************************/
+    public static long errors(SmbOp op) {
+        return SMB_ERRORS.get(op.ordinal());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 全ての段階・操作の集計を表形式（タブ区切り、1行目は見出し、時間はミリ秒）で作成する。
+     * 診断画面の表示とファイルへの出力に使用する
+     *
+     * <戻り値>
+     * 集計の表
+     ***********************************************************************************/
+    public static String report() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("name\tcount\terrors\tmean\tp50\tp95\tp99\tmax\n");
+        for (Stage stage : Stage.values()) {
+            String name = "stage." + stage.name().toLowerCase(Locale.US);
+            if (QUEUED.contains(stage)) appendRow(sb, name + ".wait", snapshotWait(stage), 0);
+            appendRow(sb, name, snapshot(stage), 0);
+        }
+        for (SmbOp op : SmbOp.values()) {
+            appendRow(sb, "smb." + op.name().toLowerCase(Locale.US), snapshot(op), errors(op));
+        }
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram.Snapshot s, long errors) {
+        sb.append(String.format(Locale.US, "%s\t%d\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\n",
+                name, s.count, errors, s.meanMillis, s.p50Millis, s.p95Millis, s.p99Millis, s.maxMillis));
+    }
+
+    private static LatencyHistogram[] histograms(int n) {
+        LatencyHistogram[] histograms = new LatencyHistogram[n];
+        for (int i = 0; i < n; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
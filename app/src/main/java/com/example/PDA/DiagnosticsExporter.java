@@ -0,0 +1,90 @@
+/***********************************************************************************
+ * <目的>
+ * 診断情報（Diagnostics.report()）を一定間隔でローカルのファイルに出力するクラス。
+ *
+ * <説明>
+ * - 出力先は1つのファイルで、毎回全体を書き直す（集計は起動からの累計のため、最新の1つで足りる）。
+ *   一時ファイルに書き込んでから置き換えるため、回収時に書き込み途中の内容を読むことはない。
+ * - 1行目に出力時刻と端末の識別子（ヘッダー）を書き、続けて集計の表を書く。
+ * - 回収は adb pull などで行う（アプリ専用の外部ストレージに置けば権限は不要）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 診断情報出力クラス
+public class DiagnosticsExporter {
+
+    private final Path file;
+    private final String header;
+    private final ScheduledExecutorService executor;
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * file: 出力先のファイル
+     * header: 端末の識別子など、出力の1行目に書く文字列
+     ***********************************************************************************/
+    public DiagnosticsExporter(Path file, String header) {
+        this.file = file;
+        this.header = header;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "diagnostics-export");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 一定間隔での出力を開始する
+     *
+     * <引数>
+     * intervalSeconds: 出力の間隔（秒）
+     ***********************************************************************************/
+    public void start(long intervalSeconds) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                export();
+            } catch (IOException | RuntimeException e) {
+                // 出力できない場合は次回に再試行する
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 直ちに出力する
+     *
+     * <戻り値>
+     * 出力先のファイル
+     *
+     * <例外>
+     * IOException: 書き込みに失敗した場合
+     ***********************************************************************************/
+    public synchronized Path export() throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        String content = "# " + System.currentTimeMillis() + "\t" + header + "\n" + Diagnostics.report();
+        Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 一定間隔での出力を停止する
+     ***********************************************************************************/
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,248 @@
+/***********************************************************************************
+ * <目的>
+ * カメラのプレビューなどから連続して届くフレーム（NV21／YUV の輝度面）から、バーコードを読み取り続けるクラス。
+ *
+ * <説明>
+ * - フレームは offer() で1枠のスロットに置き、読み取りスレッドは常に最新のフレームだけを読み取る。
+ *   読み取り中に届いたフレームは次のフレームで置き換えられ、古いものは読み取らずに破棄する
+ *   （読み取りが遅くても遅延が溜まらない）。offer() はロックも待ちもしないため、カメラのスレッドを止めない。
+ * - 読み取りに使用するCPU時間の割合を cpuBudget（0～1）以下に抑える。1回の読み取りに d 秒かかった場合、
+ *   次の読み取りまで d × (1 - cpuBudget) / cpuBudget 秒休む（その間に届いたフレームは最新の1枚だけが残る）。
+ * - 同じ内容のバーコードが写り続けている間は通知しない。同じ内容を最後に読み取ってから dedupeWindow 以上
+ *   経過した場合（一度画面から外れた場合など）は再度通知する。時間はフレームのタイムスタンプで判定するため、
+ *   記録したフレームを再生した場合も同じ結果となる。
+ * - 破棄または読み取り終えたフレームのデータは Recycler に返す（Camera.addCallbackBuffer などで再利用する）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// 連続フレーム読み取りクラス
+public class FrameDecodeEngine {
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取ったバーコードを受け取るリスナー（読み取りスレッドから呼び出される）
+     ***********************************************************************************/
+    public interface Listener {
+        /*
+         * result: 読み取り結果
+         * timestampNanos: 読み取ったフレームのタイムスタンプ（ナノ秒）
+         */
+        void onCode(Result result, long timestampNanos);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 使い終えたフレームのデータを返す先
+     ***********************************************************************************/
+    public interface Recycler {
+        void recycle(byte[] data);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 統計
+     ***********************************************************************************/
+    public static final class Stats {
+        public final long offered; // 受け取ったフレーム数
+        public final long dropped; // 読み取らずに破棄したフレーム数
+        public final long decoded; // 読み取りを行ったフレーム数
+        public final long hits; // バーコードを読み取れたフレーム数
+        public final long reported; // 通知した回数（同じ内容の繰り返しを除く）
+        public final double avgDecodeMillis; // 1回あたりの読み取り時間の平均（ミリ秒）
+        public final double busyRatio; // 開始からの経過時間のうち読み取りに使用した時間の割合
+
+        Stats(long offered, long dropped, long decoded, long hits, long reported, long busyNanos, long elapsedNanos) {
+            this.offered = offered;
+            this.dropped = dropped;
+            this.decoded = decoded;
+            this.hits = hits;
+            this.reported = reported;
+            this.avgDecodeMillis = decoded == 0 ? 0 : busyNanos / 1e6 / decoded;
+            this.busyRatio = elapsedNanos <= 0 ? 0 : (double) busyNanos / elapsedNanos;
+        }
+    }
+
+    // フレーム
+    private static final class Frame {
+        final byte[] data;
+        final int rowStride;
+        final int width;
+        final int height;
+        final long timestampNanos;
+
+        Frame(byte[] data, int rowStride, int width, int height, long timestampNanos) {
+            this.data = data;
+            this.rowStride = rowStride;
+            this.width = width;
+            this.height = height;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+
+    private final DecodeEngine engine;
+    private final double cpuBudget;
+    private final long dedupeWindowNanos;
+    private final Listener listener;
+    private final Recycler recycler;
+
+    private final AtomicReference<Frame> latest = new AtomicReference<>(); // 未読み取りの最新フレーム
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    // 同じ内容の繰り返しの判定（読み取りスレッドのみが使用する）
+    private String lastText;
+    private long lastSeenNanos;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong decoded = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong reported = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile long startNanos;
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * engine: バーコードの読み取り（フレームごとに全ての方法を試すと重いため、軽い方法だけにする）
+     * cpuBudget: 読み取りに使用するCPU時間の割合の上限（0より大きく1以下）
+     * dedupeWindowMillis: 同じ内容を通知しない時間（ミリ秒）
+     * listener: 読み取ったバーコードの通知先
+     * recycler: 使い終えたフレームのデータを返す先（不要な場合はnull）
+     ***********************************************************************************/
+    public FrameDecodeEngine(DecodeEngine engine, double cpuBudget, long dedupeWindowMillis,
+                             Listener listener, Recycler recycler) {
+        if (cpuBudget <= 0 || cpuBudget > 1) throw new IllegalArgumentException("cpuBudget " + cpuBudget);
+        this.engine = engine;
+        this.cpuBudget = cpuBudget;
+        this.dedupeWindowNanos = TimeUnit.MILLISECONDS.toNanos(dedupeWindowMillis);
+        this.listener = listener;
+        this.recycler = recycler;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取りスレッドを開始する
+     ***********************************************************************************/
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        startNanos = System.nanoTime();
+        thread = new Thread(this::run, "frame-decode");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取りスレッドを停止する（未読み取りのフレームは破棄する）
+     ***********************************************************************************/
+    public synchronized void stop() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        Thread t = thread;
+        LockSupport.unpark(t);
+        t.join();
+        discard(latest.getAndSet(null));
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * フレームを渡す（カメラのスレッドから呼び出す。待たずに戻る）
+     *
+     * <引数>
+     * data: 輝度面（NV21 の場合はフレームのデータそのもの。輝度面は先頭の rowStride × height バイト）
+     * rowStride: 輝度面の1行のバイト数（NV21 の場合は width）
+     * width, height: フレームの幅と高さ
+     * timestampNanos: フレームのタイムスタンプ（ナノ秒）
+     ***********************************************************************************/
+    public void offer(byte[] data, int rowStride, int width, int height, long timestampNanos) {
+        offered.incrementAndGet();
+        Frame stale = latest.getAndSet(new Frame(data, rowStride, width, height, timestampNanos));
+        if (stale != null) {
+            discard(stale);
+        } else {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 統計を取得する
+     ***********************************************************************************/
+    public Stats stats() {
+        long start = startNanos;
+        return new Stats(offered.get(), dropped.get(), decoded.get(), hits.get(), reported.get(),
+                busyNanos.get(), start == 0 ? 0 : System.nanoTime() - start);
+    }
+
+    // 読み取りスレッド：最新のフレームを読み取り、CPU時間の割合に応じて休む
+    private void run() {
+        while (running) {
+            Frame frame = latest.getAndSet(null);
+            if (frame == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            Result result = decode(frame);
+            long cost = System.nanoTime() - start;
+            decoded.incrementAndGet();
+            busyNanos.addAndGet(cost);
+
+            if (result != null) {
+                hits.incrementAndGet();
+                report(result, frame.timestampNanos);
+            }
+
+            // 読み取り時間に応じて休む（unpark で早く戻った場合も期限まで休む）
+            long resume = System.nanoTime() + (long) (cost * (1 - cpuBudget) / cpuBudget);
+            for (long wait; running && (wait = resume - System.nanoTime()) > 0; ) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    // フレームの輝度面からバーコードを読み取る（読み取れない場合はnull）
+    private Result decode(Frame frame) {
+        try {
+            return engine.decode(new PlanarYUVLuminanceSource(frame.data, frame.rowStride, frame.height,
+                    0, 0, frame.width, frame.height, false));
+        } catch (NotFoundException | RuntimeException e) {
+            return null;
+        } finally {
+            if (recycler != null) recycler.recycle(frame.data);
+        }
+    }
+
+    // 同じ内容が写り続けている場合を除いて通知する
+    private void report(Result result, long timestampNanos) {
+        String text = result.getText();
+        boolean repeated = text.equals(lastText) && timestampNanos - lastSeenNanos < dedupeWindowNanos;
+        lastText = text;
+        lastSeenNanos = timestampNanos;
+        if (repeated) return;
+
+        reported.incrementAndGet();
+        listener.onCode(result, timestampNanos);
+    }
+
+    // 読み取らずにフレームを破棄する
+    private void discard(Frame frame) {
+        if (frame == null) return;
+        dropped.incrementAndGet();
+        if (recycler != null) recycler.recycle(frame.data);
+    }
+}
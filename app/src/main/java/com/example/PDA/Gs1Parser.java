@@ -0,0 +1,314 @@
+/***********************************************************************************
+ * <目的>
+ * GS1-128 ラベルの読み取り結果をアプリケーション識別子（AI）ごとの項目に分解するクラス。
+ *
+ * <説明>
+ * - 入力はスキャナーの出力そのまま（先頭のシンボル識別子"]C1"は任意、FNC1 は GS（0x1D）で出力される）。
+ * - AI の桁数（2～4桁）とデータの長さ（固定長／可変長の最大）は、AIの先頭4桁で引く参照表で決める。
+ *   固定長のAIは長さで区切り、可変長のAIは GS または入力の終わりで区切る。
+ * - 入力をコピーせず、項目ごとに入力上の位置（AIの開始、データの開始・終了）を Visitor に通知する。
+ * - 数字のみのAIは数字であること、日付（YYMMDD）は月日が正しいこと（うるう年を含む。日の00は月末）、
+ *   GTIN／SSCC／GLNはチェックデジット（モジュラス10）が正しいことをその場で検証する。
+ *
+ * 参照表は主要なAI（GTIN、ロット、賞味期限、数量、シリアル、重量、SSCC、GLN など）を収録する。
+ ***********************************************************************************/
+package com.example.PDA;
+
+// GS1-128 解析クラス
+public final class Gs1Parser {
+
+    public static final char GS = '\u001D'; // FNC1（グループ区切り文字）
+    public static final String SYMBOLOGY_ID = "]C1"; // GS1-128 のシンボル識別子
+
+    /***********************************************************************************
+     * <目的>
+     * 分解した項目を受け取るインターフェース
+     ***********************************************************************************/
+    public interface Visitor {
+        /*
+         * src: 入力
+         * aiStart: AIの開始位置
+         * valueStart: データの開始位置（AIの終了位置）
+         * valueEnd: データの終了位置
+         */
+        void onField(CharSequence src, int aiStart, int valueStart, int valueEnd);
+    }
+
+    // 参照表の値（ビット）
+    private static final int LENGTH_MASK = 0x7F; // データの長さ（固定長）または最大長（可変長）
+    private static final int AI_LENGTH_SHIFT = 7; // AIの桁数 - 2（2ビット）
+    private static final int FIXED = 1 << 9; // 固定長
+    private static final int NUMERIC = 1 << 10; // 数字のみ
+    private static final int DATE = 1 << 11; // 日付（YYMMDD）
+    private static final int CHECK = 1 << 12; // 末尾がチェックデジット（モジュラス10）
+    private static final int DEFINED = 1 << 13; // 定義済みのAI
+
+    private static final short[] TABLE = new short[10000]; // AIの先頭4桁 → 参照表の値
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31}; // 月の日数（平年）
+
+    static {
+        define("00", true, 18, NUMERIC | CHECK); // SSCC
+        define("01", true, 14, NUMERIC | CHECK); // GTIN
+        define("02", true, 14, NUMERIC | CHECK); // 内容物のGTIN
+        define("10", false, 20, 0); // ロット番号
+        define("11", true, 6, NUMERIC | DATE); // 製造日
+        define("12", true, 6, NUMERIC | DATE); // 支払期日
+        define("13", true, 6, NUMERIC | DATE); // 包装日
+        define("15", true, 6, NUMERIC | DATE); // 品質保持期限
+        define("16", true, 6, NUMERIC | DATE); // 販売期限
+        define("17", true, 6, NUMERIC | DATE); // 有効期限
+        define("20", true, 2, NUMERIC); // 品種
+        define("21", false, 20, 0); // シリアル番号
+        define("22", false, 20, 0); // 消費者製品の品種
+        define("235", false, 28, 0);
+        define("240", false, 30, 0); // 追加製品識別
+        define("241", false, 30, 0); // 顧客部品番号
+        define("242", false, 6, NUMERIC);
+        define("243", false, 20, 0);
+        define("250", false, 30, 0);
+        define("251", false, 30, 0);
+        define("253", false, 30, 0);
+        define("254", false, 20, 0);
+        define("255", false, 25, NUMERIC);
+        define("30", false, 8, NUMERIC); // 数量
+        for (int ai = 310; ai <= 369; ai++) {
+            defineWithDecimal(Integer.toString(ai), true, 6, NUMERIC); // 重量・寸法など
+        }
+        define("37", false, 8, NUMERIC); // 内容物の数量
+        defineWithDecimal("390", false, 15, NUMERIC); // 金額
+        defineWithDecimal("391", false, 18, NUMERIC);
+        defineWithDecimal("392", false, 15, NUMERIC);
+        defineWithDecimal("393", false, 18, NUMERIC);
+        defineWithDecimal("394", true, 4, NUMERIC);
+        define("400", false, 30, 0); // 注文番号
+        define("401", false, 30, 0);
+        define("402", true, 17, NUMERIC);
+        define("403", false, 30, 0);
+        for (int ai = 410; ai <= 417; ai++) {
+            define(Integer.toString(ai), true, 13, NUMERIC | CHECK); // GLN
+        }
+        define("420", false, 20, 0); // 配送先郵便番号
+        define("421", false, 12, 0);
+        define("422", true, 3, NUMERIC); // 原産国
+        define("423", false, 15, NUMERIC);
+        define("424", true, 3, NUMERIC);
+        define("425", false, 15, NUMERIC);
+        define("426", true, 3, NUMERIC);
+        define("7001", true, 13, NUMERIC);
+        define("7002", false, 30, 0);
+        define("7003", true, 10, NUMERIC);
+        define("7004", false, 4, NUMERIC);
+        define("7006", true, 6, NUMERIC | DATE);
+        define("7007", false, 12, NUMERIC);
+        define("8001", true, 14, NUMERIC);
+        define("8002", false, 20, 0);
+        define("8003", false, 30, 0);
+        define("8004", false, 30, 0);
+        define("8005", true, 6, NUMERIC);
+        define("8006", true, 18, NUMERIC);
+        define("8007", false, 34, 0);
+        define("8008", false, 12, NUMERIC);
+        define("8018", true, 18, NUMERIC | CHECK);
+        define("8020", false, 25, 0);
+        define("90", false, 30, 0); // 取引先間の取り決め
+        for (int ai = 91; ai <= 99; ai++) {
+            define(Integer.toString(ai), false, 90, 0); // 社内用
+        }
+    }
+
+    // AIを参照表に登録する（AIで始まる4桁の全ての値に同じ定義を設定する）
+    private static void define(String ai, boolean fixed, int length, int flags) {
+        int base = Integer.parseInt(ai);
+        int span = 1;
+        for (int i = ai.length(); i < 4; i++) {
+            base *= 10;
+            span *= 10;
+        }
+        int value = length | ((ai.length() - 2) << AI_LENGTH_SHIFT) | flags | DEFINED | (fixed ? FIXED : 0);
+        for (int i = 0; i < span; i++) {
+            TABLE[base + i] = (short) value;
+        }
+    }
+
+    // 4桁目が小数点の位置を表すAI（"310n" など）を参照表に登録する
+    private static void defineWithDecimal(String ai, boolean fixed, int length, int flags) {
+        for (int n = 0; n <= 9; n++) {
+            define(ai + n, fixed, length, flags);
+        }
+    }
+
+    private Gs1Parser() {
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * GS1-128 ラベルの読み取り結果かどうかを判定する（シンボル識別子"]C1"で始まるか、GSを含む）
+     *
+     * <引数>
+     * s: 読み取った文字列
+     *
+     * <戻り値>
+     * GS1-128 の場合はtrue
+     ***********************************************************************************/
+    public static boolean isGs1(CharSequence s) {
+        if (startsWithSymbologyId(s)) return true;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == GS) return true;
+        }
+        return false;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取った文字列を項目に分解し、項目ごとに visitor に通知する
+     *
+     * <引数>
+     * s: 読み取った文字列
+     * visitor: 項目の通知先
+     *
+     * <戻り値>
+     * 項目の数。形式が正しくない場合は -(誤りの位置 + 1)
+     * （誤りが見つかるまでに分解した項目は通知済み）
+     ***********************************************************************************/
+    public static int parse(CharSequence s, Visitor visitor) {
+        int len = s.length();
+        int pos = startsWithSymbologyId(s) ? SYMBOLOGY_ID.length() : 0;
+        int fields = 0;
+
+        while (pos < len) {
+            // 先頭または項目間のFNC1を読み飛ばす
+            if (s.charAt(pos) == GS) {
+                pos++;
+                continue;
+            }
+
+            // 入力の4文字で参照表を引く（3・4文字目はデータの場合もあるため、数字以外は0とみなす）
+            int key = 0;
+            for (int i = 0; i < 4; i++) {
+                int d = pos + i < len ? digit(s.charAt(pos + i)) : 0;
+                if (d < 0) {
+                    if (i < 2) return -(pos + i + 1);
+                    d = 0;
+                }
+                key = key * 10 + d;
+            }
+            int spec = TABLE[key];
+            if ((spec & DEFINED) == 0) return -(pos + 1);
+
+            int aiStart = pos;
+            int valueStart = pos + 2 + ((spec >> AI_LENGTH_SHIFT) & 3);
+            for (int i = pos + 2; i < valueStart; i++) {
+                if (i >= len || digit(s.charAt(i)) < 0) return -(i + 1);
+            }
+            int length = spec & LENGTH_MASK;
+            int valueEnd;
+            if ((spec & FIXED) != 0) {
+                valueEnd = valueStart + length;
+                if (valueEnd > len) return -(len + 1);
+            } else {
+                // 可変長はGSまたは入力の終わりまで
+                valueEnd = valueStart;
+                while (valueEnd < len && s.charAt(valueEnd) != GS) valueEnd++;
+                if (valueEnd == valueStart || valueEnd - valueStart > length) return -(valueStart + 1);
+            }
+
+            int error = validate(s, valueStart, valueEnd, spec);
+            if (error >= 0) return -(error + 1);
+
+            visitor.onField(s, aiStart, valueStart, valueEnd);
+            fields++;
+            pos = valueEnd;
+        }
+        return fields;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 項目のAIを数値で取得する（例: "01" → 1、"3103" → 3103）
+     *
+     * <引数>
+     * s: 入力
+     * aiStart: AIの開始位置
+     * valueStart: データの開始位置（AIの終了位置）
+     *
+     * <戻り値>
+     * AIの数値
+     ***********************************************************************************/
+    public static int ai(CharSequence s, int aiStart, int valueStart) {
+        int ai = 0;
+        for (int i = aiStart; i < valueStart; i++) {
+            ai = ai * 10 + (s.charAt(i) - '0');
+        }
+        return ai;
+    }
+
+    // データを検証し、誤りの位置を返す（正しい場合は -1）
+    private static int validate(CharSequence s, int start, int end, int spec) {
+        if ((spec & NUMERIC) != 0) {
+            for (int i = start; i < end; i++) {
+                if (digit(s.charAt(i)) < 0) return i;
+            }
+        } else {
+            // 英数字項目は印字可能なASCII（GS1で使用できる文字の範囲）に限る
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x21 || c > 0x7E) return i;
+            }
+        }
+
+        if ((spec & DATE) != 0) {
+            int year = (s.charAt(start) - '0') * 10 + (s.charAt(start + 1) - '0');
+            int month = (s.charAt(start + 2) - '0') * 10 + (s.charAt(start + 3) - '0');
+            int day = (s.charAt(start + 4) - '0') * 10 + (s.charAt(start + 5) - '0');
+            if (month < 1 || month > 12) return start + 2;
+            // 日が00の場合は月末を表す。年は2桁のため（GS1では現在から-49～+50年）、4の倍数をうるう年とする
+            int days = month == 2 && year % 4 == 0 ? 29 : DAYS_IN_MONTH[month - 1];
+            if (day > days) return start + 4;
+        }
+
+        if ((spec & CHECK) != 0) {
+            // モジュラス10（右端のチェックデジットを除き、右から奇数桁を3倍する）
+            int sum = 0;
+            int weight = 3;
+            for (int i = end - 2; i >= start; i--) {
+                sum += (s.charAt(i) - '0') * weight;
+                weight = 4 - weight;
+            }
+            if ((10 - sum % 10) % 10 != s.charAt(end - 1) - '0') return end - 1;
+        }
+        return -1;
+    }
+
+    private static boolean startsWithSymbologyId(CharSequence s) {
+        return s.length() >= 3 && s.charAt(0) == ']' && s.charAt(1) == 'C' && s.charAt(2) == '1';
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 分解した項目を "(AI)データ" の形式（GS1の目視可能文字表記）で連結する Visitor。
+     * SOPサーバーに項目ごとに分けた形で送信するために使用する。バッファは再利用する。
+     ***********************************************************************************/
+    public static final class HriBuilder implements Visitor {
+        private final StringBuilder sb = new StringBuilder(64);
+
+        // 内容を消去する
+        public HriBuilder reset() {
+            sb.setLength(0);
+            return this;
+        }
+
+        @Override
+        public void onField(CharSequence src, int aiStart, int valueStart, int valueEnd) {
+            sb.append('(').append(src, aiStart, valueStart).append(')').append(src, valueStart, valueEnd);
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
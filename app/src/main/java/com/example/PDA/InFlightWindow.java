@@ -0,0 +1,96 @@
+/***********************************************************************************
+ * <目的>
+ * 応答待ち（送信中）の要求を相関ID（要求ファイル名から拡張子を除いたもの）ごとに管理し、
+ * 同時に応答待ちにできる要求の数を制限するクラス。
+ *
+ * <説明>
+ * - 容量が1の場合は従来どおり、応答を受け取るまで次の要求を送信しない。
+ * - 容量が2以上の場合はSOPサーバーの応答を待たずに次の要求を送信できる（パイプライン送信）。
+ *   各要求は自身の要求ファイル名に対応する応答ファイルで結果を受け取るため、
+ *   応答の到着順が送信順と異なっても正しいスキャンに対応付けられる。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 応答待ち管理クラス
+public class InFlightWindow {
+
+    private final int capacity; // 同時に応答待ちにできる要求の数
+    private final Map<String, Long> inFlight = new LinkedHashMap<>(); // 相関ID → 送信時刻（ミリ秒）
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * capacity: 同時に応答待ちにできる要求の数（1以上）
+     ***********************************************************************************/
+    public InFlightWindow(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 要求ファイル名から相関IDを作成する（拡張子を除いたもの）
+     *
+     * <引数>
+     * requestName: 要求ファイル名
+     *
+     * <戻り値>
+     * 相関ID
+     ***********************************************************************************/
+    public static String correlationId(String requestName) {
+        int dot = requestName.lastIndexOf('.');
+        return dot < 0 ? requestName : requestName.substring(0, dot);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 空きがあれば要求を応答待ちとして登録する
+     *
+     * <引数>
+     * correlationId: 相関ID
+     * now: 送信時刻（ミリ秒）
+     *
+     * <戻り値>
+     * 登録できた場合はtrue、空きがない場合はfalse
+     ***********************************************************************************/
+    public synchronized boolean tryAcquire(String correlationId, long now) {
+        if (inFlight.size() >= capacity) return false;
+        inFlight.put(correlationId, now);
+        return true;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答の受信、タイムアウト、または送信失敗により、要求を応答待ちから外す
+     *
+     * <引数>
+     * correlationId: 相関ID
+     *
+     * <戻り値>
+     * 応答待ちだった場合はtrue
+     ***********************************************************************************/
+    public synchronized boolean release(String correlationId) {
+        return inFlight.remove(correlationId) != null;
+    }
+
+    // 空きがないかどうかを返す
+    public synchronized boolean isFull() {
+        return inFlight.size() >= capacity;
+    }
+
+    // 応答待ちの件数を返す
+    public synchronized int size() {
+        return inFlight.size();
+    }
+
+    // 同時に応答待ちにできる要求の数を返す
+    public int capacity() {
+        return capacity;
+    }
+}
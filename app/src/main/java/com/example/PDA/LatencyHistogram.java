@@ -0,0 +1,127 @@
+/***********************************************************************************
+ * <目的>
+ * 処理時間の分布を固定のメモリで記録し、p50／p95／p99／最大値を求めるクラス。
+ *
+ * <説明>
+ * - 処理時間はマイクロ秒単位で、2のべき乗ごとの区間をさらに SUB_BUCKETS 個に分けたバケットに数える
+ *   （対数線形のバケット。どの値も相対誤差 1/SUB_BUCKETS 以内で記録できる）。
+ *   1µs～約19時間を544個のバケット（約4.3KB）で扱い、それより長い時間は最後のバケットに数える。
+ * - record() はロックを取らず、オブジェクトを生成しない（AtomicLongArray の加算のみ）ため、
+ *   送信・SMB呼び出しのたびに呼び出してもよい。
+ * - パーセンタイルは snapshot() の呼び出し時にバケットを走査して求める（該当するバケットの上限値を返す）。
+ * スレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 処理時間分布クラス
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // 2のべき乗ごとの区間の分割数
+    private static final int MAX_EXPONENT = 36; // 記録できる最大値（2^36 µs ≒ 19時間）
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    /***********************************************************************************
+     * <目的>
+     * 集計結果（ミリ秒）
+     ***********************************************************************************/
+    public static final class Snapshot {
+        public final long count; // 記録件数
+        public final double meanMillis; // 平均
+        public final double p50Millis; // 中央値
+        public final double p95Millis; // 95パーセンタイル
+        public final double p99Millis; // 99パーセンタイル
+        public final double maxMillis; // 最大値
+
+        Snapshot(long count, double meanMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /***********************************************************************************
+     * <目的>
+     * 処理時間を記録する
+     *
+     * <引数>
+     * nanos: 処理時間（ナノ秒。負の値は0とする）
+     ***********************************************************************************/
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(index(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        for (long max = maxMicros.get(); micros > max && !maxMicros.compareAndSet(max, micros); ) {
+            max = maxMicros.get();
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 記録件数を取得する
+     ***********************************************************************************/
+    public long count() {
+        return count.get();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 現在までの記録を集計する（記録中の値は含まれない場合がある）
+     *
+     * <戻り値>
+     * 集計結果
+     ***********************************************************************************/
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        long max = maxMicros.get();
+        double mean = n == 0 ? 0 : totalMicros.get() / 1000.0 / n;
+        return new Snapshot(n, mean, percentile(counts, n, 0.50, max), percentile(counts, n, 0.95, max),
+                percentile(counts, n, 0.99, max), max / 1000.0);
+    }
+
+    // 全件のうち割合 p 番目の値が含まれるバケットの上限値（ミリ秒。最大値を超えない）
+    private static double percentile(long[] counts, long n, double p, long max) {
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * p));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upper(i), max) / 1000.0;
+        }
+        return max / 1000.0;
+    }
+
+    // 値（µs）のバケット番号。SUB_BUCKETS 未満はそのまま、それ以上は指数と上位 SUB_BITS ビットで決める
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros); // SUB_BITS 以上
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // バケットに含まれる値（µs）の上限
+    static long upper(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS - 1 + SUB_BITS;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,160 @@
+/***********************************************************************************
+ * <目的>
+ * java.nio.file を使用してローカルディレクトリ上で要求＆応答ファイルをやり取りするクラス。
+ * 実際の共有フォルダーがない環境（Linux上の性能測定、負荷試験など）で使用する。
+ *
+ * <説明>
+ * ルートディレクトリ配下の RESPONSEFOLDER（interface/bcr/）を共有フォルダーとして扱う。
+ * 要求ファイルは一時ファイルに書き込み、ハードリンクの作成（同名ファイルがあれば失敗する）で公開する。
+ * 応答フォルダーの変更は WatchService で監視する。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.ATOMICPUBLISH;
+import static com.example.PDA.Constants.RESPONSEFOLDER;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+
+// ローカルディレクトリ通信クラス
+public class LocalSopTransport implements SopTransport {
+
+    private final Path folder; // 要求＆応答ファイルの保管フォルダー
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * root: ルートディレクトリ（この配下の RESPONSEFOLDER を使用する）
+     ***********************************************************************************/
+    public LocalSopTransport(Path root) {
+        this.folder = root.resolve(RESPONSEFOLDER);
+    }
+
+    // 保管フォルダーを返す
+    public Path getFolder() {
+        return folder;
+    }
+
+    @Override
+    public boolean probe() {
+        return Files.isDirectory(folder);
+    }
+
+    @Override
+    public void writeRequest(String fileName, String data) throws IOException {
+        Path target = folder.resolve(fileName);
+        if (!ATOMICPUBLISH) {
+            // CREATE_NEWにより、同名ファイルが存在する場合は FileAlreadyExistsException がスローされる
+            try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                out.write(data.getBytes(StandardCharsets.UTF_8));
+            }
+            return;
+        }
+
+        // 一時ファイルに全体を書き込んでから要求ファイル名で公開する
+        Path tmp = folder.resolve(SopTransport.tempName(fileName));
+        try {
+            Files.write(tmp, data.getBytes(StandardCharsets.UTF_8));
+            publish(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // 一時ファイルを要求ファイル名で公開する（同名ファイルが存在する場合は FileAlreadyExistsException）
+    private static void publish(Path tmp, Path target) throws IOException {
+        try {
+            // ハードリンクの作成は同名ファイルが存在する場合に失敗し、置き換えることはない
+            Files.createLink(target, tmp);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // ハードリンクを使用できないファイルシステム（FAT、FUSE など）では名前を変更する
+            // （オプションなしの move は同名ファイルが存在する場合に失敗する）
+            Files.move(tmp, target);
+        }
+    }
+
+    @Override
+    public boolean responseExists(String fileName) {
+        return Files.exists(folder.resolve(fileName));
+    }
+
+    @Override
+    public List<String> listResponses(String prefix) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, prefix + "*R.txt")) {
+            for (Path p : stream) {
+                names.add(p.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public InputStream openResponse(String fileName) throws IOException {
+        return Files.newInputStream(folder.resolve(fileName));
+    }
+
+    @Override
+    public void deleteResponse(String fileName) throws IOException {
+        Files.deleteIfExists(folder.resolve(fileName));
+    }
+
+    @Override
+    public Closeable watchResponses(ChangeListener listener) throws IOException {
+        WatchService service = folder.getFileSystem().newWatchService();
+        try {
+            folder.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            service.close();
+            throw e;
+        }
+
+        Thread t = new Thread(() -> watch(service, listener), "response-watch");
+        t.setDaemon(true);
+        t.start();
+        return service;
+    }
+
+    // 監視用スレッドの処理（監視が閉じられるまで変更を通知する）
+    private void watch(WatchService service, ChangeListener listener) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW: イベントが欠落した
+                    listener.onChange(event.kind() == OVERFLOW ? null : event.context().toString());
+                }
+                if (!key.reset()) {
+                    listener.onClosed(new IOException("folder is no longer accessible: " + folder));
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // 呼び出し側が閉じた
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -21,23 +21,26 @@
 package com.example.PDA;
 
 import static com.example.PDA.Constants.*;
-import static com.example.PDA.SystemTime.*;
 
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Typeface;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.provider.Settings;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.KeyEvent;
@@ -48,14 +51,14 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.*;
 
 import com.google.zxing.*;
-import com.google.zxing.common.GlobalHistogramBinarizer;
 
 import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
-
-import jcifs.smb.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -67,15 +70,55 @@ public class MainActivity extends AppCompatActivity {
     // UI要素
     private EditText hideTxt; // ユーザーの入力を隠すテキストフィールド
     private TextView lblTerminalNo, lblBarcode, lblCommunication; // ターミナル番号、バーコード、通信ラベル
+    private TextView lblStats; // 統計ラベル（送信待ち件数など）
     private View parentLayout; // 親レイアウトのビューを定義
     private Button btnTransmission; // 送信ボタン
-    private Handler pasteHandler, sendHandler, timerHandler; // ハンドラ
-    private Runnable pasteRunnable, sendRunnable, timerRunnable; // ランナブル
+    private Handler sendHandler, batchHandler; // ハンドラ
+    private Runnable sendRunnable, batchRunnable; // ランナブル
+    private ScanFramer scanFramer; // スキャンの区切りの判定
 
     //共通変数
-    private boolean flgState = false; // ステータスフラグ（未使用）
-    private static String pstrDate = "", hostName = "", status=""; // 日時
-    private static final String anExtension = ".txt"; // 拡張子
+    private static String hostName = "", status=""; // ホスト名、状態
+    private static RequestIdGenerator idGenerator; // 要求ファイル名（相関ID）の生成
+
+    // SOPサーバーとの通信（要求＆応答ファイルの送受信）
+    private SopTransport transport;
+
+    // GS1-128 ラベルの項目の連結（再利用する）
+    private final Gs1Parser.HriBuilder gs1Builder = new Gs1Parser.HriBuilder();
+
+    // バッチ送信モードの未送信レコード
+    private final ScanBatch scanBatch = new ScanBatch(BATCHSIZE, BATCHAGE * 1000L);
+
+    // 応答待ちの要求（プロセス内で共有し、同時に応答待ちにできる数を PIPELINEWINDOW に制限する）
+    private static final InFlightWindow window = new InFlightWindow(PIPELINEWINDOW);
+
+    // 応答収集（プロセス内で共有し、応答待ちの全ての要求の応答をまとめて確認する）
+    private static ResponseHarvester harvester;
+
+    // オフライン送信待ちキュー（プロセス内で共有し、アクティビティ再生成後も再送を継続する）
+    private static ScanJournal journal;
+    private static ScanJournalDrainer drainer;
+
+    // 送信パイプライン（プロセス内で共有し、検証・接続確認・書き込み・応答待ちを段階ごとのスレッドで処理する）
+    private static SendPipeline pipeline;
+
+    // 画像からのバーコード読み取り（プロセス内で共有し、読み取りの方法ごとの統計を保持する）
+    private static final DecodeEngine decodeEngine = new DecodeEngine(DECODE2D, DECODEORDER);
+
+    // 複数バーコード読み取り（プロセス内で共有し、タイルを全コアで並列に読み取る）
+    private static final ForkJoinPool decodePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final TiledMultiDecoder multiDecoder = new TiledMultiDecoder(decodePool, TILESIZE);
+
+    // 画像の一括取り込み（最初の一括取り込み時に生成する）と取り込み済み画像のハッシュ（プロセス内で共有する）
+    private BulkImporter<Uri> bulkImporter;
+    private static ContentHashCache importedHashes;
+
+    // 診断情報の定期出力（プロセス内で共有する。出力先はアプリ専用の外部ストレージ）
+    private static DiagnosticsExporter diagnosticsExporter;
+
+    // 統計表示用（前回表示時の一覧取得回数と時刻）
+    private long lastListCalls, lastStatsTime;
 
 
     //タイミング変数
@@ -86,6 +129,34 @@ public class MainActivity extends AppCompatActivity {
     // UIハンドラ
     private Handler handler = new Handler();
 
+    // 送信の状態の表示更新（UIスレッドへの投稿を送信ごとの最新の状態1回にまとめる。完了・失敗は必ず表示する）
+    private final CoalescingUpdater<SendPipeline.Job> jobUpdater =
+            new CoalescingUpdater<>(handler::post, Function.identity(), this::showJobState);
+
+    // 再送した要求の応答を読み捨てるリスナー（結果は表示しない）
+    private static final ResponseHarvester.Listener IGNORE_RESPONSE = new ResponseHarvester.Listener()
+    {
+        @Override
+        public void onResponse(String responseName, ResponseParser.Response response) {}
+
+        @Override
+        public void onTimeout(String responseName) {}
+
+        @Override
+        public void onError(String responseName, IOException e) {}
+    };
+
+    // 統計表示の更新用Runnable（1秒ごと）
+    private final Runnable statsRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            updateStats();
+            handler.postDelayed(this, 1000);
+        }
+    };
+
     // クリア用のRunnable
     private Runnable clearRunnable = new Runnable()
     {
@@ -125,6 +196,16 @@ public class MainActivity extends AppCompatActivity {
         checkStoragePermission(); // ストレージの許可を確認
 
         hostName = Build.MODEL; // デバイスのホスト名を取得
+        if (idGenerator == null) idGenerator = new RequestIdGenerator(hostName, getDeviceId()); // 要求IDの生成を準備
+
+        transport = SopTransportFactory.create(TRANSPORT); // 設定された通信方式を生成
+
+        if (harvester == null) harvester = new ResponseHarvester(transport, idGenerator.prefix(),
+                new ResponseParser(Charset.forName(RESPONSECHARSET), RESPONSEMAXBYTES, BATCHSIZE)); // 応答収集を生成
+        openJournal(); // オフライン送信待ちキューを開き、再送を開始
+        if (pipeline == null) pipeline = new SendPipeline(transport, harvester, window, idGenerator, journal, waitTimeMillis); // 送信パイプラインを生成
+        handler.post(statsRunnable); // 統計表示の更新を開始
+        startDiagnosticsExport(); // 診断情報の定期出力を開始
 
        // handler.postDelayed(clearRunnable, clearDelayMillis); // クリア処理の遅延実行
 
@@ -146,6 +227,211 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    /***********************************************************************************
+     * <目的>
+     * アクティビティの破棄時に、統計表示の更新と画像の一括取り込みを停止します。
+     * 送信待ちキューの再送はプロセスが存続する限りバックグラウンドで継続します。
+     *
+     * <引数>
+     * なし
+     *
+     * <戻り値>
+     * なし
+     ***********************************************************************************/
+    @Override
+    protected void onDestroy()
+    {
+        handler.removeCallbacks(statsRunnable);
+        if (bulkImporter != null) bulkImporter.shutdown();
+        super.onDestroy();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * オフライン送信待ちキュー（ジャーナル）を開き、再送スレッドを開始する。
+     * 前回の起動時に未送信のまま残ったスキャンも、ここから再送される。
+     *
+     * <引数>
+     * なし
+     *
+     * <戻り値>
+     * なし
+     ***********************************************************************************/
+    private void openJournal()
+    {
+        if (!OFFLINEQUEUE || journal != null) return;
+
+        try
+        {
+            journal = new ScanJournal(getFilesDir().toPath().resolve("journal"));
+            // 再送した要求の応答も応答収集で受け取り、共有フォルダーに残らないようにする
+            drainer = new ScanJournalDrainer(journal, transport, record ->
+                    harvester.register(ResponseHarvester.responseName(record.fileName),
+                            waitTimeMillis, IGNORE_RESPONSE));
+            drainer.start();
+        }
+        catch (IOException e)
+        {
+            journal = null;
+            showErrorOnUI(PDAERR13); // エラーメッセージの表示
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 診断情報（段階ごとの処理時間の分布、SMBの操作の回数）の定期出力を開始する。
+     * 出力先は getExternalFilesDir("diagnostics")/diagnostics.tsv で、adb pull で回収する。
+     *
+     * <引数>
+     * なし
+     *
+     * <戻り値>
+     * なし
+     ***********************************************************************************/
+    private void startDiagnosticsExport()
+    {
+        if (DIAGEXPORTINTERVAL <= 0 || diagnosticsExporter != null) return;
+
+        File dir = getExternalFilesDir("diagnostics");
+        if (dir == null) return; // 外部ストレージが使用できない場合は出力しない
+        diagnosticsExporter = new DiagnosticsExporter(new File(dir, "diagnostics.tsv").toPath(), hostName + "\t" + getDeviceId());
+        diagnosticsExporter.start(DIAGEXPORTINTERVAL);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 診断画面（統計ラベルの長押しで表示）。段階ごとの処理時間の分布（p50／p95／p99／最大）、
+     * SMBの操作ごとの呼び出し回数とエラー回数、SMBセッションの接続回数、
+     * 応答の検知方法（変更の監視または定期的な確認）と一覧取得・変更通知の回数を表示する。
+     * 「出力」で診断情報を直ちにファイルに出力する。
+     *
+     * <引数>
+     * なし
+     *
+     * <戻り値>
+     * なし
+     ***********************************************************************************/
+    private void showDiagnostics()
+    {
+        StringBuilder report = new StringBuilder(Diagnostics.report());
+        if (transport instanceof SmbSopTransport)
+        {
+            SmbSessionManager session = ((SmbSopTransport) transport).getSession();
+            report.append(String.format(Locale.US, "session\tconnects %d\treconnects %d\tcached %d\n",
+                    session.getConnects(), session.getReconnects(), session.getCachedUses()));
+        }
+        else if (transport instanceof Smb2SopTransport)
+        {
+            Smb2SessionManager session = ((Smb2SopTransport) transport).getSession();
+            report.append(String.format(Locale.US, "session\tconnects %d\treconnects %d\tcached %d\n",
+                    session.getConnects(), session.getReconnects(), session.getCachedUses()));
+        }
+        if (harvester != null)
+        {
+            report.append(String.format(Locale.US, "response\t%s\tlist %d\tnotify %d\tlost %d\tnot-ready %d\n",
+                    harvester.isWatching() ? "watch" : "poll", harvester.getListCalls(),
+                    harvester.getNotifications(), harvester.getWatchLosses(), harvester.getNotReadyReads()));
+        }
+
+        TextView view = new TextView(this);
+        view.setText(report);
+        view.setTypeface(Typeface.MONOSPACE);
+        view.setTextSize(10);
+        view.setHorizontallyScrolling(true);
+        view.setTextIsSelectable(true);
+        ScrollView scroll = new ScrollView(this);
+        scroll.addView(view);
+
+        AlertDialog.Builder dialog = new AlertDialog.Builder(this)
+                .setTitle("診断")
+                .setView(scroll)
+                .setPositiveButton("閉じる", null);
+        if (diagnosticsExporter != null)
+        {
+            dialog.setNeutralButton("出力", (d, which) -> new Thread(() -> {
+                try
+                {
+                    String path = diagnosticsExporter.export().toString();
+                    runOnUiThread(() -> displayToast(path));
+                }
+                catch (IOException e)
+                {
+                    showErrorOnUI(PDAERR13);
+                }
+            }).start());
+        }
+        dialog.show();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 統計ラベルに送信待ち件数、最古の送信待ちの経過時間、応答確認の呼び出し回数（回/秒）、
+     * 送信パイプラインの段階ごとのキューの長さと平均待ち時間を表示する
+     *
+     * <引数>
+     * なし
+     *
+     * <戻り値>
+     * なし
+     ***********************************************************************************/
+    private void updateStats()
+    {
+        StringBuilder stats = new StringBuilder();
+        long now = System.currentTimeMillis();
+
+        // 応答確認の呼び出し回数（前回表示からの平均）
+        long listCalls = harvester.getListCalls();
+        if (lastStatsTime > 0 && now > lastStatsTime)
+        {
+            double rate = (listCalls - lastListCalls) * 1000.0 / (now - lastStatsTime);
+            stats.append(String.format(Locale.US, "ﾎﾟｰﾘﾝｸﾞ：%.1f回/秒", rate));
+        }
+        lastListCalls = listCalls;
+        lastStatsTime = now;
+
+        try
+        {
+            long depth = journal != null ? journal.depth() : 0;
+            if (depth > 0)
+            {
+                long age = journal.oldestAgeMillis(now) / 1000;
+                stats.append("  ").append(PDAERR17).append("：").append(depth).append("件（最古 ").append(age).append("秒）");
+            }
+        }
+        catch (IOException e)
+        {
+            stats.append("  ").append(PDAERR13);
+        }
+
+        // 段階ごとのキューの長さ／平均待ち時間＋平均処理時間
+        stats.append("\n");
+        for (SendPipeline.StageStats stage : pipeline.stats())
+        {
+            stats.append(String.format(Locale.US, "%s %d/%.0f+%.0fms  ",
+                    stage.name, stage.depth, stage.avgWaitMillis, stage.avgRunMillis));
+        }
+
+        // 画像読み取りの方法ごとの読み取れた回数／試行回数／平均処理時間
+        stats.append("\n");
+        for (DecodeEngine.StrategyStats strategy : decodeEngine.stats())
+        {
+            if (strategy.attempts == 0) continue;
+            stats.append(String.format(Locale.US, "%s %d/%d/%.0fms  ", strategy.strategy, strategy.hits, strategy.attempts, strategy.avgMillis));
+        }
+
+        // 画像の一括取り込みの進捗（処理済み／選択枚数、処理速度、重複・失敗の枚数）
+        if (bulkImporter != null)
+        {
+            BulkImporter.Progress progress = bulkImporter.progress();
+            if (!progress.isFinished())
+            {
+                stats.append(String.format(Locale.US, "\n取込 %d/%d %.1f枚/秒 重複 %d 失敗 %d",
+                        progress.done, progress.submitted, progress.imagesPerSecond, progress.duplicates, progress.failed));
+            }
+        }
+        lblStats.setText(stats);
+    }
+
     /***********************************************************************************
      * <目的>
      * UIコンポーネントを初期化する
@@ -162,6 +448,7 @@ public class MainActivity extends AppCompatActivity {
         lblTerminalNo = findViewById(R.id.Lbl_TerminalNo);
         lblBarcode = findViewById(R.id.Lbl_Barcode);
         lblCommunication = findViewById(R.id.Lbl_Communication);
+        lblStats = findViewById(R.id.Lbl_Stats);
         btnTransmission = findViewById(R.id.Btn_Transmission);
         parentLayout = findViewById(R.id.parent_layout);
     }
@@ -196,40 +483,42 @@ public class MainActivity extends AppCompatActivity {
 //            return false;
 //        });
 
-          // テキストフィールドの内容変更時の処理を設定します
-          hideTxt.addTextChangedListener(new TextWatcher() {
-              private Handler handler = new Handler();
-              private Runnable runnable;
-
-              @Override
-              public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                  // ここでは何もしません
-              }
-
-              @Override
-              public void onTextChanged(CharSequence s, int start, int before, int count) {
-                  // テキストが変更されたときに2秒後に入力処理を実行するようにスケジュールします
-                  if (runnable != null) {
-                      handler.removeCallbacks(runnable);
-                  }
-                  runnable = new Runnable() {
-                      @Override
-                      public void run() {
-                          if (!status.equals(PDAERR2) && !status.equals(PDAERR3)) {
-                              processInput(hideTxt.getText().toString());
-                              hideTxt.requestFocus();
-                              hideKeyboard();
-                          }
-                      }
-                  };
-                  handler.postDelayed(runnable, 1000);
-              }
-              @Override
-              public void afterTextChanged(Editable s) {
-                  // ここでは何もしません
-                  // ここでは何もしません
-              }
-          });
+        // スキャンの終わり（終端文字、スキャナーの連続入力の途切れ、手入力の途切れ）を判定します
+        scanFramer = new ScanFramer(SCANSUFFIX, SCANBURSTGAP, SCANMANUALDELAY, new ScanFramer.Timer()
+        {
+            @Override
+            public void schedule(Runnable task, long delayMillis) { handler.postDelayed(task, delayMillis); }
+
+            @Override
+            public void cancel(Runnable task) { handler.removeCallbacks(task); }
+        }, SystemClock::uptimeMillis, this::onScan);
+
+        // テキストフィールドの内容変更時にスキャンの終わりを判定します
+        hideTxt.addTextChangedListener(new TextWatcher()
+        {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s)
+            {
+                scanFramer.onTextChanged(s);
+            }
+        });
+
+        // エンターキーが押された場合は直ちにスキャンの終わりとします
+        hideTxt.setOnEditorActionListener((v, actionId, event) ->
+        {
+            if (actionId == EditorInfo.IME_ACTION_DONE || (event != null && event.getKeyCode() == KeyEvent.KEYCODE_ENTER && event.getAction() == KeyEvent.ACTION_DOWN))
+            {
+                scanFramer.flush();
+                return true;
+            }
+            return false;
+        });
 
         // テキストフィールドのテキスト変更リスナーを設定します
         hideTxt.addTextChangedListener(new TextWatcher()
@@ -248,20 +537,41 @@ public class MainActivity extends AppCompatActivity {
         });
 
         // エラーステータスに応じてテキストフィールドの有効/無効を設定します
-        hideTxt.setEnabled(!status.equals(PDAERR2) && !status.equals(PDAERR3));
+        hideTxt.setEnabled(!isBusy());
 
         // 送信ボタンのクリックリスナーを設定します
         btnTransmission.setOnClickListener(v -> onSendTimerTick());
 
-        // ペースト、送信、タイマーのハンドラを初期化します
-        pasteHandler = new Handler();
+        // 統計ラベルの長押しで診断画面を表示します
+        lblStats.setOnLongClickListener(v -> {
+            showDiagnostics();
+            return true;
+        });
+
+        // 送信、バッチのハンドラを初期化します
         sendHandler = new Handler();
-        timerHandler = new Handler();
+        batchHandler = new Handler();
 
-        // ペースト、送信、タイマーのコールバック処理を定義します
-        pasteRunnable = this::onPasteTimerTick;
+        // 送信、バッチのコールバック処理を定義します
         sendRunnable = this::onSendTimerTick;
-        timerRunnable = this::onMyTimerTick;
+        batchRunnable = this::onBatchTimerTick;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 入力を受け付けられない状態（送信中・処理中）かどうかを判定する。
+     * パイプライン送信（PIPELINEWINDOW が2以上）の場合は、応答待ちの枠に空きがある限り入力を受け付ける。
+     *
+     * <引数>
+     * なし
+     *
+     * <戻り値>
+     * 入力を受け付けられない場合はtrue
+     ***********************************************************************************/
+    private boolean isBusy()
+    {
+        if (window.capacity() > 1) return window.isFull();
+        return status.equals(PDAERR2) || status.equals(PDAERR3);
     }
 
     private void hideKeyboard() {
@@ -317,29 +627,31 @@ public class MainActivity extends AppCompatActivity {
         {
             // 最後のバーコード読み取り時間を更新
             lastBarcodeReadingTime = System.currentTimeMillis();
-            // テキストフィールドにデータをセット
+            // テキストフィールドにデータをセットし、直ちに1回分のスキャンとして処理
             hideTxt.setText(data);
-            // ペーストタイマーを開始（500ミリ秒後に実行）
-            pasteHandler.postDelayed(pasteRunnable, 500);
+            scanFramer.flush();
         }
     }
 
     /***********************************************************************************
      * <目的>
-     * ペーストタイマーがトリガーされたときの処理
+     * 1回分のスキャンの入力が終わったときの処理。入力を受け付けられる状態であれば入力データを処理する
      *
      * <引数>
-     * なし
+     * text: 入力中の文字列
+     * start: スキャンの始まりの位置（先頭の終端文字を除く）
+     * end: スキャンの終わりの位置（終端文字を除く）
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    private void onPasteTimerTick()
+    private void onScan(CharSequence text, int start, int end)
     {
-        // ペーストタイマーをキャンセル
-        pasteHandler.removeCallbacks(pasteRunnable);
-        // 入力データの処理を実行
-        processInput(hideTxt.getText().toString());
+        if (isBusy()) return;
+
+        processInput(text.subSequence(start, end).toString());
+        hideTxt.requestFocus();
+        hideKeyboard();
     }
 
     /***********************************************************************************
@@ -353,92 +665,70 @@ public class MainActivity extends AppCompatActivity {
      * なし
      ***********************************************************************************/
     private void processInput(String input)
+    {
+        processInput(input, null);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 入力データの処理を行う。バッチ送信モードでバッチに追加した場合は、そのレコードを含む要求が
+     * 送信を受け付けられた後に accepted を呼び出す
+     *
+     * <引数>
+     * input: 入力されたテキスト
+     * accepted: バッチのレコードが送信を受け付けられたときの処理（null: なし）
+     *
+     * <戻り値>
+     * バッチに追加した場合はtrue
+     ***********************************************************************************/
+    private boolean processInput(String input, Runnable accepted)
     {
         // 入力が空の場合は処理を中断
-        if (input.isEmpty()) return;
+        if (input.isEmpty()) return false;
+
+        boolean queued = false;
 
         // 通信ラベルをクリア
         lblCommunication.setText("");
 
-        // 入力データがCode39かどうかをチェック
-        boolean isCode39 = (input.startsWith("*") && input.length() > 1 && (input.charAt(1) == 'T' || input.charAt(1) == 'P')) ||
-                (!input.startsWith("*") && (input.charAt(0) == 'T' || input.charAt(0) == 'P'));
-
-        // Code39の場合の処理
-        if (isCode39)
+        // 入力データの種類（Code39の端末No／Code128のバーコード）を判定して検証
+        switch (BarcodeValidator.classify(input, CODE39CHECKDIGIT, CODE128SETS))
         {
-            if (validateCode39(input))
-            {
+            case CODE39:
                 // テキストをターミナル番号として設定
                 lblTerminalNo.setText(input);
-            }
-            else
-            {
-                // エラーメッセージを表示
-                showErrorOnUI(PDAERR11);
-            }
-        }
-        else
-        { // Code128の場合の処理
-            if (validateCode128(input))
-            {
+                break;
+            case CODE128:
+                String barcode = input;
+
+                // GS1-128 ラベルの場合は項目に分解して検証し、"(AI)データ" の形式に変換
+                // （項目が1つもない場合も形式の誤りとする）
+                if (GS1SPLIT && Gs1Parser.isGs1(input))
+                {
+                    if (Gs1Parser.parse(input, gs1Builder.reset()) <= 0)
+                    {
+                        showErrorOnUI(PDAERR11);
+                        break;
+                    }
+                    barcode = gs1Builder.toString();
+                }
+
                 // テキストをバーコードとして設定
-                lblBarcode.setText(input);
-            }
-            else
-            {
+                lblBarcode.setText(barcode);
+
+                // バッチ送信モードの場合はバッチに追加
+                if (BATCHMODE) queued = queueBatch(barcode, accepted);
+                break;
+            default:
                 // エラーメッセージを表示
                 showErrorOnUI(PDAERR11);
-            }
+                break;
         }
 
         // 入力フィールドをクリアし、ハンドラをリセット
         hideTxt.setText("");
         resetHandler(true);
-    }
-
-    /***********************************************************************************
-     * <目的>
-     * Code39形式の文字列のバリデーションを行う
-     *
-     * <引数>
-     * content: バリデーションする文字列
-     *
-     * <戻り値>
-     * バリデーション結果 (true: 有効なCode39形式, false: 無効なCode39形式)
-     ***********************************************************************************/
-    private boolean validateCode39(String content)
-    {
-        // Code39の開始と終了文字が存在する場合、それらを除去
-        if (content.startsWith("*") && content.endsWith("*"))
-        {
-            // 長さが2未満の場合は無効なCode39形式として処理
-            if (content.length() < 3) return false;
-            content = content.substring(1, content.length() - 1);
-        }
-        else
-        {
-            // 開始と終了文字がない場合、長さが0の場合は無効なCode39形式として処理
-            if (content.length() < 1) return false;
-        }
-
-        // 正規表現でのバリデーション
-        return content.matches("[A-Z0-9\\-\\. \\$/\\+%]+");
-    }
-
-    /***********************************************************************************
-     * <目的>
-     * Code128形式の文字列のバリデーションを行う
-     *
-     * <引数>
-     * content: バリデーションする文字列
-     *
-     * <戻り値>
-     * バリデーション結果 (true: 有効なCode128形式, false: 無効なCode128形式)
-     ***********************************************************************************/
-    private boolean validateCode128(String content) {
-        // 文字列内の各文字がASCII文字の範囲内にあるかどうかをチェック
-        return content.chars().allMatch(c -> c >= 0 && c <= 127);
+        return queued;
     }
 
     /***********************************************************************************
@@ -455,6 +745,12 @@ public class MainActivity extends AppCompatActivity {
         // 送信ハンドラのコールバックを削除
         sendHandler.removeCallbacks(sendRunnable);
 
+        // バッチ送信モードで未送信のレコードがある場合は、閾値を待たずに送信する
+        if (BATCHMODE && scanBatch.size() > 0) {
+            flushBatch();
+            return;
+        }
+
         // バーコードおよび端末番号が空でないことを確認し、それぞれのテキストをサーバーに送信する
         if (lblTerminalNo.getText().toString().isEmpty() || lblBarcode.getText().toString().isEmpty()) {
             // バーコードまたは端末番号が空の場合はエラーメッセージを表示して処理を中断
@@ -464,348 +760,365 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // NetworkTaskを実行してサーバーにデータを送信
-        new NetworkTask(success -> {}).execute();
+        // 送信パイプラインでサーバーにデータを送信
+        String barcode = lblBarcode.getText().toString();
+        String data = lblTerminalNo.getText().toString() + barcode;
+        send(data + "\n", barcode, null);
     }
 
     /***********************************************************************************
      * <目的>
-     * バックグラウンドでサーバーへのデータ送信を処理し、結果をUIに反映させる
+     * 送信パイプラインに送信を依頼する。受け付けられなかった場合は送信中メッセージを表示する。
      *
      * <引数>
-     * callback - ファイル作成のコールバック
+     * data: 要求ファイルに書き込むデータ
+     * label: 応答の表示に使用するラベル（バーコード）
+     * batch: バッチ送信するレコード（1件ずつの送信の場合はnull）
      *
      * <戻り値>
-     * 成功した場合はtrue、失敗した場合はfalse
+     * 受け付けられた場合はtrue、応答待ちの枠に空きがない場合やパイプラインが満杯の場合はfalse
      ***********************************************************************************/
-    private class NetworkTask extends AsyncTask<Void, Void, Boolean>
+    private boolean send(String data, String label, List<ScanBatch.Record> batch)
     {
-        // コールバックとエラーメッセージを保持するためのフィールド
-        private final FileCreationCallback callback;
-        private String errorMessage = "";
-
-        // コンストラクタ
-        NetworkTask(FileCreationCallback callback)
+        if (!pipeline.submit(data, label, batch, jobUpdater::update))
         {
-            this.callback = callback; // コールバックを初期化
+            showErrorOnUI(PDAERR2);
+            return false;
         }
+        return true;
+    }
 
-        /*
-         * バックグラウンドで長時間かかる操作を非同期で実行し、UIスレッドをブロックせずにアプリのレスポンス性を確保します。
-         * このメソッドでは、ネットワーク通信やファイル操作などの処理を行います。
-         */
-        @Override
-        protected Boolean doInBackground(Void... voids)
+    /***********************************************************************************
+     * <目的>
+     * バッチ送信モードで、検証済みの端末No／バーコードの組をバッチに追加する。
+     * 件数の閾値に達した場合は直ちに送信し、最初の1件の場合は最大待ち時間後の送信を予約する。
+     *
+     * <引数>
+     * barcode: バーコード
+     * accepted: レコードが送信を受け付けられたときの処理（null: なし）
+     *
+     * <戻り値>
+     * バッチに追加した場合はtrue
+     ***********************************************************************************/
+    private boolean queueBatch(String barcode, Runnable accepted)
+    {
+        String terminalNo = lblTerminalNo.getText().toString();
+        if (terminalNo.isEmpty())
         {
-            try
-            {
-                // UIスレッドでエラーメッセージを表示
-                runOnUiThread(() -> showErrorOnUI(PDAERR2));
-
-                Thread.sleep(100);
-
-                // ハンドラのリセット
-                resetHandler(true);
-
-                // ステータスフラグが立っているか、サーバーへの接続ができないか、ファイルの送信ができない場合は処理を中断
-                if (flgState || !conServer() || !fileSend())
-                {
-                    return false;
-                }
-                // 公開フォルダの監視
-                return pubfMonitoring();
-            }
-            catch (Exception ex)
-            {
-                errorMessage = PDAERR15;
-                return false;
-            }
+            // 端末Noが未読込の場合はバッチに追加しない
+            showErrorOnUI(PDAERR1);
+            return false;
         }
 
-        /*
-         * doInBackground メソッドが完了した後、UIスレッドで結果を処理します。
-         * 通常は、バックグラウンド処理の結果をもとにUIの更新や追加の処理を行います。
-         */
-        @Override
-        protected void onPostExecute(Boolean result)
+        boolean full = scanBatch.add(terminalNo, barcode, accepted, System.currentTimeMillis());
+        if (full)
         {
-            // エラーメッセージの表示
-            runOnUiThread(() -> showErrorOnUI(result ? "" : errorMessage));
-
-            resetHandler(false);
-
-            // コールバックの実行
-            if (callback != null) callback.onFileCreationComplete(result);
+            flushBatch();
+        }
+        else if (scanBatch.size() == 1)
+        {
+            batchHandler.postDelayed(batchRunnable, BATCHAGE * 1000L);
         }
+        return true;
     }
 
     /***********************************************************************************
      * <目的>
-     * サーバーへの接続を確立し、共有フォルダーの存在とディレクトリであることを確認する
+     * バッチの最大待ち時間が経過したときの処理。送信対象であればバッチを送信する。
      *
      * <引数>
      * なし
      *
      * <戻り値>
-     * 成功した場合はtrue、失敗した場合はfalse
+     * なし
      ***********************************************************************************/
-    private boolean conServer()
+    private void onBatchTimerTick()
     {
-        try
-        {
-            // サーバーへのパスを構築。SMBプロトコルを使用して、共有フォルダーのパスを作成します。
-            // SOPFOLDERとRESPONSEFOLDERは定数として定義されています。これらは共有フォルダーへのパスを構築するために使用されます。
-            String serverPath = "smb:" + SOPFOLDER + RESPONSEFOLDER;
-
-            // 認証情報を設定（TODO: ユーザー名、ドメイン、パスワードは環境に合わせて変更する）
-            NtlmPasswordAuthentication auth = new NtlmPasswordAuthentication("INYKGW", "SRVYF03", "Srvyf03");
-
-            // サーバーフォルダーのインスタンスを作成
-            SmbFile serverFolder = new SmbFile(serverPath, auth);
-
-            // サーバーフォルダーが存在し、ディレクトリであるかを確認
-            return serverFolder.exists() && serverFolder.isDirectory();
-        }
-        catch (Exception e)
+        batchHandler.removeCallbacks(batchRunnable);
+        if (scanBatch.isDue(System.currentTimeMillis()))
         {
-            runOnUiThread(() -> showErrorOnUI(PDAERR15)); // エラーメッセージの表示
-            throw new RuntimeException(e);
+            flushBatch();
         }
     }
 
     /***********************************************************************************
      * <目的>
-     * ファイルの送信を行う。新しいファイルを作成し、指定されたデータを書き込んで送信を試みます。
-     * 送信が成功した場合、ステータスフラグを更新してtrueを返します。
-     * 送信に失敗した場合はエラーメッセージを表示し、ステータスフラグを更新してfalseを返します。
+     * 未送信のレコード（最大で件数の閾値まで）を1つの要求ファイルにまとめて送信する。
+     * レコードはパイプラインが受け付けた（応答待ちの枠を確保した）後にバッチから取り除き、
+     * レコードの受け付け時の処理を呼び出す。応答待ちの枠に空きがない場合や、パイプラインが満杯で
+     * 受け付けられなかった場合は、レコードをバッチに残して1秒後に再試行する。
+     * 閾値を超えて残ったレコードも同様に1秒後に送信する。
      *
      * <引数>
      * なし
      *
      * <戻り値>
-     * 送信が成功した場合はtrue、失敗した場合はfalse
+     * なし
      ***********************************************************************************/
-    private boolean fileSend()
+    private void flushBatch()
     {
-        try (BufferedWriter textFile = new BufferedWriter(new OutputStreamWriter(new SmbFileOutputStream(createNewFile()))))
+        batchHandler.removeCallbacks(batchRunnable);
+        if (window.isFull())
         {
-            // 送信するデータを生成し、ファイルに書き込む
-            String data = lblTerminalNo.getText().toString() + lblBarcode.getText().toString();
-            textFile.write(data);
-            textFile.newLine();
-            flgState = true; // ステータスフラグを更新
-            return true; // 送信成功を返す
+            batchHandler.postDelayed(batchRunnable, 1000);
+            return;
         }
-        catch (IOException e)
+
+        List<ScanBatch.Record> batch = scanBatch.peek();
+        if (send(ScanBatch.format(batch), "", batch))
         {
-            runOnUiThread(() -> showErrorOnUI(PDAERR13)); // エラーメッセージの表示
-            throw new RuntimeException(e);
+            scanBatch.remove(batch.size());
+            for (ScanBatch.Record record : batch)
+            {
+                if (record.accepted != null) record.accepted.run();
+            }
+        }
+        if (scanBatch.size() > 0)
+        {
+            batchHandler.postDelayed(batchRunnable, 1000);
         }
     }
 
     /***********************************************************************************
      * <目的>
-     * 新しいファイルを作成します。ファイル名はホスト名、現在の日時、および拡張子から構成されます。
-     * 作成されたファイルのパスは指定された共有フォルダーにあります。
+     * 端末識別子（ANDROID_ID）を取得します。取得できない場合は"0"を返します。
      *
      * <引数>
      * なし
      *
      * <戻り値>
-     * 作成されたSmbFileオブジェクト
-     * @throws IOException ファイルの作成に失敗した場合
+     * 端末識別子
      ***********************************************************************************/
-    private SmbFile createNewFile() throws IOException
+    private String getDeviceId()
     {
-        SystemTime st = new SystemTime();
-
-        // 現在日時を取得
-        getLocalTime(st);
-        pstrDate = String.format("%04d%02d%02d%02d%02d%02d", st.Year, st.Month, st.Day, st.Hour, st.Minute, st.Second);
-
-        // サーバーへのパスを構築。SMBプロトコルを使用して、共有フォルダーのパスを作成します。
-        // SOPFOLDERとRESPONSEFOLDERは定数として定義されています。これらは共有フォルダーへのパスを構築するために使用されます。
-        String filePath = "smb:" + SOPFOLDER + RESPONSEFOLDER + hostName + "_" + pstrDate + anExtension;
-
-        // 認証情報を設定（TODO: ユーザー名、ドメイン、パスワードは環境に合わせて変更する）
-        NtlmPasswordAuthentication auth = new NtlmPasswordAuthentication("INYKGW", "SRVYF03", "Srvyf03");
+        String id = Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID);
+        return id == null || id.isEmpty() ? "0" : id;
+    }
 
-        // 新しいファイルを作成
-        SmbFile file = new SmbFile(filePath, auth);
-        if (!file.exists())
-        {
-            file.createNewFile();
-        }
-        else
+    /***********************************************************************************
+     * <目的>
+     * 送信の状態を表示に反映します（UIスレッドで呼び出されます）。
+     * 送信中・応答待ちの間はクリアを遅らせ、完了後は通常の遅延でクリアします。
+     * パイプライン送信では応答の到着順が送信順と異なることがあるため、結果にラベルを付けて表示します。
+     *
+     * <引数>
+     * job: 状態が変わった送信
+     *
+     * <戻り値>
+     * なし
+     ***********************************************************************************/
+    private void showJobState(SendPipeline.Job job)
+    {
+        switch (job.state())
         {
-            showErrorOnUI(PDAERR16); // エラーメッセージの表示
-            resetHandler(false);
-            flgState = false; // ステータスフラグを更新
-            throw new IOException(PDAERR16); // IOExceptionをスロー
+            case SENDING:
+                lblCommunication.setText(PDAERR2); // 送信中メッセージを表示
+                resetHandler(true);
+                break;
+            case AWAITING:
+                lblCommunication.setText(PDAERR3); // 処理中メッセージを表示
+                resetHandler(true);
+                break;
+            case DONE:
+                // バッチ送信の場合は、レコードごとの結果に対応付けた内容を表示する
+                String content = job.batch() == null && window.capacity() > 1 ? job.label() + "：" + job.result() : job.result();
+                lblCommunication.setText(content); // 内容を表示
+                resetHandler(false);
+                break;
+            default:
+                lblCommunication.setText(job.result()); // エラーメッセージを表示
+                resetHandler(false);
+                break;
         }
-        return file; // 作成されたファイルを返す
     }
 
     /***********************************************************************************
      * <目的>
-     * 公衆監視を開始します。1秒ごとにタイマーハンドラを呼び出します。
+     * ファイル選択ダイアログを開くメソッドです。画像ファイルのみを選択できます。
      *
      * <引数>
      * なし
      *
      * <戻り値>
-     * 常にfalse
+     * なし
      ***********************************************************************************/
-    private boolean pubfMonitoring()
+    private void openFileSelector()
     {
-        timerHandler.postDelayed(timerRunnable, 1000); // タイマーハンドラを1秒ごとに実行
-        return false; // 常にfalseを返す
+        // ファイル選択用のインテントを作成
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("image/*"); // 画像ファイルのみを選択できるように設定
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true); // 複数の画像を選択できるように設定
+        startActivityForResult(intent, REQUEST_CODE_SELECT_FILE); // アクティビティの起動
     }
 
     /***********************************************************************************
      * <目的>
-     * タイマーがタイムアウトした際の処理を行います。タイマーハンドラを削除し、新しいタイマーネットワークタスクを実行します。
+     * startActivityForResult() メソッドで開始されたアクティビティからの結果を受け取るためのメソッドです。
+     * 選択されたファイルが画像である場合、その画像を処理するメソッドを呼び出します。
      *
      * <引数>
-     * なし
+     * requestCode: リクエストコード
+     * resultCode: 結果コード
+     * data: 受け取ったデータ
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    private void onMyTimerTick()
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data)
     {
-        timerHandler.removeCallbacks(timerRunnable); // タイマーハンドラを削除
-        new TimerNetworkTask().execute(); // 新しいタイマーネットワークタスクを実行
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_CODE_SELECT_FILE && resultCode == RESULT_OK && data != null)
+        {
+            ClipData clip = data.getClipData();
+            if (clip != null && clip.getItemCount() > 1)
+            {
+                importImages(clip); // 複数の画像を一括取り込み
+            }
+            else
+            {
+                // 選択されたファイルの処理を開始
+                processImageFromUri(clip != null ? clip.getItemAt(0).getUri() : data.getData());
+            }
+        }
     }
 
     /***********************************************************************************
      * <目的>
-     * タイマータスクを実行するための非同期タスクです。指定されたファイルを削除し、タイムアウトのチェックを行います。
-     * タイマータスクが完了すると、エラーメッセージを表示し、ハンドラをリセットします。
+     * 選択された複数の画像を一括取り込みする。画像は別スレッドから順にワーカーに渡し、
+     * 読み取れたバーコードは読み取り順に入力データとして処理する。
+     * 取り込み済み（内容が同じ）の画像は読み取りを行わない。
+     * 読み取った全てのバーコードを送信するため、バッチ送信モードでのみ使用できる
+     * （1件ずつの送信では、送信前に次のバーコードで上書きされる）。
      *
      * <引数>
-     * なし
+     * clip: 選択された画像のURI
      *
      * <戻り値>
-     * Boolean: ファイルの削除が成功したかどうか
+     * なし
      ***********************************************************************************/
-    private class TimerNetworkTask extends AsyncTask<Void, Void, Boolean>
+    private void importImages(ClipData clip)
     {
-        private String errorMessage = ""; // エラーメッセージの初期化
-
-        @Override
-        protected Boolean doInBackground(Void... voids)
+        if (!BATCHMODE)
         {
-            try
-            {
-                runOnUiThread(() -> showErrorOnUI(PDAERR3)); // UIスレッドでエラーメッセージを表示
-                resetHandler(true); // ハンドラのリセット
+            showErrorOnUI(PDAERR18); // エラーメッセージの表示
+            return;
+        }
 
-                // サーバーへのパスを構築。SMBプロトコルを使用して、共有フォルダーのパスを作成します。
-                // SOPFOLDERとRESPONSEFOLDERは定数として定義されています。これらは共有フォルダーへのパスを構築するために使用されます。
-                String filePath = "smb:" + SOPFOLDER + RESPONSEFOLDER + hostName + "_" + pstrDate + "R"+ anExtension;
+        try
+        {
+            if (importedHashes == null) importedHashes = new ContentHashCache(getFilesDir().toPath().resolve("imported"));
+        }
+        catch (IOException e)
+        {
+            showErrorOnUI(PDAERR13); // エラーメッセージの表示
+            return;
+        }
 
-                // 認証情報を設定（TODO: ユーザー名、ドメイン、パスワードは環境に合わせて変更する）
-                NtlmPasswordAuthentication auth = new NtlmPasswordAuthentication("INYKGW", "SRVYF03", "Srvyf03");
+        if (bulkImporter == null)
+        {
+            int threads = Math.min(IMPORTTHREADS, Runtime.getRuntime().availableProcessors());
+            bulkImporter = new BulkImporter<>(threads, IMPORTQUEUE, getContentResolver()::openInputStream,
+                    this::decodeImageData, decodeEngine, importedHashes, this::onImageImported);
+        }
 
-                // 指定されたファイルを削除
-                SmbFile file = new SmbFile(filePath, auth);
-                if (file.exists())
-                {
-                    // ファイルが存在する場合、その内容を読み込む
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream())))
-                    {
-                        StringBuilder fileContent = new StringBuilder();
-                        String line;
-                        while ((line = reader.readLine()) != null)
-                        {
-                            fileContent.append(line).append("\n"); // 各行をバッファに追加
-                        }
-
-                        String finalContent = fileContent.toString();
-                        runOnUiThread(() -> lblCommunication.setText(finalContent)); // UIスレッドで内容を表示
-                    }
-                    file.delete(); // ファイルを削除
-                    return true;
-                }
-                else if (isTimeout()) // タイムアウトのチェック
-                {
-                    errorMessage = PDAERR4; // エラーメッセージの設定
-                    return false;
-                }
-            }
-            catch (Exception e)
-            {
-                errorMessage = PDAERR13; // エラーメッセージの設定
-                return false;
-            }
-            return null;
+        List<Uri> uris = new ArrayList<>(clip.getItemCount());
+        for (int i = 0; i < clip.getItemCount(); i++)
+        {
+            uris.add(clip.getItemAt(i).getUri());
         }
 
-        @Override
-        protected void onPostExecute(Boolean result)
+        // キューが満杯の間は待つため、UIスレッドではなく別スレッドから渡す
+        BulkImporter<Uri> importer = bulkImporter;
+        Thread feeder = new Thread(() ->
         {
-            if (result == null)
+            try
             {
-                timerHandler.postDelayed(timerRunnable, 1000); // タイマーを再度開始
+                importer.submitAll(uris);
             }
-            else
+            catch (InterruptedException e)
             {
-                // ハンドラのリセット
-                resetHandler(false);
-
-                // ステータスフラグの更新
-                flgState = false;
+                Thread.currentThread().interrupt();
             }
-        }
+        }, "bulk-import-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+    }
 
-        // タイムアウトの確認
-        private boolean isTimeout() throws Exception
-        {
-            Date now = new Date(); // 現在の日付を取得
-            Date createDate = new SimpleDateFormat("yyyyMMddHHmmss", Locale.getDefault()).parse(pstrDate); // ファイルの作成日を取得
-            return (now.getTime() - createDate.getTime()) / 1000 > WAITTIME; // タイムアウトのチェック
-        }
+    /***********************************************************************************
+     * <目的>
+     * 一括取り込みで画像のデータ（JPEG など）を輝度に変換する（ワーカースレッドから呼び出される）。
+     * メモリを抑えるため、画素は RGB_565（2バイト/画素）で展開する。
+     *
+     * <引数>
+     * data: 画像のデータ
+     *
+     * <戻り値>
+     * 画像の輝度
+     ***********************************************************************************/
+    private LuminanceSource decodeImageData(byte[] data) throws IOException
+    {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null) throw new IOException("unsupported image");
+        return new StripLuminanceSource(new BitmapPixelSource(bitmap));
     }
 
     /***********************************************************************************
      * <目的>
-     * ファイル選択ダイアログを開くメソッドです。画像ファイルのみを選択できます。
+     * 一括取り込みで1枚の画像を処理したときの処理（ワーカースレッドから呼び出される）。
+     * 読み取れたバーコードを入力データとして処理し、全て処理し終えたら結果をToastで表示する。
+     * 画像は送信を受け付けられた時点で取り込み済みとし、バッチに追加しなかった場合は再度取り込めるようにする。
      *
      * <引数>
-     * なし
+     * uri: 画像のURI
+     * outcome: 結果
+     * text: 読み取った内容
+     * hash: 画像の内容のハッシュ
+     * progress: 進捗
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    private void openFileSelector()
+    private void onImageImported(Uri uri, BulkImporter.Outcome outcome, String text, byte[] hash,
+                                 BulkImporter.Progress progress)
     {
-        // ファイル選択用のインテントを作成
-        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
-        intent.setType("image/*"); // 画像ファイルのみを選択できるように設定
-        startActivityForResult(intent, REQUEST_CODE_SELECT_FILE); // アクティビティの起動
+        if (outcome == BulkImporter.Outcome.DECODED)
+        {
+            BulkImporter<Uri> importer = bulkImporter;
+            handler.post(() ->
+            {
+                if (!processInput(text, () -> markImported(importer, hash))) importer.release(hash);
+            });
+        }
+        if (progress.isFinished())
+        {
+            handler.post(() -> displayToast(String.format(Locale.US, "取込完了: 読取 %d件 重複 %d件 失敗 %d件（%.1f枚/秒）",
+                    progress.decoded, progress.duplicates, progress.failed, progress.imagesPerSecond)));
+        }
     }
 
     /***********************************************************************************
      * <目的>
-     * startActivityForResult() メソッドで開始されたアクティビティからの結果を受け取るためのメソッドです。
-     * 選択されたファイルが画像である場合、その画像を処理するメソッドを呼び出します。
+     * 一括取り込みで読み取ったバーコードが送信を受け付けられたときに、画像を取り込み済みとして記録する
      *
      * <引数>
-     * requestCode: リクエストコード
-     * resultCode: 結果コード
-     * data: 受け取ったデータ
+     * importer: 一括取り込み
+     * hash: 画像の内容のハッシュ
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data)
+    private void markImported(BulkImporter<Uri> importer, byte[] hash)
     {
-        super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == REQUEST_CODE_SELECT_FILE && resultCode == RESULT_OK && data != null)
+        try
+        {
+            importer.markImported(hash);
+        }
+        catch (IOException e)
         {
-            processImageFromUri(data.getData()); // 選択されたファイルの処理を開始
+            showErrorOnUI(PDAERR13); // エラーメッセージの表示
         }
     }
 
@@ -845,19 +1158,20 @@ public class MainActivity extends AppCompatActivity {
      ***********************************************************************************/
     private void decodeBarcodeFromBitmap(Bitmap bitmap)
     {
-        try
+        // 複数バーコード読み取りの場合は、タイルに分割して並列に読み取る
+        if (MULTIBARCODE)
         {
-            // 画像の幅と高さを取得し、ピクセル配列を作成
-            int width = bitmap.getWidth(), height = bitmap.getHeight();
-            int[] pixels = new int[width * height];
-            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            decodeMultipleFromBitmap(bitmap);
+            return;
+        }
 
-            // ピクセルからLuminanceSourceを作成し、BinaryBitmapを生成
-            LuminanceSource source = new RGBLuminanceSource(width, height, pixels);
-            BinaryBitmap binaryBitmap = new BinaryBitmap(new GlobalHistogramBinarizer(source));
+        try
+        {
+            // 画像全体をコピーせず、必要な行だけを輝度に変換するLuminanceSourceを作成
+            LuminanceSource source = new StripLuminanceSource(new BitmapPixelSource(bitmap));
 
-            // バーコードを解析して結果を取得
-            Result result = new MultiFormatReader().decode(binaryBitmap);
+            // 処理の軽い方法から順に試してバーコードを解析し、結果を取得
+            Result result = decodeEngine.decode(source);
 
             // バーコードが検出されたことをToastで表示し、結果を処理
             displayToast("バーコードが検出されました: " + result.getText());
@@ -872,51 +1186,96 @@ public class MainActivity extends AppCompatActivity {
 
     /***********************************************************************************
      * <目的>
-     * 渡されたメッセージを短い期間のToastで表示するメソッドです。
+     * 渡されたBitmapに写った全てのバーコードを読み取り、読み取り順（上の行から、同じ行では左から）に
+     * 入力データとして処理するメソッドです。
+     * 読み取りはタイルに分割して decodePool で行い、結果の処理はUIスレッドで行います。
+     * 読み取った全てのバーコードを送信するため、バッチ送信モードでのみ使用できます
+     * （1件ずつの送信では、送信前に次のバーコードで上書きされます）。
+     * スキャンと同様に、入力を受け付けられない状態の場合は読み取った内容を処理しません。
      *
      * <引数>
-     * message: 表示するメッセージの文字列
+     * bitmap: バーコードを含む画像のBitmap
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    private void displayToast(String message)
+    private void decodeMultipleFromBitmap(Bitmap bitmap)
     {
-        // アプリケーションのコンテキストを使用して、短い期間のToastを表示
-        Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
+        if (!BATCHMODE)
+        {
+            showErrorOnUI(PDAERR18); // エラーメッセージの表示
+            resetHandler(false);
+            return;
+        }
+
+        LuminanceSource source = new StripLuminanceSource(new BitmapPixelSource(bitmap));
+        decodePool.execute(() ->
+        {
+            List<TiledMultiDecoder.Hit> hits;
+            try
+            {
+                hits = multiDecoder.decode(source);
+            }
+            catch (RuntimeException e)
+            {
+                hits = null;
+            }
+
+            List<TiledMultiDecoder.Hit> result = hits;
+            handler.post(() ->
+            {
+                if (result == null || result.isEmpty())
+                {
+                    showErrorOnUI(PDAERR12); // エラーメッセージの表示
+                    resetHandler(false);
+                    return;
+                }
+                if (isBusy())
+                {
+                    showErrorOnUI(PDAERR2); // 送信中メッセージを表示
+                    return;
+                }
+
+                // 検出したバーコードの数をToastで表示し、読み取り順にバッチに追加
+                displayToast("バーコードが検出されました: " + result.size() + "件");
+                for (TiledMultiDecoder.Hit hit : result)
+                {
+                    processInput(hit.text);
+                }
+            });
+        });
     }
 
     /***********************************************************************************
      * <目的>
-     * UI上にエラーメッセージを表示するためのメソッドです。
+     * 渡されたメッセージを短い期間のToastで表示するメソッドです。
      *
      * <引数>
-     * errorMessage: 表示するエラーメッセージの文字列
+     * message: 表示するメッセージの文字列
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    private void showErrorOnUI(final String errorMessage)
+    private void displayToast(String message)
     {
-        // UIスレッド上でエラーメッセージをラベルに設定する
-        runOnUiThread(() -> lblCommunication.setText(errorMessage));
+        // アプリケーションのコンテキストを使用して、短い期間のToastを表示
+        Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
     }
 
     /***********************************************************************************
      * <目的>
-     * ファイルの作成が完了した際に呼び出されるコールバックメソッドです。
+     * UI上にエラーメッセージを表示するためのメソッドです。
      *
      * <引数>
-     * - success: ファイルの作成が成功したかどうかを示すブール値です。
-     *     - true: ファイルの作成が成功したことを示します。
-     *     - false: ファイルの作成が失敗したことを示します。
+     * errorMessage: 表示するエラーメッセージの文字列
      *
      * <戻り値>
      * なし
      ***********************************************************************************/
-    public interface FileCreationCallback
+    private void showErrorOnUI(final String errorMessage)
     {
-        void onFileCreationComplete(boolean success);
+        // UIスレッド上でエラーメッセージをラベルに設定する
+        runOnUiThread(() -> lblCommunication.setText(errorMessage));
     }
 
     /***********************************************************************************
@@ -0,0 +1,32 @@
+/***********************************************************************************
+ * <目的>
+ * 画像の画素（ARGB）を指定した範囲だけ読み出すインターフェース。
+ *
+ * <説明>
+ * StripLuminanceSource が画像全体をコピーせずに行単位で読み出すために使用する。
+ * Android の Bitmap は BitmapPixelSource、JVM上の性能測定などでは配列などの実装を使用する。
+ ***********************************************************************************/
+package com.example.PDA;
+
+// 画素読み出しインターフェース
+public interface PixelSource {
+
+    // 画像の幅を返す
+    int getWidth();
+
+    // 画像の高さを返す
+    int getHeight();
+
+    /***********************************************************************************
+     * <目的>
+     * 指定した範囲の画素（ARGB）を配列に読み出す（Bitmap.getPixels と同じ引数）
+     *
+     * <引数>
+     * pixels: 読み出し先
+     * offset: 読み出し先の開始位置
+     * stride: 読み出し先の1行あたりの要素数
+     * x, y: 読み出す範囲の左上
+     * width, height: 読み出す範囲の幅と高さ
+     ***********************************************************************************/
+    void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height);
+}
@@ -0,0 +1,181 @@
+/***********************************************************************************
+ * <目的>
+ * 要求ファイル名（相関ID）を重複なく生成するクラス。
+ *
+ * <説明>
+ * ID形式: <ホスト名>-<端末識別子>_<yyyyMMddHHmmssSSS><連番3桁>
+ * - 端末識別子は端末ごとに固定の値（ANDROID_ID など）とし、同じ機種の端末同士でも
+ *   ファイル名が重複しないようにする。
+ * - 日時はミリ秒まで含め、同じミリ秒内では連番（000～999）で区別する。連番が尽きた場合や
+ *   時計が戻った場合は、論理的な時刻を1ミリ秒ずつ進めて単調増加を保つ。
+ * - 日付部分は日が変わったときだけ計算し、Calendar や String.format を使わずに
+ *   再利用するバッファへ直接書き込む。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.util.TimeZone;
+
+// 要求ID生成クラス
+public class RequestIdGenerator {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final int TIME_DIGITS = 17; // yyyyMMddHHmmssSSS
+    private static final int SEQ_DIGITS = 3; // 連番
+    private static final int MAX_SEQ = 999;
+
+    /***********************************************************************************
+     * <目的>
+     * 現在時刻（ミリ秒）を返す時計。テストでは任意の時刻を返す実装に差し替える。
+     ***********************************************************************************/
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    private final String prefix; // "<ホスト名>-<端末識別子>_"
+    private final TimeZone timeZone;
+    private final Clock clock;
+    private final char[] buffer; // 再利用するIDのバッファ（先頭に接頭辞を格納済み）
+
+    private long lastMillis = Long.MIN_VALUE; // 最後に生成したIDの論理時刻（ミリ秒）
+    private int seq; // 同じ論理時刻内の連番
+    private long cachedDay = Long.MIN_VALUE; // バッファに日付を書き込み済みの日（ローカル時刻の通算日）
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ（システム時計と既定のタイムゾーンを使用する）
+     *
+     * <引数>
+     * hostName: ホスト名（Build.MODEL）
+     * deviceId: 端末識別子（ANDROID_ID など、端末ごとに固定の値）
+     ***********************************************************************************/
+    public RequestIdGenerator(String hostName, String deviceId) {
+        this(hostName, deviceId, TimeZone.getDefault(), System::currentTimeMillis);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * hostName: ホスト名（Build.MODEL）
+     * deviceId: 端末識別子
+     * timeZone: 日時の表記に使用するタイムゾーン
+     * clock: 時計
+     ***********************************************************************************/
+    public RequestIdGenerator(String hostName, String deviceId, TimeZone timeZone, Clock clock) {
+        this.prefix = sanitize(hostName) + "-" + sanitize(deviceId) + "_";
+        this.timeZone = timeZone;
+        this.clock = clock;
+        this.buffer = new char[prefix.length() + TIME_DIGITS + SEQ_DIGITS];
+        prefix.getChars(0, prefix.length(), buffer, 0);
+    }
+
+    // ファイル名に使用できない文字（英数字と"-"以外）を"-"に置き換える
+    private static String sanitize(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            boolean ok = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-';
+            sb.append(ok ? c : '-');
+        }
+        return sb.toString();
+    }
+
+    // IDの接頭辞（"<ホスト名>-<端末識別子>_"）を返す。応答ファイルの絞り込みに使用する
+    public String prefix() {
+        return prefix;
+    }
+
+    // IDの長さを返す
+    public int length() {
+        return buffer.length;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 新しいIDを生成する
+     *
+     * <戻り値>
+     * 生成したID
+     ***********************************************************************************/
+    public synchronized String next() {
+        fill();
+        return new String(buffer);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 新しいIDを生成し、指定された配列に書き込む（文字列を生成しない）
+     *
+     * <引数>
+     * dst: 書き込み先（length()文字以上の空きが必要）
+     * offset: 書き込み開始位置
+     *
+     * <戻り値>
+     * 書き込んだ文字数
+     ***********************************************************************************/
+    public synchronized int next(char[] dst, int offset) {
+        fill();
+        System.arraycopy(buffer, 0, dst, offset, buffer.length);
+        return buffer.length;
+    }
+
+    // 論理時刻と連番を進め、バッファに日時と連番を書き込む
+    private void fill() {
+        long now = clock.currentTimeMillis();
+        if (now > lastMillis) {
+            lastMillis = now;
+            seq = 0;
+        } else if (seq < MAX_SEQ) {
+            seq++;
+        } else {
+            lastMillis++;
+            seq = 0;
+        }
+
+        long local = lastMillis + timeZone.getOffset(lastMillis);
+        long day = Math.floorDiv(local, MILLIS_PER_DAY);
+        int millisOfDay = (int) Math.floorMod(local, MILLIS_PER_DAY);
+
+        int p = prefix.length();
+        if (day != cachedDay) {
+            writeDate(day, p);
+            cachedDay = day;
+        }
+        p += 8;
+        p = writeDigits(millisOfDay / 3600000, 2, p);
+        p = writeDigits(millisOfDay / 60000 % 60, 2, p);
+        p = writeDigits(millisOfDay / 1000 % 60, 2, p);
+        p = writeDigits(millisOfDay % 1000, 3, p);
+        writeDigits(seq, SEQ_DIGITS, p);
+    }
+
+    // 1970-01-01からの通算日を yyyyMMdd としてバッファに書き込む
+    private void writeDate(long epochDay, int p) {
+        // 通算日からグレゴリオ暦の年月日を求める（H. Hinnant の civil_from_days）
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int d = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int m = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int y = (int) (yoe + era * 400 + (m <= 2 ? 1 : 0));
+
+        p = writeDigits(y, 4, p);
+        p = writeDigits(m, 2, p);
+        writeDigits(d, 2, p);
+    }
+
+    // 数値を指定桁数（ゼロ埋め）でバッファに書き込み、次の位置を返す
+    private int writeDigits(int value, int digits, int p) {
+        for (int i = p + digits - 1; i >= p; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + digits;
+    }
+}
@@ -0,0 +1,388 @@
+/***********************************************************************************
+ * <目的>
+ * 応答待ちの全ての要求について、応答フォルダーの一覧取得1回でまとめて応答を確認するクラス。
+ *
+ * <説明>
+ * - 要求ごとに応答ファイルの存在確認（exists）を行う代わりに、ホスト名で絞り込んだ
+ *   応答ファイルの一覧を1回だけ取得し、一覧に含まれる応答待ちの要求を全て処理する。
+ * - 確認の間隔は MIN_INTERVAL から MAX_INTERVAL の間で調整する。応答が見つかった場合は
+ *   最短に戻し、見つからない場合は倍にする。また、一覧取得にかかった時間（平均）の2倍より
+ *   短くしないことで、応答の遅いサーバーへの問い合わせを抑える。
+ * - 応答待ちの要求がない間は確認を行わない。
+ * - 通信が応答フォルダーの変更通知に対応する場合（SopTransport.watchResponses()）は、応答待ちの
+ *   応答ファイル名が通知された時点で直ちに確認し、定期的な確認は通知の取りこぼしに備えて
+ *   WATCH_INTERVAL ごとに行う（最も早い期限がそれより前の場合は、タイムアウトが遅れないよう期限に確認する）。
+ *   登録時の確認は、登録前に応答ファイル名が通知されていた場合のみ行う。通知が欠落した場合は
+ *   直ちに確認する。監視が終了した場合や開始できない場合は上記の間隔の調整による確認に戻り、
+ *   WATCH_RETRY 後に監視の開始を再試行する。
+ * - SOPサーバーが書き込み中で開けない応答や、終端（ResponseParser.END）まで書き込まれていない応答
+ *   （SopTransport.NotReadyException）は応答ファイルを削除せずに応答待ちのまま残し、
+ *   確認の間隔を空けながら再試行する。
+ * - 期限までに応答がない要求はタイムアウトとして通知する。期限は DeadlineWheel で
+ *   単調な時刻（System.nanoTime()）により管理し、応答待ちの件数によらず一定のコストで判定する。
+ *
+ * - 応答ファイルは ResponseParser で解析する（バッファは確認用スレッドで使い回す）。
+ *
+ * 通知は確認用スレッドから行われるため、UIを更新する場合は呼び出し側でUIスレッドに切り替えること。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 応答収集クラス
+public class ResponseHarvester {
+
+    public static final long MIN_INTERVAL = 100; // 確認間隔の最小値（ミリ秒）
+    public static final long MAX_INTERVAL = 2000; // 確認間隔の最大値（ミリ秒）
+    private static final long DEADLINE_TICK = 100; // 期限の精度（ミリ秒）
+    private static final int DEADLINE_SLOTS = 1024; // 期限管理のスロット数（約100秒分）
+    private static final long WATCH_INTERVAL = 5000; // 変更を監視している間の確認間隔（ミリ秒）
+    private static final long WATCH_RETRY = TimeUnit.SECONDS.toNanos(30); // 監視の開始を再試行するまでの時間
+    private static final int NOTIFIED_LIMIT = 256; // 登録前に通知された応答ファイル名を保持する件数
+
+    /***********************************************************************************
+     * <目的>
+     * 応答の受信、タイムアウト、読み込みエラーを通知するリスナー
+     ***********************************************************************************/
+    public interface Listener {
+        // response は通知中のみ有効（必要な内容は通知中に取り出すこと）
+        void onResponse(String responseName, ResponseParser.Response response);
+
+        void onTimeout(String responseName);
+
+        void onError(String responseName, IOException e);
+    }
+
+    // 応答待ちの要求
+    private static final class Pending {
+        final String responseName;
+        final Listener listener;
+        DeadlineWheel<Pending>.Timeout timeout; // 応答の期限
+
+        Pending(String responseName, Listener listener) {
+            this.responseName = responseName;
+            this.listener = listener;
+        }
+    }
+
+    private final SopTransport transport;
+    private final String prefix; // 応答ファイル名の接頭辞（ホスト名 + "_"）
+    private final ResponseParser parser; // 応答ファイルの解析（確認用スレッドのみが使用する）
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final DeadlineWheel<Pending> deadlines = new DeadlineWheel<>(DEADLINE_TICK, DEADLINE_SLOTS, this::timeout);
+    private final ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> next; // 次回の確認（未予約の場合はnull）
+    private boolean woken; // 確認の開始後に wakeUp() が呼ばれたかどうか
+    private long interval = MIN_INTERVAL; // 現在の確認間隔（ミリ秒）
+    private double listLatency; // 一覧取得にかかった時間の平均（ミリ秒）
+    private final AtomicLong listCalls = new AtomicLong(); // 一覧取得の回数
+
+    private final boolean watchEnabled; // 応答フォルダーの変更を監視するかどうか
+    private volatile Watch watch; // 現在の監視（監視していない場合はnull。確認用スレッドのみが変更する）
+    private long watchRetryNanos; // 監視の開始を次に試みる時刻（System.nanoTime()）
+    private final AtomicLong notifications = new AtomicLong(); // 応答待ちの応答ファイルの変更通知の回数
+    private final AtomicLong watchLosses = new AtomicLong(); // 監視が終了した回数
+    private final AtomicLong notReadyReads = new AtomicLong(); // 書き込み中で読み込めなかった回数
+    private final Set<String> notified = ConcurrentHashMap.newKeySet(); // 通知された応答待ちでない応答ファイル名
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * transport: SOPサーバーとの通信
+     * prefix: 応答ファイル名の接頭辞（ホスト名 + "_"）
+     * parser: 応答ファイルの解析
+     ***********************************************************************************/
+    public ResponseHarvester(SopTransport transport, String prefix, ResponseParser parser) {
+        this(transport, prefix, parser, Constants.RESPONSEWATCH);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * transport: SOPサーバーとの通信
+     * prefix: 応答ファイル名の接頭辞（ホスト名 + "_"）
+     * parser: 応答ファイルの解析
+     * watch: 応答フォルダーの変更を監視するかどうか（false: 定期的な確認のみ）
+     ***********************************************************************************/
+    public ResponseHarvester(SopTransport transport, String prefix, ResponseParser parser, boolean watch) {
+        this.transport = transport;
+        this.prefix = prefix;
+        this.parser = parser;
+        this.watchEnabled = watch;
+        this.watchRetryNanos = System.nanoTime();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "response-harvester");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 要求ファイル名から応答ファイル名を作成する（"xxx.txt" → "xxxR.txt"）
+     *
+     * <引数>
+     * requestName: 要求ファイル名
+     *
+     * <戻り値>
+     * 応答ファイル名
+     ***********************************************************************************/
+    public static String responseName(String requestName) {
+        int dot = requestName.lastIndexOf('.');
+        return requestName.substring(0, dot) + "R" + requestName.substring(dot);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答待ちの要求を登録し、確認を開始する
+     *
+     * <引数>
+     * responseName: 応答ファイル名
+     * timeoutMillis: 現在から応答の期限までの時間（ミリ秒）
+     * listener: 通知先
+     ***********************************************************************************/
+    public void register(String responseName, long timeoutMillis, Listener listener) {
+        Pending p = new Pending(responseName, listener);
+        p.timeout = deadlines.schedule(p, timeoutMillis);
+        Pending old = pending.put(responseName, p);
+        if (old != null) {
+            old.timeout.cancel();
+        }
+
+        // 監視中は、登録前に通知されていた場合を除き、通知または定期的な確認を待つ
+        // （通知側は notified への追加後に pending を確認するため、どちらかが必ず確認を行う）
+        if (watch != null && !notified.remove(responseName)) {
+            scheduleIfIdle();
+        } else {
+            wakeUp();
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 確認間隔を最短に戻し、直ちに確認を行う
+     ***********************************************************************************/
+    public synchronized void wakeUp() {
+        interval = MIN_INTERVAL;
+        woken = true;
+        if (next != null) {
+            next.cancel(false);
+        }
+        next = executor.schedule(this::tick, 0, TimeUnit.MILLISECONDS);
+    }
+
+    // 確認が予約されていない場合は WATCH_INTERVAL 後（最も早い期限がそれより前の場合は期限）の確認を予約する
+    private synchronized void scheduleIfIdle() {
+        if (next == null) {
+            next = executor.schedule(this::tick, watchDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 監視中の確認までの時間（WATCH_INTERVAL と最も早い期限までの時間の短い方）
+    private long watchDelay() {
+        long expiry = deadlines.nextExpiryMillis();
+        return expiry < 0 ? WATCH_INTERVAL : Math.min(WATCH_INTERVAL, expiry);
+    }
+
+    // 応答待ちの件数を返す
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    // 一覧取得の回数を返す
+    public long getListCalls() {
+        return listCalls.get();
+    }
+
+    // 応答フォルダーの変更を監視中かどうかを返す
+    public boolean isWatching() {
+        return watch != null;
+    }
+
+    // 応答待ちの応答ファイルの変更通知の回数を返す
+    public long getNotifications() {
+        return notifications.get();
+    }
+
+    // 監視が終了した回数を返す
+    public long getWatchLosses() {
+        return watchLosses.get();
+    }
+
+    // 書き込み中で読み込めなかった回数を返す
+    public long getNotReadyReads() {
+        return notReadyReads.get();
+    }
+
+    // 1回分の確認処理
+    private void tick() {
+        synchronized (this) {
+            woken = false;
+            if (pending.isEmpty()) {
+                next = null;
+                return;
+            }
+        }
+
+        if (watchEnabled && watch == null && System.nanoTime() - watchRetryNanos >= 0) {
+            startWatch();
+        }
+
+        // 応答ファイルの一覧を1回だけ取得する
+        boolean found = false;
+        boolean notReady = false; // 書き込み中で読み込めなかった応答があるかどうか
+        long start = System.nanoTime();
+        try {
+            List<String> names = transport.listResponses(prefix);
+            listCalls.incrementAndGet();
+            for (String name : names) {
+                Pending p = pending.get(name);
+                if (p == null) continue;
+                if (deliver(p)) {
+                    found = true;
+                } else {
+                    notReady = true;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 一覧を取得できない場合は次回に再試行する（期限切れの判定は行う）
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        listLatency = listLatency == 0 ? elapsed : listLatency * 0.8 + elapsed * 0.2;
+
+        deadlines.expire();
+        schedule(found, notReady);
+    }
+
+    // 応答ファイルを読み込んで解析し、削除してから通知する（上限を超える応答も削除する）。
+    // 書き込み中で読み込めない場合は応答待ちのまま残し、falseを返す
+    private boolean deliver(Pending p) {
+        ResponseParser.Response response;
+        try {
+            response = transport.consumeResponse(p.responseName, parser::parse);
+        } catch (SopTransport.NotReadyException e) {
+            notReadyReads.incrementAndGet();
+            return false;
+        } catch (IOException e) {
+            if (complete(p)) p.listener.onError(p.responseName, e);
+            return true;
+        }
+        if (complete(p)) p.listener.onResponse(p.responseName, response);
+        return true;
+    }
+
+    // 応答待ちから外し、期限を取り消す（同じ応答ファイル名で登録し直された場合はfalse）
+    private boolean complete(Pending p) {
+        if (!pending.remove(p.responseName, p)) return false;
+        p.timeout.cancel();
+        return true;
+    }
+
+    // 期限切れの要求をタイムアウトとして通知する（応答を受信済みの場合は何もしない）
+    private void timeout(Pending p) {
+        if (pending.remove(p.responseName, p)) {
+            p.listener.onTimeout(p.responseName);
+        }
+    }
+
+    // 次回の確認を予約する（notReady: 書き込み中で読み込めなかった応答がある）
+    private synchronized void schedule(boolean found, boolean notReady) {
+        // 確認中にwakeUp()で予約された確認があれば取り消し、予約を1つに保つ
+        // （一覧の取得後に通知された応答を取りこぼさないよう、その場合は直ちに確認する）
+        if (next != null) {
+            next.cancel(false);
+        }
+        if (pending.isEmpty()) {
+            next = null;
+            return;
+        }
+        long delay;
+        if (watch != null && !notReady) {
+            // 応答は通知で確認するため、取りこぼしに備えた確認と期限切れの確認のみを行う
+            interval = WATCH_INTERVAL;
+            delay = watchDelay();
+        } else {
+            // 書き込み中の応答は、監視中でも間隔を空けながら読み込みを再試行する（書き込みの完了も通知される）
+            interval = found ? MIN_INTERVAL : Math.min(interval * 2, MAX_INTERVAL);
+            interval = Math.min(Math.max(interval, (long) (listLatency * 2)), MAX_INTERVAL);
+            delay = interval;
+        }
+        next = executor.schedule(this::tick, woken ? 0 : delay, TimeUnit.MILLISECONDS);
+    }
+
+    // 応答フォルダーの監視を開始する（開始できない場合は WATCH_RETRY 後に再試行する）
+    private void startWatch() {
+        Watch w = new Watch();
+        try {
+            w.handle = transport.watchResponses(w);
+        } catch (IOException | RuntimeException e) {
+            w.handle = null;
+        }
+        if (w.handle == null) {
+            watchRetryNanos = System.nanoTime() + WATCH_RETRY;
+            return;
+        }
+        watch = w;
+    }
+
+    // 監視が終了した場合の処理（確認用スレッドで実行する）
+    private void watchLost(Watch w) {
+        if (watch != w) return;
+        watch = null;
+        watchLosses.incrementAndGet();
+        watchRetryNanos = System.nanoTime() + WATCH_RETRY;
+        try {
+            w.handle.close();
+        } catch (IOException | RuntimeException e) {
+            // 切断済みの場合など
+        }
+        // 監視していない間の応答を確認し、間隔の調整による確認に戻る
+        wakeUp();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答フォルダーの監視1回分。応答待ちの応答ファイルの変更、または通知の欠落で確認を行う。
+     ***********************************************************************************/
+    private final class Watch implements SopTransport.ChangeListener {
+        Closeable handle; // 監視（閉じると監視を終了する）
+
+        @Override
+        public void onChange(String name) {
+            if (name == null) {
+                wakeUp();
+                return;
+            }
+            if (!name.startsWith(prefix)) return;
+
+            // 登録前の応答に備えて記録してから、応答待ちかどうかを確認する
+            if (notified.size() >= NOTIFIED_LIMIT) notified.clear();
+            notified.add(name);
+            if (pending.containsKey(name)) {
+                notified.remove(name);
+                notifications.incrementAndGet();
+                wakeUp();
+            }
+        }
+
+        @Override
+        public void onClosed(IOException cause) {
+            executor.execute(() -> watchLost(this));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/***********************************************************************************
+ * <目的>
+ * SOPサーバーの応答ファイル（...R.txt）を解析するクラス。
+ *
+ * <説明>
+ * 応答ファイルの形式（1行1項目、項目内はタブ区切り、文字コードはコンストラクタで指定）:
+ *   1行目        : <状態コード>[TAB<メッセージ>]       要求全体の結果
+ *   2行目以降    : <状態コード>[TAB<メッセージ>]       レコードごとの結果（バッチ送信の場合、送信した順）
+ *   最終行       : END                                  応答の終端（END 以降は読み込まない）
+ * 状態コードは10進数1～2桁で、同じ番号の Constants.PDAERR* に対応する
+ * （5: ﾀｲﾑｱｳﾄ(SOP)、6: ﾀｲﾑｱｳﾄ(M3子)、7: 正常終了、8: 該当項目なし、9: 対象外のBCR、10: 項目未選択、
+ *   14: 該当端末なし。それ以外の番号は SYSTEMエラー とする）。
+ * メッセージを省略した場合は状態コードに対応するメッセージを表示する。
+ *
+ * 1行目が状態コードで始まらない場合は、従来の形式（状態コードなし）とみなし、状態を正常終了、
+ * メッセージを応答全体、各行をレコードごとの結果とする（空行は該当項目なし）。
+ *
+ * END の行がない応答、および空の応答は、SOPサーバーが書き込み中とみなして
+ * SopTransport.NotReadyException をスローする（応答ファイルは削除せずに後で読み込み直す）。
+ * 従来の形式は終端を確認できないため、空の応答のみを書き込み中とみなす。
+ *
+ * - 応答は maxBytes バイトまで読み込み、超える場合はエラーとする。
+ * - 読み込み用のバッファ、文字変換用のバッファ、解析結果（Response）はインスタンスで使い回し、
+ *   解析のたびにオブジェクトを生成しない（メッセージを文字列で取得した場合のみ生成する）。
+ * スレッドセーフではない（応答収集のスレッドから使用する）。解析結果は次の parse() まで有効。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+// 応答解析クラス
+public final class ResponseParser {
+
+    public static final int OK = 7; // 正常終了の状態コード
+    public static final int NOT_FOUND = 8; // 該当項目なしの状態コード
+    public static final int SYSTEM_ERROR = 13; // 対応するメッセージがない状態コード
+    public static final String END = "END"; // 応答の終端の行
+
+    private static final char TAB = '\t';
+
+    /***********************************************************************************
+     * <目的>
+     * 解析結果（次の parse() まで有効）
+     ***********************************************************************************/
+    public final class Response {
+        private int status;
+        private int messageStart, messageEnd; // 全体のメッセージの範囲（文字の位置）
+        private int count; // レコードの数
+        private final int[] codes; // レコードごとの状態コード
+        private final int[] starts; // レコードごとのメッセージの開始位置
+        private final int[] ends; // レコードごとのメッセージの終了位置
+
+        private Response(int maxRecords) {
+            codes = new int[maxRecords];
+            starts = new int[maxRecords];
+            ends = new int[maxRecords];
+        }
+
+        // 全体の状態コードを返す
+        public int status() {
+            return status;
+        }
+
+        // 正常終了かどうか
+        public boolean isOk() {
+            return status == OK;
+        }
+
+        // 全体の結果の表示用の文字列を返す（メッセージ、省略時は状態コードに対応するメッセージ）
+        public String text() {
+            return text(status, messageStart, messageEnd);
+        }
+
+        // レコードの数を返す
+        public int recordCount() {
+            return count;
+        }
+
+        // レコードの状態コードを返す
+        public int recordStatus(int index) {
+            return codes[check(index)];
+        }
+
+        // レコードの結果の表示用の文字列を返す
+        public String recordText(int index) {
+            check(index);
+            return text(codes[index], starts[index], ends[index]);
+        }
+
+        private int check(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException("record " + index);
+            return index;
+        }
+
+        private String text(int code, int start, int end) {
+            return start < end ? new String(chars.array(), start, end - start) : statusText(code);
+        }
+    }
+
+    private final CharsetDecoder decoder;
+    private final byte[] bytes; // 読み込み用バッファ（上限を超えたことを検出するため1バイト多い）
+    private final ByteBuffer byteBuffer;
+    private final CharBuffer chars; // 文字変換用バッファ（1バイトが1文字を超えることはない）
+    private final Response response;
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * charset: 応答ファイルの文字コード（Shift_JIS、UTF-8 など）
+     * maxBytes: 応答ファイルの大きさの上限（バイト）
+     * maxRecords: レコードの数の上限（従来の形式の場合、超えた行は無視する）
+     ***********************************************************************************/
+    public ResponseParser(Charset charset, int maxBytes, int maxRecords) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = new byte[maxBytes + 1];
+        this.byteBuffer = ByteBuffer.wrap(bytes);
+        this.chars = CharBuffer.allocate(maxBytes);
+        this.response = new Response(maxRecords);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 状態コードに対応するメッセージを返す
+     *
+     * <引数>
+     * code: 状態コード
+     *
+     * <戻り値>
+     * Constants.PDAERR* のメッセージ
+     ***********************************************************************************/
+    public static String statusText(int code) {
+        switch (code) {
+            case 5:
+                return Constants.PDAERR5;
+            case 6:
+                return Constants.PDAERR6;
+            case 7:
+                return Constants.PDAERR7;
+            case 8:
+                return Constants.PDAERR8;
+            case 9:
+                return Constants.PDAERR9;
+            case 10:
+                return Constants.PDAERR10;
+            case 14:
+                return Constants.PDAERR14;
+            default:
+                return Constants.PDAERR13;
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルを読み込んで解析する（入力は閉じない）
+     *
+     * <引数>
+     * in: 応答ファイルの内容
+     *
+     * <戻り値>
+     * 解析結果（次の parse() まで有効）
+     *
+     * <例外>
+     * SopTransport.NotReadyException: 応答が途中までしか書き込まれていない場合
+     * IOException: 読み込みに失敗した場合、大きさ・レコードの数が上限を超えた場合
+     ***********************************************************************************/
+    public Response parse(InputStream in) throws IOException {
+        int length = 0;
+        for (int n; length < bytes.length && (n = in.read(bytes, length, bytes.length - length)) > 0; ) {
+            length += n;
+        }
+        if (length == bytes.length) {
+            throw new IOException("response exceeds " + (bytes.length - 1) + " bytes");
+        }
+        return parse(bytes, length);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み込み済みの応答を解析する
+     *
+     * <引数>
+     * data: 応答ファイルの内容
+     * length: 内容の長さ（バイト）
+     *
+     * <戻り値>
+     * 解析結果（次の parse() まで有効）
+     *
+     * <例外>
+     * SopTransport.NotReadyException: 応答が途中までしか書き込まれていない場合
+     * IOException: 大きさ・レコードの数が上限を超えた場合
+     ***********************************************************************************/
+    public Response parse(byte[] data, int length) throws IOException {
+        if (length > chars.capacity()) {
+            throw new IOException("response exceeds " + chars.capacity() + " bytes");
+        }
+        if (data != bytes) System.arraycopy(data, 0, bytes, 0, length);
+
+        // 文字コードを変換する（先頭の BOM は除く）
+        byteBuffer.clear().limit(length);
+        chars.clear();
+        decoder.reset();
+        decoder.decode(byteBuffer, chars, true);
+        decoder.flush(chars);
+        char[] c = chars.array();
+        int end = chars.position();
+        int start = end > 0 && c[0] == '\uFEFF' ? 1 : 0;
+        if (start == end) {
+            throw new SopTransport.NotReadyException("response is empty");
+        }
+
+        Response r = response;
+        r.count = 0;
+        int lineEnd = lineEnd(c, start, end);
+        int code = code(c, start, lineEnd);
+        if (code < 0) {
+            // 従来の形式：応答全体がメッセージ、各行がレコードの結果
+            r.status = OK;
+            r.messageStart = start;
+            r.messageEnd = trimEnd(c, start, end);
+            for (int line = start; line < end && r.count < r.codes.length; line = next(c, lineEnd, end)) {
+                lineEnd = lineEnd(c, line, end);
+                add(r, line < lineEnd ? OK : NOT_FOUND, line, lineEnd);
+            }
+            return r;
+        }
+
+        r.status = code;
+        r.messageStart = messageStart(c, start, lineEnd);
+        r.messageEnd = lineEnd;
+        boolean ended = false;
+        for (int line = next(c, lineEnd, end); line < end; line = next(c, lineEnd, end)) {
+            lineEnd = lineEnd(c, line, end);
+            if (line == lineEnd) continue; // 空行は無視する
+            if (isEnd(c, line, lineEnd)) {
+                ended = true;
+                break;
+            }
+            if (r.count == r.codes.length) {
+                throw new IOException("response exceeds " + r.codes.length + " records");
+            }
+            code = code(c, line, lineEnd);
+            if (code < 0) {
+                add(r, SYSTEM_ERROR, line, lineEnd);
+            } else {
+                add(r, code, messageStart(c, line, lineEnd), lineEnd);
+            }
+        }
+        if (!ended) {
+            throw new SopTransport.NotReadyException("response has no " + END + " line");
+        }
+        return r;
+    }
+
+    private static void add(Response r, int code, int start, int end) {
+        r.codes[r.count] = code;
+        r.starts[r.count] = start;
+        r.ends[r.count] = end;
+        r.count++;
+    }
+
+    // 状態コードを読み取る（1～2桁の数字の後が行末またはタブでない場合は-1）
+    private static int code(char[] c, int start, int end) {
+        int i = start;
+        int code = 0;
+        while (i < end && i - start < 2 && c[i] >= '0' && c[i] <= '9') {
+            code = code * 10 + (c[i++] - '0');
+        }
+        if (i == start || (i < end && c[i] != TAB)) return -1;
+        return code;
+    }
+
+    // 終端の行かどうか
+    private static boolean isEnd(char[] c, int start, int end) {
+        if (end - start != END.length()) return false;
+        for (int i = 0; i < END.length(); i++) {
+            if (c[start + i] != END.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // 状態コードの後のメッセージの開始位置（メッセージがない場合は行末）
+    private static int messageStart(char[] c, int start, int end) {
+        int tab = start;
+        while (tab < end && c[tab] != TAB) tab++;
+        return tab < end ? tab + 1 : end;
+    }
+
+    // 行末（改行文字の位置。\r\n の場合は \r の位置）
+    private static int lineEnd(char[] c, int start, int end) {
+        int i = start;
+        while (i < end && c[i] != '\n') i++;
+        return i > start && c[i - 1] == '\r' ? i - 1 : i;
+    }
+
+    // 次の行の開始位置
+    private static int next(char[] c, int lineEnd, int end) {
+        int i = lineEnd;
+        if (i < end && c[i] == '\r') i++;
+        if (i < end && c[i] == '\n') i++;
+        return i;
+    }
+
+    // 末尾の改行を除いた終了位置
+    private static int trimEnd(char[] c, int start, int end) {
+        while (end > start && (c[end - 1] == '\n' || c[end - 1] == '\r')) end--;
+        return end;
+    }
+}
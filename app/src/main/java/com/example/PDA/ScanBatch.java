@@ -0,0 +1,181 @@
+/***********************************************************************************
+ * <目的>
+ * バッチ送信モードで、検証済みの端末No／バーコードの組を複数件まとめて保持するクラス。
+ *
+ * <説明>
+ * - 件数が上限（maxRecords）に達した場合、または最初の1件を追加してから
+ *   一定時間（maxAgeMillis）が経過した場合に送信対象となる。
+ * - 送信時は1行1レコード（端末No＋バーコード）の要求ファイルとしてまとめて書き込む。
+ * - 応答ファイルも1行1レコードで、要求と同じ順序で各レコードの結果を返す。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// スキャンバッチクラス
+public class ScanBatch {
+
+    /***********************************************************************************
+     * <目的>
+     * 端末No／バーコードの組（1レコード）
+     ***********************************************************************************/
+    public static final class Record {
+        public final String terminalNo; // 端末No
+        public final String barcode; // バーコード
+        public final Runnable accepted; // 送信を受け付けられたときの処理（null: なし）
+
+        public Record(String terminalNo, String barcode) {
+            this(terminalNo, barcode, null);
+        }
+
+        public Record(String terminalNo, String barcode, Runnable accepted) {
+            this.terminalNo = terminalNo;
+            this.barcode = barcode;
+            this.accepted = accepted;
+        }
+    }
+
+    private final int maxRecords; // 送信する件数の閾値
+    private final long maxAgeMillis; // 送信するまでの最大待ち時間（ミリ秒）
+
+    private final List<Record> records = new ArrayList<>(); // 未送信のレコード
+    private long firstAddedAt; // 最初のレコードを追加した時刻（ミリ秒）
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * maxRecords: 送信する件数の閾値
+     * maxAgeMillis: 最初のレコード追加から送信するまでの最大待ち時間（ミリ秒）
+     ***********************************************************************************/
+    public ScanBatch(int maxRecords, long maxAgeMillis) {
+        this.maxRecords = maxRecords;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * レコードを追加する
+     *
+     * <引数>
+     * terminalNo: 端末No
+     * barcode: バーコード
+     * now: 現在時刻（ミリ秒）
+     *
+     * <戻り値>
+     * 件数の閾値に達した場合はtrue
+     ***********************************************************************************/
+    public boolean add(String terminalNo, String barcode, long now) {
+        return add(terminalNo, barcode, null, now);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * レコードを追加する。accepted はレコードを含む要求が送信を受け付けられた後に、
+     * remove() の呼び出し元が呼び出す
+     *
+     * <引数>
+     * terminalNo: 端末No
+     * barcode: バーコード
+     * accepted: 送信を受け付けられたときの処理（null: なし）
+     * now: 現在時刻（ミリ秒）
+     *
+     * <戻り値>
+     * 件数の閾値に達した場合はtrue
+     ***********************************************************************************/
+    public synchronized boolean add(String terminalNo, String barcode, Runnable accepted, long now) {
+        if (records.isEmpty()) {
+            firstAddedAt = now;
+        }
+        records.add(new Record(terminalNo, barcode, accepted));
+        return records.size() >= maxRecords;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 送信対象（件数または経過時間の閾値に達している）かどうかを判定する
+     *
+     * <引数>
+     * now: 現在時刻（ミリ秒）
+     *
+     * <戻り値>
+     * 送信対象の場合はtrue
+     ***********************************************************************************/
+    public synchronized boolean isDue(long now) {
+        return !records.isEmpty() && (records.size() >= maxRecords || now - firstAddedAt >= maxAgeMillis);
+    }
+
+    // 未送信のレコード数を返す
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 次に送信するレコード（先頭から最大で件数の閾値まで）を、バッチから取り除かずに返す。
+     * 送信を受け付けられた後に remove() で取り除く（受け付けられなかった場合はバッチに残る）
+     *
+     * <戻り値>
+     * 送信するレコード（追加順）
+     ***********************************************************************************/
+    public synchronized List<Record> peek() {
+        return new ArrayList<>(records.subList(0, Math.min(records.size(), maxRecords)));
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 送信を受け付けられたレコードを先頭から取り除く。
+     * 残ったレコードは最大待ち時間を過ぎているものとして、次の確認で送信対象とする
+     *
+     * <引数>
+     * count: 取り除く件数（peek() で返した件数）
+     ***********************************************************************************/
+    public synchronized void remove(int count) {
+        records.subList(0, count).clear();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * レコードを要求ファイルの内容（1行1レコード）に変換する
+     *
+     * <引数>
+     * records: レコード
+     *
+     * <戻り値>
+     * 要求ファイルの内容
+     ***********************************************************************************/
+    public static String format(List<Record> records) {
+        StringBuilder sb = new StringBuilder(records.size() * 32);
+        for (Record r : records) {
+            sb.append(r.terminalNo).append(r.barcode).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答のレコードごとの結果を各レコードに対応付け、表示用の文字列を作成する。
+     * 応答のレコード数が不足している場合、そのレコードの結果は PDAERR8（該当項目なし）とする。
+     * ただし要求全体が失敗した場合（状態コードが正常終了以外）は、全体の状態の内容とする。
+     *
+     * <引数>
+     * records: 送信したレコード
+     * response: 応答の解析結果
+     *
+     * <戻り値>
+     * 表示用の文字列（1行1レコード「バーコード：結果」）
+     ***********************************************************************************/
+    public static String formatResults(List<Record> records, ResponseParser.Response response) {
+        String missing = response.isOk() ? Constants.PDAERR8 : response.text();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < records.size(); i++) {
+            String result = i < response.recordCount() ? response.recordText(i) : missing;
+            sb.append(records.get(i).barcode).append('：').append(result).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/***********************************************************************************
+ * <目的>
+ * キーボードウェッジ方式のスキャナーから入力される文字列について、1回分のスキャンの終わりを判定するクラス。
+ *
+ * <説明>
+ * 次のいずれかでスキャンの終わりと判定し、リスナーに通知する。
+ * - 終端文字（Enter、Tab など、スキャナーが末尾に付加する文字）を受け取った場合は直ちに。
+ * - スキャナーの連続入力（文字の間隔が burstGap 以内で MIN_BURST 文字以上）の場合は、
+ *   入力が burstGap の BURST_QUIET_FACTOR 倍途切れた時点で。
+ * - 手入力（文字の間隔が burstGap を超えた場合）は、入力が manualDelay 途切れた時点で。
+ * 通知する範囲は前後の終端文字を除く（CR LF の LF のように、前回の通知後に入力欄に残った終端文字を含めない）。
+ * 判定用のタスクは1つを使い回し、キー入力ごとにオブジェクトを生成しない。
+ * 最初の文字から通知までの時間（入力の区切り待ちを含む）は Diagnostics に記録する。
+ *
+ * 全メソッドはUIスレッドから呼び出すこと（タイマーもUIスレッドで実行されること）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+// スキャン区切り判定クラス
+public class ScanFramer {
+
+    private static final int MIN_BURST = 3; // スキャナーの連続入力とみなす最小文字数
+    private static final int BURST_QUIET_FACTOR = 3; // 連続入力の終わりとみなす無入力時間（burstGap の倍数）
+
+    /***********************************************************************************
+     * <目的>
+     * 1回分のスキャンを通知するリスナー
+     ***********************************************************************************/
+    public interface Listener {
+        /*
+         * text: 入力中の文字列（終端文字を含む場合がある）
+         * start: スキャンの始まりの位置（先頭の終端文字を除く）
+         * end: スキャンの終わりの位置（終端文字を除く）
+         */
+        void onScan(CharSequence text, int start, int end);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 遅延実行のタイマー（Handler.postDelayed／removeCallbacks など）
+     ***********************************************************************************/
+    public interface Timer {
+        void schedule(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 単調な現在時刻（ミリ秒）を返す時計（SystemClock.uptimeMillis など）
+     ***********************************************************************************/
+    public interface Clock {
+        long uptimeMillis();
+    }
+
+    private final String suffixes; // 終端文字
+    private final long burstGap; // スキャナーの連続入力とみなす文字の最大間隔（ミリ秒）
+    private final long manualDelay; // 手入力の終わりとみなす無入力時間（ミリ秒）
+    private final Timer timer;
+    private final Clock clock;
+    private final Listener listener;
+    private final Runnable fire = this::fire; // 使い回す判定用タスク
+
+    private CharSequence text; // 入力中の文字列
+    private int length; // 前回の文字数
+    private long lastTime; // 前回の入力時刻（ミリ秒）
+    private long startTime; // スキャンの最初の文字の入力時刻（ミリ秒）
+    private boolean burst; // スキャナーの連続入力かどうか
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * suffixes: 終端文字（例: "\n\r\t"）
+     * burstGap: スキャナーの連続入力とみなす文字の最大間隔（ミリ秒）
+     * manualDelay: 手入力の終わりとみなす無入力時間（ミリ秒）
+     * timer: 遅延実行のタイマー
+     * clock: 時計
+     * listener: スキャンの通知先
+     ***********************************************************************************/
+    public ScanFramer(String suffixes, long burstGap, long manualDelay, Timer timer, Clock clock, Listener listener) {
+        this.suffixes = suffixes;
+        this.burstGap = burstGap;
+        this.manualDelay = manualDelay;
+        this.timer = timer;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 入力中の文字列が変わったときに呼び出す（TextWatcher.afterTextChanged から）
+     *
+     * <引数>
+     * s: 入力中の文字列（Editable をそのまま渡す。コピーしない）
+     ***********************************************************************************/
+    public void onTextChanged(CharSequence s) {
+        int len = s.length();
+        long now = clock.uptimeMillis();
+        text = s;
+
+        if (len == 0) {
+            // 入力欄がクリアされた場合は次のスキャンを待つ
+            reset();
+            return;
+        }
+
+        if (length == 0) {
+            // 新しいスキャンの始まり
+            burst = true;
+            startTime = now;
+        } else if (len > length && now - lastTime > burstGap) {
+            // 文字の間隔が長い場合は手入力とみなす
+            burst = false;
+        }
+        length = len;
+        lastTime = now;
+
+        // 終端文字を受け取った場合は直ちに通知する
+        if (suffixes.indexOf(s.charAt(len - 1)) >= 0) {
+            flush();
+            return;
+        }
+
+        timer.cancel(fire);
+        timer.schedule(fire, burst && len >= MIN_BURST ? burstGap * BURST_QUIET_FACTOR : manualDelay);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 入力中の文字列を直ちに1回分のスキャンとして通知する（Enterキーの押下時など）
+     ***********************************************************************************/
+    public void flush() {
+        timer.cancel(fire);
+        fire();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 入力中の状態を破棄する
+     ***********************************************************************************/
+    public void reset() {
+        timer.cancel(fire);
+        length = 0;
+        burst = false;
+    }
+
+    // 前後の終端文字を除いてスキャンを通知する
+    private void fire() {
+        CharSequence s = text;
+        if (s == null) return;
+
+        int end = s.length();
+        while (end > 0 && suffixes.indexOf(s.charAt(end - 1)) >= 0) end--;
+        int start = 0;
+        while (start < end && suffixes.indexOf(s.charAt(start)) >= 0) start++;
+        length = 0;
+        burst = false;
+        if (start == end) return;
+        Diagnostics.record(Diagnostics.Stage.INPUT, (clock.uptimeMillis() - startTime) * 1_000_000L);
+        listener.onScan(s, start, end);
+    }
+}
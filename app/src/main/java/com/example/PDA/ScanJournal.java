@@ -0,0 +1,323 @@
+/***********************************************************************************
+ * <目的>
+ * SOPサーバーの共有フォルダーに接続できない間も、検証済みのスキャンを失わないための
+ * 追記専用のローカルジャーナル（ストア＆フォワード用キュー）。
+ *
+ * <説明>
+ * - 各レコードは追記時に要求ファイル名（RequestIdGenerator で生成）を確定してジャーナルに保存する。再送時も同じファイル名を
+ *   使用するため、再起動後に再送しても共有フォルダー上で要求が重複しない。
+ * - レコード形式: MAGIC, 連番, 追記時刻, ファイル名, データ, CRC32。
+ *   起動時にCRCを検証し、書き込み途中で中断された末尾のレコードを切り捨てる。
+ * - fsyncはSYNC_BATCH件ごと、またはsync()呼び出し時にまとめて行う。
+ * - 送信済み位置（連番とオフセット）は別ファイルに一時ファイル＋リネームで原子的に保存する。
+ *   全件送信済みになった時点でジャーナルを切り詰める。
+ * - メモリ上には先頭の未送信レコード1件のみを保持する。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// スキャンジャーナルクラス
+public class ScanJournal {
+
+    private static final int MAGIC = 0x50444131; // レコードの先頭識別子（"PDA1"）
+    private static final int HEADER_SIZE = 8; // MAGIC＋レコード長
+    private static final int MAX_RECORD_SIZE = 64 * 1024; // レコードの最大長（破損検出用）
+    private static final int SYNC_BATCH = 8; // fsyncをまとめる件数
+
+    /***********************************************************************************
+     * <目的>
+     * ジャーナルの1レコード（1件の要求）
+     ***********************************************************************************/
+    public static final class Record {
+        public final long seq; // 連番
+        public final long time; // 追記時刻（ミリ秒）
+        public final String fileName; // 要求ファイル名
+        public final String data; // 要求ファイルに書き込むデータ
+        final long nextOffset; // 次のレコードの位置
+
+        Record(long seq, long time, String fileName, String data, long nextOffset) {
+            this.seq = seq;
+            this.time = time;
+            this.fileName = fileName;
+            this.data = data;
+            this.nextOffset = nextOffset;
+        }
+    }
+
+    private final Path journalFile; // ジャーナルファイル
+    private final Path ackFile; // 送信済み位置ファイル
+    private final FileChannel channel;
+
+    private long lastSeq; // 最後に追記したレコードの連番
+    private long ackedSeq; // 送信済みのレコードの連番
+    private long ackOffset; // 未送信の先頭レコードの位置
+    private int unsynced; // fsync未実行の件数
+    private Record head; // 未送信の先頭レコード（未読込の場合はnull）
+
+    /***********************************************************************************
+     * <目的>
+     * ジャーナルを開く。存在しない場合は作成し、書き込み途中のレコードがあれば切り捨てる。
+     *
+     * <引数>
+     * dir: ジャーナルを保存するディレクトリ
+     ***********************************************************************************/
+    public ScanJournal(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.journalFile = dir.resolve("scan.journal");
+        this.ackFile = dir.resolve("scan.ack");
+        this.channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    // 送信済み位置を読み込み、未送信レコードを走査して状態を復元する
+    private void recover() throws IOException {
+        if (Files.exists(ackFile)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(ackFile))) {
+                ackedSeq = in.readLong();
+                ackOffset = in.readLong();
+            } catch (EOFException e) {
+                ackedSeq = 0;
+                ackOffset = 0;
+            }
+        }
+        if (ackOffset > channel.size()) {
+            ackOffset = channel.size();
+        }
+
+        // 未送信レコードを走査し、最後の正常なレコードの後ろを切り捨てる
+        lastSeq = ackedSeq;
+        long offset = ackOffset;
+        Record r;
+        while ((r = readAt(offset)) != null) {
+            if (r.seq <= ackedSeq) {
+                // 切り詰め前に中断された送信済みレコードは読み飛ばす
+                ackOffset = r.nextOffset;
+            } else {
+                lastSeq = r.seq;
+            }
+            offset = r.nextOffset;
+        }
+        if (offset < channel.size()) {
+            channel.truncate(offset);
+            channel.force(true);
+        }
+        channel.position(offset);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * スキャンをジャーナルに追記する。要求ファイル名はこの時点で確定する。
+     *
+     * <引数>
+     * fileName: 要求ファイル名（再送時もこの名前を使用する）
+     * data: 要求ファイルに書き込むデータ
+     * now: 現在時刻（ミリ秒）
+     *
+     * <戻り値>
+     * 追記したレコード
+     ***********************************************************************************/
+    public synchronized Record append(String fileName, String data, long now) throws IOException {
+        long seq = lastSeq + 1;
+        byte[] body = encode(seq, now, fileName, data);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + body.length + 4);
+        buf.putInt(MAGIC).putInt(body.length).put(body).putInt(crc(body));
+        buf.flip();
+
+        long offset = channel.size();
+        while (buf.hasRemaining()) {
+            channel.write(buf, offset + buf.position());
+        }
+        lastSeq = seq;
+
+        if (++unsynced >= SYNC_BATCH) {
+            sync();
+        }
+        notifyAll();
+        return new Record(seq, now, fileName, data, offset + buf.limit());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 追記済みでfsync未実行のレコードをストレージに書き出す
+     ***********************************************************************************/
+    public synchronized void sync() throws IOException {
+        if (unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 未送信の先頭レコードを返す（削除はしない）
+     *
+     * <戻り値>
+     * 先頭レコード（未送信レコードがない場合はnull）
+     ***********************************************************************************/
+    public synchronized Record peek() throws IOException {
+        if (head == null && ackedSeq < lastSeq) {
+            head = readAt(ackOffset);
+        }
+        return head;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 未送信レコードが追記されるまで待機する
+     *
+     * <引数>
+     * timeoutMillis: 最大待機時間（ミリ秒）
+     ***********************************************************************************/
+    public synchronized void awaitPending(long timeoutMillis) throws InterruptedException {
+        if (ackedSeq >= lastSeq) {
+            wait(timeoutMillis);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 先頭レコードを送信済みとして記録する。全件送信済みになった場合はジャーナルを切り詰める。
+     *
+     * <引数>
+     * record: peek()で取得した先頭レコード
+     ***********************************************************************************/
+    public synchronized void ack(Record record) throws IOException {
+        if (record.seq != ackedSeq + 1) {
+            throw new IllegalStateException("out of order ack: " + record.seq);
+        }
+        ackedSeq = record.seq;
+        ackOffset = record.nextOffset;
+        head = null;
+
+        // 全件送信済みの場合はジャーナルを切り詰める（送信済み位置を先に保存する）
+        if (ackedSeq == lastSeq) {
+            sync();
+            ackOffset = 0;
+            writeAck();
+            channel.truncate(0);
+            channel.force(true);
+        } else {
+            writeAck();
+        }
+    }
+
+    // 未送信の件数を返す
+    public synchronized long depth() {
+        return lastSeq - ackedSeq;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 未送信の先頭レコードの経過時間を返す
+     *
+     * <引数>
+     * now: 現在時刻（ミリ秒）
+     *
+     * <戻り値>
+     * 経過時間（ミリ秒）。未送信レコードがない場合は0
+     ***********************************************************************************/
+    public synchronized long oldestAgeMillis(long now) throws IOException {
+        Record r = peek();
+        return r == null ? 0 : Math.max(0, now - r.time);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * ジャーナルを閉じる
+     ***********************************************************************************/
+    public synchronized void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    // 送信済み位置を一時ファイルに書き込み、原子的に置き換える
+    private void writeAck() throws IOException {
+        Path tmp = ackFile.resolveSibling(ackFile.getFileName() + ".tmp");
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        buf.putLong(ackedSeq).putLong(ackOffset);
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, ackFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 指定位置のレコードを読み込む（末尾または破損している場合はnull）
+    private Record readAt(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!readFully(header, offset) || header.getInt(0) != MAGIC) return null;
+
+        int length = header.getInt(4);
+        if (length <= 0 || length > MAX_RECORD_SIZE) return null;
+
+        ByteBuffer payload = ByteBuffer.allocate(length + 4);
+        if (!readFully(payload, offset + HEADER_SIZE)) return null;
+
+        byte[] body = new byte[length];
+        payload.rewind();
+        payload.get(body);
+        if (payload.getInt() != crc(body)) return null;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            long seq = in.readLong();
+            long time = in.readLong();
+            String fileName = in.readUTF();
+            String data = new String(readBytes(in), StandardCharsets.UTF_8);
+            return new Record(seq, time, fileName, data, offset + HEADER_SIZE + length + 4);
+        }
+    }
+
+    private boolean readFully(ByteBuffer buf, long offset) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, offset + buf.position()) < 0) return false;
+        }
+        return true;
+    }
+
+    private static byte[] encode(long seq, long time, String fileName, String data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + data.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            byte[] d = data.getBytes(StandardCharsets.UTF_8);
+            out.writeLong(seq);
+            out.writeLong(time);
+            out.writeUTF(fileName);
+            out.writeInt(d.length);
+            out.write(d);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return b;
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+}
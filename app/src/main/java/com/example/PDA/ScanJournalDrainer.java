@@ -0,0 +1,123 @@
+/***********************************************************************************
+ * <目的>
+ * ScanJournal の未送信レコードを、追記された順にSOPサーバーの共有フォルダーへ再送する
+ * バックグラウンドスレッド。
+ *
+ * <説明>
+ * - 先頭レコードの要求ファイルを作成できた場合、そのレコードを送信済みとする。
+ * - 同名の要求ファイルが既に存在する場合は、前回の送信が送信済み記録の前に中断されたものと
+ *   みなして送信済みとする（同じファイル名で再送するため、要求は重複しない）。
+ *   応答ファイルが既に存在する場合も、失敗とした書き込みが届いてSOPサーバーが処理済みとみなす。
+ * - 共有フォルダーに接続できない場合は、待機時間を倍にしながら（最大 MAX_BACKOFF）再試行する。
+ * - 待機中も SYNC_INTERVAL ごとにジャーナルのfsyncを行う。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+
+// ジャーナル再送クラス
+public class ScanJournalDrainer implements Runnable {
+
+    private static final long SYNC_INTERVAL = 200; // fsyncの間隔（ミリ秒）
+    private static final long MIN_BACKOFF = 1000; // 再試行の最小待機時間（ミリ秒）
+    private static final long MAX_BACKOFF = 30 * 1000; // 再試行の最大待機時間（ミリ秒）
+
+    /***********************************************************************************
+     * <目的>
+     * レコードの送信完了を通知するリスナー
+     ***********************************************************************************/
+    public interface Listener {
+        void onDelivered(ScanJournal.Record record);
+    }
+
+    private final ScanJournal journal;
+    private final SopTransport transport;
+    private final Listener listener;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * journal: 再送するジャーナル
+     * transport: SOPサーバーとの通信
+     * listener: 送信完了の通知先（不要な場合はnull）
+     ***********************************************************************************/
+    public ScanJournalDrainer(ScanJournal journal, SopTransport transport, Listener listener) {
+        this.journal = journal;
+        this.transport = transport;
+        this.listener = listener;
+    }
+
+    // 再送スレッドを開始する
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this, "journal-drainer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // 再送スレッドを停止する
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        long backoff = MIN_BACKOFF;
+        while (running) {
+            try {
+                journal.sync();
+                ScanJournal.Record record = journal.peek();
+                if (record == null) {
+                    journal.awaitPending(SYNC_INTERVAL);
+                    continue;
+                }
+
+                if (deliver(record)) {
+                    journal.ack(record);
+                    if (listener != null) listener.onDelivered(record);
+                    backoff = MIN_BACKOFF;
+                } else {
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                // ジャーナルの読み書きに失敗した場合は少し待って再試行する
+                try {
+                    Thread.sleep(MAX_BACKOFF);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // 要求ファイルを作成する（作成済みの場合、SOPサーバーが処理済みで応答ファイルがある場合も成功とする）
+    private boolean deliver(ScanJournal.Record record) {
+        try {
+            if (!transport.probe()) return false;
+            String responseName = ResponseHarvester.responseName(record.fileName);
+            if (transport.responseExists(responseName)) {
+                // 送信失敗とした書き込みが届いていた。応答を待つ要求はないため削除する
+                transport.deleteResponse(responseName);
+                return true;
+            }
+            transport.writeRequest(record.fileName, record.data);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/***********************************************************************************
+ * <目的>
+ * スキャンの送信を「検証 → 接続確認 → 書き込み → 応答待ち」の段階に分けて処理するクラス。
+ *
+ * <説明>
+ * - 各段階は専用のスレッドと上限付きのキューを持つ。遅い SMB 呼び出しが他の段階を止めることはない。
+ * - 応答待ちの枠は submit() の中で確保する。枠に空きがない場合や入口（検証）のキューが満杯の場合、
+ *   submit() は待たずに false を返す（UIスレッドをブロックしない）。true を返した送信は必ず最終状態まで進む。
+ *   段階間の受け渡しは次の段階のキューに空きができるまで待つため、下流の詰まりは入口まで伝わる。
+ * - 応答待ちは ResponseHarvester に登録し、応答待ちの枠（InFlightWindow）で同時送信数を制限する。
+ * - 接続できない場合や書き込みに失敗した場合は、オフライン送信待ちキュー（ScanJournal）に保存する。
+ * - 段階ごとのキューの長さ、処理件数、キューでの待ち時間（平均・最大）を stats() で取得できる。
+ *   待ち時間と、送信の依頼から結果の確定までの時間は Diagnostics にも記録する（p50／p95／p99）。
+ *
+ * 状態の通知は各段階のスレッドから行われるため、UIを更新する場合は呼び出し側でUIスレッドに切り替えること。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.*;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 送信パイプラインクラス
+public class SendPipeline {
+
+    private static final String EXTENSION = ".txt"; // 要求ファイルの拡張子
+    private static final int MAX_WRITERS = 4; // 書き込み段階のスレッド数の上限
+
+    // 送信の状態
+    public enum State {
+        SENDING, // 送信中（検証・接続確認・書き込み）
+        AWAITING, // 応答待ち
+        DONE, // 応答を受信した
+        QUEUED, // オフライン送信待ちキューに保存した
+        FAILED // 失敗した
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 送信の状態が変わったときに通知するリスナー
+     ***********************************************************************************/
+    public interface Listener {
+        void onStateChanged(Job job);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 1回分の送信（要求ファイル1つ）
+     ***********************************************************************************/
+    public static final class Job {
+        private final String data;
+        private final String label;
+        private final List<ScanBatch.Record> batch;
+        private final Listener listener;
+        private final long submittedNanos = System.nanoTime(); // 送信を依頼した時刻
+        private String requestName;
+        private volatile State state = State.SENDING;
+        private volatile String result = ""; // 応答の内容、またはエラーメッセージ
+
+        private Job(String data, String label, List<ScanBatch.Record> batch, Listener listener) {
+            this.data = data;
+            this.label = label;
+            this.batch = batch;
+            this.listener = listener;
+        }
+
+        // 応答の表示に使用するラベル（バーコード）を返す
+        public String label() {
+            return label;
+        }
+
+        // バッチ送信したレコードを返す（1件ずつの送信の場合はnull）
+        public List<ScanBatch.Record> batch() {
+            return batch;
+        }
+
+        // 要求ファイル名を返す（検証前はnull）
+        public String requestName() {
+            return requestName;
+        }
+
+        // 現在の状態を返す
+        public State state() {
+            return state;
+        }
+
+        // 応答の結果（DONE。バッチ送信の場合はレコードごとの結果）、またはエラーメッセージ（QUEUED、FAILED）を返す
+        public String result() {
+            return result;
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 段階ごとの統計
+     ***********************************************************************************/
+    public static final class StageStats {
+        public final String name; // 段階の名前
+        public final int depth; // キューの長さ（応答待ちの段階は応答待ちの件数）
+        public final long processed; // 処理件数
+        public final double avgWaitMillis; // キューでの待ち時間の平均（ミリ秒）
+        public final double maxWaitMillis; // キューでの待ち時間の最大（ミリ秒）
+        public final double avgRunMillis; // 処理時間の平均（ミリ秒。応答待ちの段階は応答までの時間）
+        public final double maxRunMillis; // 処理時間の最大（ミリ秒）
+
+        StageStats(String name, int depth, long processed, long totalWaitNanos, long maxWaitNanos,
+                   long totalRunNanos, long maxRunNanos) {
+            this.name = name;
+            this.depth = depth;
+            this.processed = processed;
+            this.avgWaitMillis = processed == 0 ? 0 : totalWaitNanos / 1e6 / processed;
+            this.maxWaitMillis = maxWaitNanos / 1e6;
+            this.avgRunMillis = processed == 0 ? 0 : totalRunNanos / 1e6 / processed;
+            this.maxRunMillis = maxRunNanos / 1e6;
+        }
+    }
+
+    // 処理の段階（専用のスレッドと上限付きのキュー。スレッド数が0の場合は統計のみ記録する）
+    private static final class Stage {
+        // 処理中に次の段階のキューの空きを待った時間（ナノ秒。スレッドごと）
+        private static final ThreadLocal<long[]> BLOCKED = ThreadLocal.withInitial(() -> new long[1]);
+
+        final String name;
+        final Diagnostics.Stage diagnostics; // 待ち時間・処理時間の分布の記録先
+        final BlockingQueue<Runnable> queue;
+        final ThreadPoolExecutor executor;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final AtomicLong totalRunNanos = new AtomicLong();
+        final AtomicLong maxRunNanos = new AtomicLong();
+
+        Stage(String name, Diagnostics.Stage diagnostics, int threads, int capacity) {
+            this.name = name;
+            this.diagnostics = diagnostics;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            if (threads == 0) {
+                this.executor = null;
+                return;
+            }
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, r -> {
+                Thread t = new Thread(r, "send-" + name);
+                t.setDaemon(true);
+                return t;
+            });
+            // スレッドを起動しておき、キューへの追加だけで処理されるようにする
+            executor.prestartAllCoreThreads();
+        }
+
+        // 空きがあれば追加する
+        boolean offer(Runnable work) {
+            return queue.offer(timed(work));
+        }
+
+        // 空きができるまで待って追加する（待った時間はこの段階の待ち時間に含まれる）
+        void put(Runnable work) throws InterruptedException {
+            Runnable timed = timed(work);
+            long start = System.nanoTime();
+            try {
+                queue.put(timed);
+            } finally {
+                BLOCKED.get()[0] += System.nanoTime() - start;
+            }
+        }
+
+        // キューでの待ち時間と処理時間を記録する。処理時間には次の段階の空きを待った時間を含めない
+        private Runnable timed(Runnable work) {
+            long enqueued = System.nanoTime();
+            return () -> {
+                long start = System.nanoTime();
+                recordWait(start - enqueued);
+                long[] blocked = BLOCKED.get();
+                blocked[0] = 0;
+                try {
+                    work.run();
+                } finally {
+                    record(System.nanoTime() - start - blocked[0]);
+                }
+            };
+        }
+
+        void recordWait(long waitNanos) {
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            Diagnostics.recordWait(diagnostics, waitNanos);
+        }
+
+        void record(long runNanos) {
+            processed.incrementAndGet();
+            totalRunNanos.addAndGet(runNanos);
+            maxRunNanos.accumulateAndGet(runNanos, Math::max);
+            Diagnostics.record(diagnostics, runNanos);
+        }
+
+        StageStats stats(int depth) {
+            return new StageStats(name, depth, processed.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+                    totalRunNanos.get(), maxRunNanos.get());
+        }
+    }
+
+    private final SopTransport transport;
+    private final ResponseHarvester harvester;
+    private final InFlightWindow window;
+    private final RequestIdGenerator ids;
+    private final ScanJournal journal; // オフライン送信待ちキュー（無効の場合はnull）
+    private final long timeoutMillis; // 応答の待ち時間（ミリ秒）
+
+    private final Stage validate;
+    private final Stage connect;
+    private final Stage write;
+    private final Stage await; // 応答待ち（キューは使用せず、統計のみ記録する）
+    private final AtomicInteger awaiting = new AtomicInteger(); // 応答待ちの件数
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ。書き込み段階のスレッド数とキューの長さは応答待ちの枠の数から決める。
+     *
+     * <引数>
+     * transport: SOPサーバーとの通信
+     * harvester: 応答収集
+     * window: 応答待ちの枠
+     * ids: 要求ファイル名（相関ID）の生成
+     * journal: オフライン送信待ちキュー（無効の場合はnull）
+     * timeoutMillis: 応答の待ち時間（ミリ秒）
+     ***********************************************************************************/
+    public SendPipeline(SopTransport transport, ResponseHarvester harvester, InFlightWindow window,
+                        RequestIdGenerator ids, ScanJournal journal, long timeoutMillis) {
+        this.transport = transport;
+        this.harvester = harvester;
+        this.window = window;
+        this.ids = ids;
+        this.journal = journal;
+        this.timeoutMillis = timeoutMillis;
+
+        int capacity = Math.max(4, window.capacity() * 2);
+        this.validate = new Stage("validate", Diagnostics.Stage.VALIDATE, 1, capacity);
+        this.connect = new Stage("connect", Diagnostics.Stage.CONNECT, 1, capacity);
+        this.write = new Stage("write", Diagnostics.Stage.WRITE, Math.min(window.capacity(), MAX_WRITERS), capacity);
+        this.await = new Stage("await", Diagnostics.Stage.AWAIT, 0, 0);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 送信を開始する（待たずに戻る）。応答待ちの枠はここで確保する
+     *
+     * <引数>
+     * data: 要求ファイルに書き込むデータ（1行1レコード）
+     * label: 応答の表示に使用するラベル（バーコード）
+     * batch: バッチ送信するレコード（1件ずつの送信の場合はnull）
+     * listener: 状態の通知先
+     *
+     * <戻り値>
+     * 受け付けた場合はtrue、応答待ちの枠に空きがない場合やパイプラインが満杯の場合はfalse
+     ***********************************************************************************/
+    public boolean submit(String data, String label, List<ScanBatch.Record> batch, Listener listener) {
+        Job job = new Job(data, label, batch, listener);
+        job.requestName = ids.next() + EXTENSION;
+        String correlationId = InFlightWindow.correlationId(job.requestName);
+        if (!window.tryAcquire(correlationId, System.currentTimeMillis())) {
+            return false;
+        }
+        if (!validate.offer(() -> validate(job))) {
+            window.release(correlationId);
+            return false;
+        }
+        return true;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 段階ごとの統計を取得する
+     *
+     * <戻り値>
+     * 検証、接続確認、書き込み、応答待ちの順の統計
+     ***********************************************************************************/
+    public List<StageStats> stats() {
+        List<StageStats> list = new ArrayList<>(4);
+        list.add(validate.stats(validate.queue.size()));
+        list.add(connect.stats(connect.queue.size()));
+        list.add(write.stats(write.queue.size()));
+        list.add(await.stats(awaiting.get()));
+        return list;
+    }
+
+    // 検証：送信待ちのスキャンがないことを確認する
+    private void validate(Job job) {
+        job.listener.onStateChanged(job);
+
+        // 送信待ちのスキャンがある場合は、送信順を保つためキューの末尾に追加する
+        if (journal != null && journal.depth() > 0) {
+            fallback(job, PDAERR15);
+            return;
+        }
+        handOff(connect, job, () -> connect(job));
+    }
+
+    // 接続確認：共有フォルダーにアクセスできることを確認する
+    private void connect(Job job) {
+        try {
+            if (!transport.probe()) {
+                fallback(job, PDAERR15);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            fallback(job, PDAERR15);
+            return;
+        }
+        handOff(write, job, () -> write(job));
+    }
+
+    // 書き込み：要求ファイルを作成する
+    private void write(Job job) {
+        try {
+            transport.writeRequest(job.requestName, job.data);
+        } catch (FileAlreadyExistsException e) {
+            // 同名ファイルが存在する場合は再送しない
+            window.release(InFlightWindow.correlationId(job.requestName));
+            finish(job, State.FAILED, PDAERR16);
+            return;
+        } catch (IOException | RuntimeException e) {
+            fallback(job, PDAERR13);
+            return;
+        }
+        await(job);
+    }
+
+    // 応答待ち：応答収集に登録する
+    private void await(Job job) {
+        long start = System.nanoTime();
+        awaiting.incrementAndGet();
+        job.state = State.AWAITING;
+        job.listener.onStateChanged(job);
+
+        harvester.register(ResponseHarvester.responseName(job.requestName), timeoutMillis,
+                new ResponseHarvester.Listener() {
+                    @Override
+                    public void onResponse(String responseName, ResponseParser.Response response) {
+                        if (job.batch == null) {
+                            complete(State.DONE, response.text());
+                        } else if (!response.isOk()) {
+                            // 要求全体が失敗した場合（タイムアウト・該当端末なし等）は、その内容を失敗として通知する
+                            complete(State.FAILED, response.text());
+                        } else {
+                            // バッチ送信の場合は、レコードごとの結果に対応付ける
+                            complete(State.DONE, ScanBatch.formatResults(job.batch, response));
+                        }
+                    }
+
+                    @Override
+                    public void onTimeout(String responseName) {
+                        complete(State.FAILED, PDAERR4);
+                    }
+
+                    @Override
+                    public void onError(String responseName, IOException e) {
+                        complete(State.FAILED, PDAERR13);
+                    }
+
+                    private void complete(State state, String result) {
+                        awaiting.decrementAndGet();
+                        await.record(System.nanoTime() - start);
+                        window.release(InFlightWindow.correlationId(job.requestName));
+                        finish(job, state, result);
+                    }
+                });
+    }
+
+    // 次の段階に渡す（キューに空きができるまで待つ）
+    private void handOff(Stage next, Job job, Runnable work) {
+        try {
+            next.put(work);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            window.release(InFlightWindow.correlationId(job.requestName));
+            finish(job, State.FAILED, PDAERR13);
+        }
+    }
+
+    // 送信できなかったスキャンをオフライン送信待ちキューに保存する（保存できない場合は失敗とする）
+    private void fallback(Job job, String errorMessage) {
+        window.release(InFlightWindow.correlationId(job.requestName));
+        if (journal != null) {
+            try {
+                // 失敗した書き込みが実際には届いていた場合に再送が重複しないよう、同じ要求ファイル名で保存する
+                // （再送時は同名ファイルの存在を送信済みとみなす）
+                journal.append(job.requestName, job.data, System.currentTimeMillis());
+                finish(job, State.QUEUED, PDAERR17);
+                return;
+            } catch (IOException e) {
+                // 保存できない場合は失敗として通知する
+            }
+        }
+        finish(job, State.FAILED, errorMessage);
+    }
+
+    // 最終状態を通知する
+    private void finish(Job job, State state, String result) {
+        Diagnostics.record(Diagnostics.Stage.TOTAL, System.nanoTime() - job.submittedNanos);
+        job.result = result;
+        job.state = state;
+        job.listener.onStateChanged(job);
+    }
+}
@@ -0,0 +1,259 @@
+/***********************************************************************************
+ * <目的>
+ * smbj（SMB2/3）でSOPサーバーの共有へのセッションを長期間保持し、スキャン間で再利用するクラス。
+ * jcifs（SMB1）用の SmbSessionManager と同じ役割を持つ。
+ *
+ * <説明>
+ * - 接続（Connection）、認証済みのセッション（Session）、共有への接続（DiskShare）を1つずつ保持し、
+ *   全操作で共有する。スキャンごとの接続・認証・ツリー接続は発生しない。
+ * - アイドル状態の接続がサーバーに切断されないよう、定期的にフォルダーの存在確認を行う。
+ * - セッション・ツリー・接続が切断された場合は接続を破棄して再接続し、操作を1回だけ再試行する。
+ *   サーバーが処理済みの可能性があるため、冪等でない操作は再試行用の処理を指定する。
+ * - 保持している接続で実行した操作数、接続回数、再接続回数をカウンターとして公開する。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.PDA.Diagnostics.SmbOp;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.SMBClient;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.auth.AuthenticationContext;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.connection.Connection;
+import com.hierynomus.smbj.session.Session;
+import com.hierynomus.smbj.share.DiskShare;
+
+// SMB2セッション管理クラス
+public class Smb2SessionManager {
+
+    // 応答を待つ時間（ミリ秒）
+    private static final long TIMEOUT = 30 * 1000;
+
+    // キープアライブの間隔（秒）
+    private static final int KEEPALIVE_INTERVAL = 30;
+
+    /***********************************************************************************
+     * <目的>
+     * 共有上で実行するSMB操作
+     ***********************************************************************************/
+    public interface Smb2Call<T> {
+        T call(DiskShare share) throws IOException;
+    }
+
+    private final String host; // サーバーのホスト名またはIPアドレス
+    private final String shareName; // 共有名
+    private final String folder; // 共有内の要求＆応答ファイルのフォルダー（"\"区切り、末尾の区切りなし）
+    private final AuthenticationContext auth;
+    private final SMBClient client;
+
+    private Connection connection; // 接続（未接続の場合はnull）
+    private DiskShare share; // 接続済みの共有（未接続の場合はnull）
+    private ScheduledExecutorService keepAlive; // キープアライブ用スレッド
+
+    // カウンター
+    private final AtomicLong cachedUses = new AtomicLong(); // 保持している接続で実行した操作数
+    private final AtomicLong connects = new AtomicLong(); // 接続回数（初回接続＋再接続）
+    private final AtomicLong reconnects = new AtomicLong(); // 接続エラー後の再接続回数
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * host: サーバーのホスト名またはIPアドレス（例: 192.168.119.249）
+     * sharePath: 共有名とフォルダー（例: interface/bcr/。先頭の要素を共有名とする）
+     * auth: 認証情報
+     ***********************************************************************************/
+    public Smb2SessionManager(String host, String sharePath, AuthenticationContext auth) {
+        String path = sharePath.replace('/', '\\');
+        while (path.startsWith("\\")) path = path.substring(1);
+        while (path.endsWith("\\")) path = path.substring(0, path.length() - 1);
+        int sep = path.indexOf('\\');
+        this.host = host;
+        this.shareName = sep < 0 ? path : path.substring(0, sep);
+        this.folder = sep < 0 ? "" : path.substring(sep + 1);
+        this.auth = auth;
+        this.client = new SMBClient(SmbConfig.builder()
+                .withTimeout(TIMEOUT, TimeUnit.MILLISECONDS)
+                .build());
+    }
+
+    // 共有内の要求＆応答ファイルのフォルダーを返す
+    public String folder() {
+        return folder;
+    }
+
+    // フォルダー内のファイルのパスを返す
+    public String path(String fileName) {
+        return folder.isEmpty() ? fileName : folder + "\\" + fileName;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 接続済みの共有を返す。未接続の場合は接続・認証・ツリー接続を行う。
+     *
+     * <戻り値>
+     * 共有
+     ***********************************************************************************/
+    public synchronized DiskShare share() throws IOException {
+        if (share != null && share.isConnected()) {
+            cachedUses.incrementAndGet();
+            return share;
+        }
+        disconnect();
+
+        try {
+            connection = Diagnostics.timed(SmbOp.CONNECT, () -> client.connect(host));
+            Session session = Diagnostics.timed(SmbOp.SESSION_SETUP, () -> connection.authenticate(auth));
+            share = (DiskShare) Diagnostics.timed(SmbOp.TREE_CONNECT, () -> session.connectShare(shareName));
+        } catch (IOException | SMBRuntimeException | ClassCastException e) {
+            disconnect();
+            throw new IOException("cannot connect to \\\\" + host + "\\" + shareName, e);
+        }
+        connects.incrementAndGet();
+        startKeepAlive();
+        return share;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 共有上でSMB操作を実行する。接続エラーの場合は再接続して1回だけ再試行する。
+     *
+     * <引数>
+     * call: 実行する操作（再試行しても結果が変わらないこと）
+     *
+     * <戻り値>
+     * 操作の結果
+     ***********************************************************************************/
+    public <T> T execute(Smb2Call<T> call) throws IOException {
+        return execute(call, call);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 共有上でSMB操作を実行する。接続エラーの場合は再接続し、再試行用の処理を1回だけ実行する。
+     * 切断前にサーバーが処理を終えていた可能性がある操作（ファイルの作成など）に使用する。
+     *
+     * <引数>
+     * call: 実行する操作
+     * retry: 再接続後に実行する操作
+     *
+     * <戻り値>
+     * 操作の結果
+     ***********************************************************************************/
+    public <T> T execute(Smb2Call<T> call, Smb2Call<T> retry) throws IOException {
+        DiskShare current = share();
+        try {
+            return call.call(current);
+        } catch (SMBRuntimeException | IOException e) {
+            if (!isConnectionError(e)) throw e;
+
+            // 接続を破棄して再接続し、再試行する
+            invalidate(current);
+            reconnects.incrementAndGet();
+            return retry.call(share());
+        }
+    }
+
+    // 接続エラー（セッション・ツリー・ソケットの切断）かどうかを判定
+    private static boolean isConnectionError(Exception e) {
+        if (e instanceof SMBApiException) {
+            NtStatus status = ((SMBApiException) e).getStatus();
+            return status == NtStatus.STATUS_NETWORK_NAME_DELETED
+                    || status == NtStatus.STATUS_USER_SESSION_DELETED
+                    || status == NtStatus.STATUS_CONNECTION_DISCONNECTED
+                    || status == NtStatus.STATUS_CONNECTION_RESET;
+        }
+        // 応答のない切断・タイムアウト（SMBRuntimeException に包まれた TransportException など）。
+        // サーバーが拒否したエラーやファイル名の重複などは再試行しない
+        for (Throwable c = e; c != null; c = c.getCause()) {
+            if (c instanceof TransportException || c instanceof TimeoutException) return true;
+        }
+        return false;
+    }
+
+    // 指定された共有が現在の共有であれば破棄する
+    private synchronized void invalidate(DiskShare stale) {
+        if (share == stale) {
+            disconnect();
+        }
+    }
+
+    // 接続を閉じる（エラーは無視する）
+    private void disconnect() {
+        share = null;
+        if (connection != null) {
+            try {
+                connection.close(true);
+            } catch (IOException | RuntimeException e) {
+                // 切断済みの場合など
+            }
+            connection = null;
+        }
+    }
+
+    // キープアライブを開始する（未開始の場合のみ）
+    private void startKeepAlive() {
+        if (keepAlive != null) return;
+
+        keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "smb2-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        keepAlive.scheduleWithFixedDelay(this::ping, KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    // 共有へ問い合わせを行い、接続のアイドル切断を防ぐ
+    private void ping() {
+        DiskShare current;
+        synchronized (this) {
+            current = share;
+        }
+        if (current == null) return;
+
+        try {
+            Diagnostics.timed(SmbOp.KEEPALIVE, () -> current.folderExists(folder));
+        } catch (IOException | RuntimeException e) {
+            invalidate(current); // 次回の操作で再接続する
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * キープアライブを停止し、接続を閉じる
+     ***********************************************************************************/
+    public synchronized void close() {
+        if (keepAlive != null) {
+            keepAlive.shutdownNow();
+            keepAlive = null;
+        }
+        disconnect();
+    }
+
+    // 保持している接続で実行した操作数を返す
+    public long getCachedUses() {
+        return cachedUses.get();
+    }
+
+    // 接続回数（初回接続＋再接続）を返す
+    public long getConnects() {
+        return connects.get();
+    }
+
+    // 接続エラー後の再接続回数を返す
+    public long getReconnects() {
+        return reconnects.get();
+    }
+}
@@ -0,0 +1,409 @@
+/***********************************************************************************
+ * <目的>
+ * smbj（SMB2/3）を使用してSOPサーバーの共有フォルダーと要求＆応答ファイルをやり取りするクラス。
+ * jcifs（SMB1）を使用する SmbSopTransport と差し替えて使用する（Constants.TRANSPORT）。
+ *
+ * <説明>
+ * 1回の送信に必要なサーバーとの往復を減らす。
+ * - 要求ファイルは一時ファイル名で開いて書き込み、同じハンドルのまま要求ファイル名に変更（置き換えなし）
+ *   してから閉じる。名前の変更が同名ファイルの確認を兼ね、SOPサーバーに書き込み途中のファイルは見えない。
+ *   Constants.ATOMICPUBLISH が false の場合は作成方法 FILE_CREATE（存在する場合は失敗）で開いて書き込む。
+ *   いずれも同名ファイルの確認（exists）、作成（createNewFile）、書き込み用の再オープンが不要になる。
+ * - 応答ファイルは削除の権限付きで開き、1回の READ で全体を読み込む。読み込めた場合は同じハンドルで
+ *   削除予約（SET_INFO FileDispositionInformation）を設定してから閉じるため、削除用に開き直す必要がない。
+ *   書きかけの応答は削除せずに残すため、開く時点で削除が決まる FILE_DELETE_ON_CLOSE は使用しない。
+ * - フォルダーの存在確認は SMB1 の属性キャッシュと同じく PROBE_CACHE の間は結果を再利用する。
+ *
+ * 1回の送信（要求1件・応答1件）あたりの往復回数:
+ *                         SmbSopTransport (SMB1)                        Smb2SopTransport (SMB2/3)
+ *   接続確認              1（QUERY_PATH_INFO。isDirectory は属性キャッシュ）  0～2（CREATE + CLOSE。5秒間は再利用）
+ *   要求ファイルの作成    4（一時ファイルのオープン 1、WRITE 1、CLOSE 1、    4（CREATE + WRITE + SET_INFO(名前変更) + CLOSE）
+ *                           名前の変更 1。ATOMICPUBLISH が false の場合は 6）   （ATOMICPUBLISH が false の場合は 3）
+ *   応答の読み込みと削除  5（オープン 1、READ 2（データ・終端）、CLOSE 1、     4（CREATE + READ + SET_INFO(削除予約) + CLOSE）
+ *                           DELETE 1）
+ *   合計（確認を除く）    10                                              8～10
+ *   応答確認（1回ごと）   1（FIND_FIRST2）                                4（CREATE + QUERY_DIRECTORY 2 + CLOSE）
+ *   応答の検知            確認の間隔による（変更通知なし）                CHANGE_NOTIFY の完了（応答確認は通知時のみ）
+ * smbj は SMB2 の複合要求（compound）を公開していないため、CREATE・WRITE・CLOSE は個別の往復となる。
+ *
+ * 全ての操作は Smb2SessionManager が保持する共有上で実行し、呼び出しごとに Diagnostics に記録する。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.ATOMICPUBLISH;
+import static com.example.PDA.Diagnostics.timed;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.example.PDA.Diagnostics.SmbOp;
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.directory.FileNotifyInformation;
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMB2CompletionFilter;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2CreateOptions;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyResponse;
+import com.hierynomus.smbj.share.Directory;
+import com.hierynomus.smbj.share.DiskShare;
+import com.hierynomus.smbj.share.File;
+
+// SMB2通信クラス
+public class Smb2SopTransport implements SopTransport {
+
+    private static final long PROBE_CACHE = TimeUnit.SECONDS.toNanos(5); // フォルダーの存在確認の結果を再利用する時間
+
+    // 変更通知の対象（作成・名前の変更・削除、書き込み）
+    private static final Set<SMB2CompletionFilter> WATCH_FILTER = EnumSet.of(
+            SMB2CompletionFilter.FILE_NOTIFY_CHANGE_FILE_NAME, SMB2CompletionFilter.FILE_NOTIFY_CHANGE_LAST_WRITE);
+
+    private final Smb2SessionManager session; // 共有へのセッション
+    private volatile long probedNanos; // 最後にフォルダーの存在を確認した時刻（未確認の場合は0）
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * session: 共有へのセッション（複数の通信で共有してよい）
+     ***********************************************************************************/
+    public Smb2SopTransport(Smb2SessionManager session) {
+        this.session = session;
+    }
+
+    // セッションを返す
+    public Smb2SessionManager getSession() {
+        return session;
+    }
+
+    @Override
+    public boolean probe() throws IOException {
+        long probed = probedNanos;
+        if (probed != 0 && System.nanoTime() - probed < PROBE_CACHE && session.share().isConnected()) {
+            return true;
+        }
+        boolean exists = session.execute(share -> timed(SmbOp.IS_DIRECTORY, () -> share.folderExists(session.folder())));
+        probedNanos = exists ? System.nanoTime() : 0;
+        return exists;
+    }
+
+    @Override
+    public void writeRequest(String fileName, String data) throws IOException {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        String path = session.path(fileName);
+        if (ATOMICPUBLISH) {
+            publishRequest(fileName, bytes);
+            return;
+        }
+
+        session.execute(share -> createRequest(share, path, bytes, false),
+                share -> createRequest(share, path, bytes, true));
+    }
+
+    // 要求ファイルを作成して書き込む（retry: 再接続後の再試行）
+    private static Void createRequest(DiskShare share, String path, byte[] bytes, boolean retry) throws IOException {
+        // 同名ファイルが存在する場合は作成に失敗する（存在確認を兼ねる）
+        File file;
+        try {
+            file = timed(SmbOp.CREATE, () -> share.openFile(path,
+                    EnumSet.of(AccessMask.GENERIC_WRITE),
+                    EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                    EnumSet.noneOf(SMB2ShareAccess.class),
+                    SMB2CreateDisposition.FILE_CREATE,
+                    EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE)));
+        } catch (SMBApiException e) {
+            if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_COLLISION) {
+                // 再試行で自分の書き込みが完了していた場合は成功とする
+                if (retry && hasContent(share, path, bytes)) return null;
+                throw new FileAlreadyExistsException(path);
+            }
+            throw e;
+        }
+
+        // データを書き込んで閉じる
+        try {
+            timed(SmbOp.WRITE, () -> file.write(bytes, 0));
+            return null;
+        } finally {
+            close(file);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 要求ファイルを一時ファイルに書き込み、同じハンドルで要求ファイル名に変更して公開する。
+     *
+     * <説明>
+     * 名前の変更（SET_INFO FileRenameInformation）は置き換えを指定しないため、
+     * 同名ファイルが存在する場合は失敗する（存在確認を兼ねる）。
+     * 公開できなかった場合は一時ファイルに削除予約を設定してから閉じる。
+     * 名前の変更の応答を受け取る前に切断された場合は、再接続後の再試行で要求ファイルが
+     * 既に存在することになるため、内容が一致すれば公開済みとする。
+     *
+     * <引数>
+     * fileName: 要求ファイル名
+     * bytes: 書き込むデータ
+     ***********************************************************************************/
+    private void publishRequest(String fileName, byte[] bytes) throws IOException {
+        String path = session.path(fileName);
+        session.execute(share -> publish(share, path, session.path(SopTransport.tempName(fileName)), bytes, false),
+                share -> publish(share, path, session.path(SopTransport.tempName(fileName)), bytes, true));
+    }
+
+    // 一時ファイルに書き込み、要求ファイル名に変更する（retry: 再接続後の再試行）
+    private static Void publish(DiskShare share, String path, String tmpPath, byte[] bytes, boolean retry)
+            throws IOException {
+        // 一時ファイルを作成（既に存在する場合は上書き）する。名前の変更のため DELETE を要求する
+        File file = timed(SmbOp.CREATE, () -> share.openFile(tmpPath,
+                EnumSet.of(AccessMask.GENERIC_WRITE, AccessMask.DELETE),
+                EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                EnumSet.noneOf(SMB2ShareAccess.class),
+                SMB2CreateDisposition.FILE_OVERWRITE_IF,
+                EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE)));
+
+        boolean published = false;
+        try {
+            timed(SmbOp.WRITE, () -> file.write(bytes, 0));
+            try {
+                timed(SmbOp.RENAME, () -> {
+                    file.rename(path, false);
+                    return null;
+                });
+            } catch (SMBApiException e) {
+                if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_COLLISION) {
+                    // 再試行で自分の要求ファイルが公開済みだった場合は成功とする（一時ファイルは削除する）
+                    if (retry && hasContent(share, path, bytes)) return null;
+                    throw new FileAlreadyExistsException(path);
+                }
+                throw e;
+            }
+            published = true;
+            return null;
+        } finally {
+            if (!published) {
+                try {
+                    file.deleteOnClose();
+                } catch (RuntimeException e) {
+                    // 切断済みの場合など（一時ファイルは SOP サーバーに無視される）
+                }
+            }
+            close(file);
+        }
+    }
+
+    // ファイルの内容が指定されたデータと一致するかを確認する
+    private static boolean hasContent(DiskShare share, String path, byte[] bytes) throws IOException {
+        File file = timed(SmbOp.OPEN, () -> openForRead(share, path, false));
+        try (InputStream in = new ResponseStream(file)) {
+            return SopTransport.hasContent(in, bytes);
+        }
+    }
+
+    @Override
+    public boolean responseExists(String fileName) throws IOException {
+        return session.execute(share -> timed(SmbOp.EXISTS, () -> share.fileExists(session.path(fileName))));
+    }
+
+    @Override
+    public List<String> listResponses(String prefix) throws IOException {
+        // ワイルドカードを指定し、サーバー側で絞り込んだ一覧を取得する
+        List<FileIdBothDirectoryInformation> files = session.execute(share ->
+                timed(SmbOp.LIST, () -> share.list(session.folder(), prefix + "*R.txt")));
+        List<String> names = new ArrayList<>(files.size());
+        for (FileIdBothDirectoryInformation f : files) {
+            names.add(f.getFileName());
+        }
+        return names;
+    }
+
+    @Override
+    public InputStream openResponse(String fileName) throws IOException {
+        return new ResponseStream(open(fileName, false));
+    }
+
+    @Override
+    public <T> T consumeResponse(String fileName, ResponseReader<T> reader) throws IOException {
+        File file = open(fileName, true);
+        try {
+            T result;
+            try {
+                result = reader.read(new ResponseStream(file));
+            } catch (NotReadyException e) {
+                throw e; // 書きかけの応答は残す
+            } catch (IOException | RuntimeException e) {
+                try {
+                    deleteOnClose(file);
+                } catch (IOException | RuntimeException d) {
+                    e.addSuppressed(d);
+                }
+                throw e;
+            }
+            deleteOnClose(file);
+            return result;
+        } finally {
+            close(file);
+        }
+    }
+
+    @Override
+    public void deleteResponse(String fileName) throws IOException {
+        String path = session.path(fileName);
+        session.execute(share -> delete(share, path, false), share -> delete(share, path, true));
+    }
+
+    // 応答ファイルを削除する（retry: 再接続後の再試行。切断前に削除済みの場合は成功とする）
+    private static Void delete(DiskShare share, String path, boolean retry) throws IOException {
+        try {
+            return timed(SmbOp.DELETE, () -> {
+                share.rm(path);
+                return null;
+            });
+        } catch (SMBApiException e) {
+            if (retry && e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND) return null;
+            throw e;
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答フォルダーを開き、変更通知（CHANGE_NOTIFY）で監視する。
+     *
+     * <説明>
+     * 監視用スレッドが CHANGE_NOTIFY を1件ずつ発行し、完了するたびに変更されたファイル名を通知して
+     * 次を発行する。サーバーの通知バッファーが溢れた場合（STATUS_NOTIFY_ENUM_DIR）は名前なしで通知する。
+     * 接続が切れた場合は onClosed() を通知する（再接続後の監視は呼び出し側が改めて開始する）。
+     ***********************************************************************************/
+    @Override
+    public Closeable watchResponses(ChangeListener listener) throws IOException {
+        Directory dir = session.execute(share -> timed(SmbOp.OPEN, () -> share.openDirectory(session.folder(),
+                EnumSet.of(AccessMask.FILE_LIST_DIRECTORY),
+                EnumSet.of(FileAttributes.FILE_ATTRIBUTE_DIRECTORY),
+                SMB2ShareAccess.ALL,
+                SMB2CreateDisposition.FILE_OPEN,
+                EnumSet.of(SMB2CreateOptions.FILE_DIRECTORY_FILE))));
+
+        Thread t = new Thread(() -> watch(dir, listener), "smb2-response-watch");
+        t.setDaemon(true);
+        t.start();
+        return dir;
+    }
+
+    // 監視用スレッドの処理（フォルダーが閉じられるまで変更を通知する）
+    private static void watch(Directory dir, ChangeListener listener) {
+        try {
+            while (true) {
+                SMB2ChangeNotifyResponse response = dir.watchAsync(WATCH_FILTER, false).get();
+                long status = response.getHeader().getStatusCode();
+                if (status == NtStatus.STATUS_NOTIFY_CLEANUP.getValue()) {
+                    return; // 呼び出し側が閉じた
+                }
+                if (status == NtStatus.STATUS_NOTIFY_ENUM_DIR.getValue()) {
+                    listener.onChange(null);
+                    continue;
+                }
+                if (!NtStatus.isSuccess(status)) {
+                    listener.onClosed(new IOException("change notify failed: " + NtStatus.valueOf(status)));
+                    return;
+                }
+                for (FileNotifyInformation info : response.getFileNotifyInfoList()) {
+                    listener.onChange(info.getFileName());
+                }
+            }
+        } catch (ExecutionException | RuntimeException e) {
+            listener.onClosed(new IOException("change notify failed", e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 応答ファイルを開く（delete: 削除予約のため DELETE の権限を要求する）
+    private File open(String fileName, boolean delete) throws IOException {
+        String path = session.path(fileName);
+        return session.execute(share -> {
+            try {
+                return timed(SmbOp.OPEN, () -> openForRead(share, path, delete));
+            } catch (SMBApiException e) {
+                if (e.getStatus() == NtStatus.STATUS_OBJECT_NAME_NOT_FOUND) throw new NoSuchFileException(path);
+                // SOPサーバーが共有を許可せずに書き込み中（閉じた後に再試行する）
+                if (e.getStatus() == NtStatus.STATUS_SHARING_VIOLATION) throw new NotReadyException(path, e);
+                throw e;
+            }
+        });
+    }
+
+    private static File openForRead(DiskShare share, String path, boolean delete) {
+        EnumSet<AccessMask> access = EnumSet.of(AccessMask.GENERIC_READ);
+        if (delete) access.add(AccessMask.DELETE);
+        // SOPサーバーが書き込み用に開いたままでも開けるよう、読み込み・書き込み・削除の共有を許可する
+        return share.openFile(path, access, EnumSet.of(FileAttributes.FILE_ATTRIBUTE_NORMAL),
+                SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN,
+                EnumSet.of(SMB2CreateOptions.FILE_NON_DIRECTORY_FILE));
+    }
+
+    // 開いているハンドルに削除予約を設定する（閉じた時点でサーバーが削除する）
+    private static void deleteOnClose(File file) throws IOException {
+        timed(SmbOp.DELETE, () -> {
+            file.deleteOnClose();
+            return null;
+        });
+    }
+
+    // ハンドルを閉じる（CLOSE として記録する。削除予約がある場合はここで削除される）
+    private static void close(File file) throws IOException {
+        timed(SmbOp.CLOSE, () -> {
+            file.close();
+            return null;
+        });
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルの入力ストリーム。要求した長さより短く読めた場合はファイルの終端とみなし、
+     * 終端を確認するための READ を行わない。閉じるとハンドルを閉じる。
+     ***********************************************************************************/
+    private static final class ResponseStream extends InputStream {
+        private final File file;
+        private long offset;
+        private boolean eof;
+
+        ResponseStream(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (eof) return -1;
+            int n = timed(SmbOp.READ, () -> file.read(b, offset, off, len));
+            if (n < len) eof = true;
+            if (n <= 0) return -1;
+            offset += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Smb2SopTransport.close(file);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/***********************************************************************************
+ * <目的>
+ * SOPサーバーの共有フォルダーへのSMBセッションを長期間保持し、スキャン間で再利用するクラス。
+ *
+ * <説明>
+ * - 認証情報（NtlmPasswordAuthentication）は1つだけ生成し、全操作で共有する。
+ *   jcifsは同じ認証情報のセッションとツリー接続をトランスポート単位で再利用するため、
+ *   スキャンごとのNTLMハンドシェイクが発生しない。
+ * - jcifsはアイドル状態のソケットをsoTimeout経過後に切断するため、その前に定期的な
+ *   キープアライブを行い、セッションを維持する。
+ * - セッション・ツリー・ソケットが切断された場合はセッションを破棄して再接続し、操作を1回だけ
+ *   再試行する。サーバーが処理済みの可能性があるため、冪等でない操作は再試行用の処理を指定する。
+ * - 保持している接続で実行した操作数、接続回数、再接続回数をカウンターとして公開する。
+ *   jcifsはソケットが切断されると内部で再接続するため、保持している接続で実行した操作数は
+ *   NTLMハンドシェイクを行わなかった回数とは一致しない。
+ *
+ * 全メソッドはスレッドセーフ。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jcifs.smb.NtStatus;
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+
+// SMBセッション管理クラス
+public class SmbSessionManager {
+
+    // アイドル状態のソケットを切断するまでの時間（ミリ秒）
+    private static final int SO_TIMEOUT = 120 * 1000;
+
+    // キープアライブの間隔（秒）。SO_TIMEOUTより短くすること
+    private static final int KEEPALIVE_INTERVAL = 30;
+
+    // セッションが削除された（jcifs の NtStatus に定義がないため、ここで定義する）
+    private static final int NT_STATUS_USER_SESSION_DELETED = 0xC0000203;
+
+    /***********************************************************************************
+     * <目的>
+     * セッション上で実行するSMB操作
+     ***********************************************************************************/
+    public interface SmbCall<T> {
+        T call(SmbFile folder) throws IOException;
+    }
+
+    private final String folderPath; // 共有フォルダーのパス（"/"で終わる）
+    private final NtlmPasswordAuthentication auth; // 共有する認証情報
+
+    private SmbFile folder; // 接続済みの共有フォルダー（未接続の場合はnull）
+    private ScheduledExecutorService keepAlive; // キープアライブ用スレッド
+
+    // カウンター
+    private final AtomicLong cachedUses = new AtomicLong(); // 保持している接続で実行した操作数
+    private final AtomicLong connects = new AtomicLong(); // 接続回数（初回接続＋再接続）
+    private final AtomicLong reconnects = new AtomicLong(); // 接続エラー後の再接続回数
+
+    static {
+        // アイドル切断までの時間を延長し、スキャン間でソケットとセッションを維持する
+        jcifs.Config.setProperty("jcifs.smb.client.soTimeout", String.valueOf(SO_TIMEOUT));
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * folderPath: 共有フォルダーのパス（例: smb://192.168.119.249/interface/bcr/）
+     * auth: 認証情報
+     ***********************************************************************************/
+    public SmbSessionManager(String folderPath, NtlmPasswordAuthentication auth) {
+        this.folderPath = folderPath;
+        this.auth = auth;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 接続済みの共有フォルダーを返す。未接続の場合は接続（ツリー接続）を確立する。
+     *
+     * <戻り値>
+     * 共有フォルダーのSmbFile
+     ***********************************************************************************/
+    public synchronized SmbFile folder() throws IOException {
+        if (folder != null) {
+            cachedUses.incrementAndGet();
+            return folder;
+        }
+
+        SmbFile f = new SmbFile(folderPath, auth);
+        // セッション確立とツリー接続（jcifsは個別に実行できないため、まとめて CONNECT として記録する）
+        Diagnostics.timed(Diagnostics.SmbOp.CONNECT, () -> {
+            f.connect();
+            return null;
+        });
+        folder = f;
+        connects.incrementAndGet();
+        startKeepAlive();
+        return folder;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * セッション上でSMB操作を実行する。接続エラーの場合は再接続して1回だけ再試行する。
+     *
+     * <引数>
+     * call: 実行する操作（再試行しても結果が変わらないこと）
+     *
+     * <戻り値>
+     * 操作の結果
+     ***********************************************************************************/
+    public <T> T execute(SmbCall<T> call) throws IOException {
+        return execute(call, call);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * セッション上でSMB操作を実行する。接続エラーの場合は再接続し、再試行用の処理を1回だけ実行する。
+     * 切断前にサーバーが処理を終えていた可能性がある操作（ファイルの作成など）に使用する。
+     *
+     * <引数>
+     * call: 実行する操作
+     * retry: 再接続後に実行する操作
+     *
+     * <戻り値>
+     * 操作の結果
+     ***********************************************************************************/
+    public <T> T execute(SmbCall<T> call, SmbCall<T> retry) throws IOException {
+        SmbFile current = folder();
+        try {
+            return call.call(current);
+        } catch (SmbException e) {
+            if (!isConnectionError(e)) throw e;
+
+            // セッションを破棄して再接続し、再試行する
+            invalidate(current);
+            reconnects.incrementAndGet();
+            return retry.call(folder());
+        }
+    }
+
+    // 接続エラー（セッション・ツリー・ソケットの切断）かどうかを判定。
+    // NT_STATUS_UNSUCCESSFUL はサーバーが処理を拒否した場合にも返されるため、通信の失敗が原因の場合のみ対象とする
+    private static boolean isConnectionError(SmbException e) {
+        int status = e.getNtStatus();
+        return status == NtStatus.NT_STATUS_NETWORK_NAME_DELETED
+                || status == NtStatus.NT_STATUS_PORT_DISCONNECTED
+                || status == NT_STATUS_USER_SESSION_DELETED
+                || e.getRootCause() instanceof IOException;
+    }
+
+    // 指定されたセッションが現在のセッションであれば破棄する
+    private synchronized void invalidate(SmbFile stale) {
+        if (folder == stale) {
+            folder = null;
+        }
+    }
+
+    // キープアライブを開始する（未開始の場合のみ）
+    private void startKeepAlive() {
+        if (keepAlive != null) return;
+
+        keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "smb-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        keepAlive.scheduleWithFixedDelay(this::ping, KEEPALIVE_INTERVAL, KEEPALIVE_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    // 共有フォルダーへ問い合わせを行い、ソケットのアイドル切断を防ぐ
+    private void ping() {
+        SmbFile current;
+        synchronized (this) {
+            current = folder;
+        }
+        if (current == null) return;
+
+        try {
+            // 属性キャッシュを使わないよう、新しいSmbFileで問い合わせる
+            Diagnostics.timed(Diagnostics.SmbOp.KEEPALIVE, new SmbFile(folderPath, auth)::exists);
+        } catch (IOException e) {
+            invalidate(current); // 次回の操作で再接続する
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * キープアライブを停止し、セッションを破棄する
+     ***********************************************************************************/
+    public synchronized void close() {
+        if (keepAlive != null) {
+            keepAlive.shutdownNow();
+            keepAlive = null;
+        }
+        folder = null;
+    }
+
+    // 保持している接続で実行した操作数を返す
+    public long getCachedUses() {
+        return cachedUses.get();
+    }
+
+    // 接続回数（初回接続＋再接続）を返す
+    public long getConnects() {
+        return connects.get();
+    }
+
+    // 接続エラー後の再接続回数を返す
+    public long getReconnects() {
+        return reconnects.get();
+    }
+}
@@ -0,0 +1,218 @@
+/***********************************************************************************
+ * <目的>
+ * jcifsを使用してSOPサーバーの共有フォルダーと要求＆応答ファイルをやり取りするクラス。
+ *
+ * <説明>
+ * 共有フォルダーのパスは "smb:" + SOPFOLDER + RESPONSEFOLDER で構築する。
+ * 全ての操作は SmbSessionManager が保持するセッション上で実行する。
+ * jcifs の呼び出しごとに、処理時間と例外の有無を Diagnostics に記録する。
+ * 要求ファイルは一時ファイルに書き込んでから名前を変更して公開する（Constants.ATOMICPUBLISH）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.ATOMICPUBLISH;
+import static com.example.PDA.Diagnostics.timed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.PDA.Diagnostics.SmbOp;
+
+import jcifs.smb.NtStatus;
+import jcifs.smb.SmbException;
+import jcifs.smb.SmbFile;
+import jcifs.smb.SmbFileOutputStream;
+
+// SMB通信クラス
+public class SmbSopTransport implements SopTransport {
+
+    private final SmbSessionManager session; // 共有フォルダーへのセッション
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * session: 共有フォルダーへのセッション（複数の通信で共有してよい）
+     ***********************************************************************************/
+    public SmbSopTransport(SmbSessionManager session) {
+        this.session = session;
+    }
+
+    // セッションを返す
+    public SmbSessionManager getSession() {
+        return session;
+    }
+
+    @Override
+    public boolean probe() throws IOException {
+        // サーバーフォルダーが存在し、ディレクトリであるかを確認
+        return session.execute(folder -> timed(SmbOp.EXISTS, folder::exists)
+                && timed(SmbOp.IS_DIRECTORY, folder::isDirectory));
+    }
+
+    @Override
+    public void writeRequest(String fileName, String data) throws IOException {
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        if (ATOMICPUBLISH) {
+            publishRequest(fileName, bytes);
+            return;
+        }
+
+        session.execute(folder -> createRequest(folder, fileName, bytes, false),
+                folder -> createRequest(folder, fileName, bytes, true));
+    }
+
+    // 要求ファイルを作成して書き込む（retry: 再接続後の再試行）
+    private static Void createRequest(SmbFile folder, String fileName, byte[] bytes, boolean retry) throws IOException {
+        SmbFile file = new SmbFile(folder, fileName);
+
+        // 同名ファイルが存在する場合は作成しない（再試行で自分の書き込みが完了していた場合は成功とする）
+        if (timed(SmbOp.EXISTS, file::exists)) {
+            if (retry && hasContent(file, bytes)) return null;
+            throw new FileAlreadyExistsException(file.getPath());
+        }
+        timed(SmbOp.CREATE, () -> {
+            file.createNewFile();
+            return null;
+        });
+
+        // データを書き込む
+        return timed(SmbOp.WRITE, () -> {
+            try (OutputStream out = new SmbFileOutputStream(file)) {
+                out.write(bytes);
+            }
+            return null;
+        });
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 要求ファイルを一時ファイルに書き込み、要求ファイル名に変更して公開する。
+     *
+     * <説明>
+     * SMB_COM_RENAME は変更先が存在する場合に失敗するため、名前の変更が同名ファイルの確認を兼ねる。
+     * 往復は一時ファイルのオープン・WRITE・CLOSE と名前の変更の4回（従来は6回）。
+     * 失敗した場合は一時ファイルを削除する。
+     * 名前の変更の応答を受け取る前に切断された場合は、再接続後の再試行で要求ファイルが
+     * 既に存在することになるため、内容が一致すれば公開済みとする。
+     *
+     * <引数>
+     * fileName: 要求ファイル名
+     * bytes: 書き込むデータ
+     ***********************************************************************************/
+    private void publishRequest(String fileName, byte[] bytes) throws IOException {
+        session.execute(folder -> publish(folder, fileName, bytes, false),
+                folder -> publish(folder, fileName, bytes, true));
+    }
+
+    // 一時ファイルに書き込み、要求ファイル名に変更する（retry: 再接続後の再試行）
+    private static Void publish(SmbFile folder, String fileName, byte[] bytes, boolean retry) throws IOException {
+        SmbFile file = new SmbFile(folder, fileName);
+        SmbFile tmp = new SmbFile(folder, SopTransport.tempName(fileName));
+        boolean published = false;
+        try {
+            // 一時ファイルを作成して書き込む
+            timed(SmbOp.WRITE, () -> {
+                try (OutputStream out = new SmbFileOutputStream(tmp)) {
+                    out.write(bytes);
+                }
+                return null;
+            });
+
+            // 要求ファイル名に変更する
+            try {
+                timed(SmbOp.RENAME, () -> {
+                    tmp.renameTo(file);
+                    return null;
+                });
+            } catch (SmbException e) {
+                if (e.getNtStatus() == NtStatus.NT_STATUS_OBJECT_NAME_COLLISION) {
+                    // 再試行で自分の要求ファイルが公開済みだった場合は成功とする（一時ファイルは削除する）
+                    if (retry && hasContent(file, bytes)) return null;
+                    throw new FileAlreadyExistsException(file.getPath());
+                }
+                throw e;
+            }
+            published = true;
+            return null;
+        } finally {
+            if (!published) deleteQuietly(tmp);
+        }
+    }
+
+    // ファイルの内容が指定されたデータと一致するかを確認する
+    private static boolean hasContent(SmbFile file, byte[] bytes) throws IOException {
+        return timed(SmbOp.READ, () -> {
+            try (InputStream in = file.getInputStream()) {
+                return SopTransport.hasContent(in, bytes);
+            }
+        });
+    }
+
+    // 一時ファイルを削除する（エラーは無視する）
+    private static void deleteQuietly(SmbFile tmp) {
+        try {
+            timed(SmbOp.DELETE, () -> {
+                tmp.delete();
+                return null;
+            });
+        } catch (IOException e) {
+            // 作成前に失敗した場合や切断済みの場合など
+        }
+    }
+
+    @Override
+    public boolean responseExists(String fileName) throws IOException {
+        return session.execute(folder -> timed(SmbOp.EXISTS, new SmbFile(folder, fileName)::exists));
+    }
+
+    @Override
+    public List<String> listResponses(String prefix) throws IOException {
+        // ワイルドカードを指定し、サーバー側で絞り込んだ一覧を1回の問い合わせで取得する
+        SmbFile[] files = session.execute(folder -> timed(SmbOp.LIST, () -> folder.listFiles(prefix + "*R.txt")));
+        List<String> names = new ArrayList<>(files.length);
+        for (SmbFile f : files) {
+            names.add(f.getName());
+        }
+        return names;
+    }
+
+    @Override
+    public InputStream openResponse(String fileName) throws IOException {
+        return session.execute(folder -> {
+            SmbFile file = new SmbFile(folder, fileName);
+            try {
+                return timed(SmbOp.OPEN, file::getInputStream);
+            } catch (SmbException e) {
+                // SOPサーバーが共有を許可せずに書き込み中（閉じた後に再試行する）
+                if (e.getNtStatus() == NtStatus.NT_STATUS_SHARING_VIOLATION) throw new NotReadyException(fileName, e);
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public void deleteResponse(String fileName) throws IOException {
+        session.execute(folder -> delete(folder, fileName, false), folder -> delete(folder, fileName, true));
+    }
+
+    // 応答ファイルを削除する（retry: 再接続後の再試行。切断前に削除済みの場合は成功とする）
+    private static Void delete(SmbFile folder, String fileName, boolean retry) throws IOException {
+        SmbFile file = new SmbFile(folder, fileName);
+        try {
+            return timed(SmbOp.DELETE, () -> {
+                file.delete();
+                return null;
+            });
+        } catch (SmbException e) {
+            if (retry && e.getNtStatus() == NtStatus.NT_STATUS_OBJECT_NAME_NOT_FOUND) return null;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/***********************************************************************************
+ * <目的>
+ * PDAとSOPサーバー間の要求＆応答ファイルのやり取りを抽象化するインターフェース。
+ * 通信先（SMB共有フォルダー、ローカルディレクトリなど）を差し替えても、
+ * アクティビティ側の処理を変更せずに済むようにする。
+ *
+ * <処理の流れ>
+ * 1. probe()          : 共有フォルダーの存在確認
+ * 2. writeRequest()   : 要求ファイルの作成と書き込み
+ * 3. responseExists() : 応答ファイルの存在確認（ポーリング）
+ *    listResponses()  : 応答ファイルの一覧取得（複数の要求の応答をまとめて確認する場合）
+ * 4. openResponse()   : 応答ファイルの読み込み
+ * 5. deleteResponse() : 応答ファイルの削除
+ *    consumeResponse(): 4と5をまとめて行う（書き込み中の応答は残す。実装によっては往復回数が少ない）
+ ***********************************************************************************/
+package com.example.PDA;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// SOP通信インターフェース
+public interface SopTransport {
+
+    /***********************************************************************************
+     * <目的>
+     * 要求＆応答ファイルの保管フォルダーが存在し、ディレクトリであるかを確認する
+     *
+     * <戻り値>
+     * フォルダーが利用可能な場合はtrue、それ以外はfalse
+     ***********************************************************************************/
+    boolean probe() throws IOException;
+
+    /***********************************************************************************
+     * <目的>
+     * 要求ファイルを新規作成し、データを書き込む。
+     * 同名のファイルが既に存在する場合は java.nio.file.FileAlreadyExistsException をスローする。
+     * ただし、再接続後の再試行で見つかったファイルの内容が data と一致する場合は、
+     * 切断前の書き込みが完了していたものとして成功とする。
+     * Constants.ATOMICPUBLISH の場合は一時ファイル名（tempName()）で全体を書き込んでから
+     * 要求ファイル名に変更し、SOPサーバーから書き込み途中の要求ファイルが見えないようにする。
+     *
+     * <引数>
+     * fileName: 要求ファイル名（フォルダーからの相対名）
+     * data: 書き込むデータ
+     ***********************************************************************************/
+    void writeRequest(String fileName, String data) throws IOException;
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルが存在するかを確認する
+     *
+     * <引数>
+     * fileName: 応答ファイル名
+     *
+     * <戻り値>
+     * 存在する場合はtrue、それ以外はfalse
+     ***********************************************************************************/
+    boolean responseExists(String fileName) throws IOException;
+
+    /***********************************************************************************
+     * <目的>
+     * 指定された接頭辞で始まる応答ファイル（"R.txt"で終わるファイル）の一覧を1回の問い合わせで取得する
+     *
+     * <引数>
+     * prefix: ファイル名の接頭辞（例: ホスト名 + "_"）
+     *
+     * <戻り値>
+     * 応答ファイル名の一覧
+     ***********************************************************************************/
+    List<String> listResponses(String prefix) throws IOException;
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルを読み込むためのストリームを開く（呼び出し側で閉じること）。
+     * SOPサーバーが書き込み中で開けない場合は NotReadyException をスローする。
+     *
+     * <引数>
+     * fileName: 応答ファイル名
+     *
+     * <戻り値>
+     * 応答ファイルの入力ストリーム
+     ***********************************************************************************/
+    InputStream openResponse(String fileName) throws IOException;
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルを削除する
+     *
+     * <引数>
+     * fileName: 応答ファイル名
+     ***********************************************************************************/
+    void deleteResponse(String fileName) throws IOException;
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルを読み込み、読み込み後に削除する（開いた後に読み込みに失敗した場合も削除する）。
+     * ただし、SOPサーバーが書き込み中（reader または応答ファイルを開く処理が NotReadyException を
+     * スローした場合）は削除せずに残し、例外をそのままスローする。
+     * 既定の実装は openResponse() と deleteResponse() を順に行う。
+     *
+     * <引数>
+     * fileName: 応答ファイル名
+     * reader: 応答ファイルの内容の読み込み（ストリームは閉じない）
+     *
+     * <戻り値>
+     * reader の結果
+     ***********************************************************************************/
+    default <T> T consumeResponse(String fileName, ResponseReader<T> reader) throws IOException {
+        InputStream in = openResponse(fileName); // 開けない場合は削除しない
+        T result;
+        try {
+            try {
+                result = reader.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (NotReadyException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(this, fileName, e);
+            throw e;
+        }
+        deleteResponse(fileName);
+        return result;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * consumeResponse() で応答ファイルの内容を読み込む処理
+     ***********************************************************************************/
+    interface ResponseReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    // 読み込めなかった応答ファイルを削除する（削除のエラーは元の例外に追加する）
+    static void deleteQuietly(SopTransport transport, String fileName, Exception cause) {
+        try {
+            transport.deleteResponse(fileName);
+        } catch (IOException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答ファイルがSOPサーバーの書き込み中で、まだ読み込めないことを示す例外。
+     * 応答ファイルはそのまま残るため、呼び出し側は応答待ちのまま後で再試行する。
+     ***********************************************************************************/
+    class NotReadyException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public NotReadyException(String message) {
+            super(message);
+        }
+
+        public NotReadyException(String fileName, Throwable cause) {
+            super(fileName + " is still being written", cause);
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答フォルダーの変更通知を受け取るリスナー。通知は監視用スレッドから行われる。
+     ***********************************************************************************/
+    interface ChangeListener {
+        // name: 作成・変更されたファイル名（通知が欠落し、変更されたファイルが不明な場合はnull）
+        void onChange(String name);
+
+        // 監視が終了した（切断、フォルダーの削除など）。以降は通知されない
+        void onClosed(IOException cause);
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答フォルダーの変更の監視を開始する。
+     * 既定の実装は監視に対応しないことを示す null を返す（呼び出し側は定期的な確認を行う）。
+     *
+     * <引数>
+     * listener: 通知先
+     *
+     * <戻り値>
+     * 監視（閉じると監視を終了する。呼び出し側が閉じた場合は onClosed() は通知されない）。
+     * 監視に対応しない場合はnull
+     ***********************************************************************************/
+    default Closeable watchResponses(ChangeListener listener) throws IOException {
+        return null;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 要求ファイルを書き込む一時ファイル名を返す。同じ要求ファイル名で同時に送信しても
+     * 一時ファイルを共有しないよう、プロセス内の連番を含める。
+     *
+     * <引数>
+     * fileName: 要求ファイル名
+     *
+     * <戻り値>
+     * 一時ファイル名（<要求ファイル名>.<連番> + PUBLISHTEMPSUFFIX）
+     ***********************************************************************************/
+    static String tempName(String fileName) {
+        return fileName + "." + TempSequence.NEXT.incrementAndGet() + Constants.PUBLISHTEMPSUFFIX;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * ストリームの内容が指定されたデータと一致するかを確認する。
+     * 再接続後の再試行で同名の要求ファイルが見つかった場合に、切断前の書き込みが
+     * 完了していたか（自分が書き込んだファイルか）を判定するために使用する。
+     *
+     * <引数>
+     * in: 確認するファイルの入力ストリーム（閉じない）
+     * expected: 書き込んだデータ
+     *
+     * <戻り値>
+     * 内容が一致する場合はtrue、それ以外はfalse
+     ***********************************************************************************/
+    static boolean hasContent(InputStream in, byte[] expected) throws IOException {
+        byte[] buf = new byte[expected.length + 1];
+        int n = 0;
+        for (int r; n < buf.length && (r = in.read(buf, n, buf.length - n)) > 0; ) {
+            n += r;
+        }
+        return n == expected.length && Arrays.equals(Arrays.copyOf(buf, n), expected);
+    }
+
+    // 一時ファイル名の連番
+    final class TempSequence {
+        static final AtomicLong NEXT = new AtomicLong();
+
+        private TempSequence() {
+        }
+    }
+}
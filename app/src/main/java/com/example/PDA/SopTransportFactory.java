@@ -0,0 +1,75 @@
+/***********************************************************************************
+ * <目的>
+ * 設定（Constants.TRANSPORT）に従って SopTransport の実装を生成するクラス。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.*;
+
+import java.nio.file.Paths;
+
+import com.hierynomus.smbj.auth.AuthenticationContext;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+
+// SOP通信生成クラス
+public class SopTransportFactory {
+
+    // SMBセッション（プロセス内で共有し、スキャン間およびアクティビティ再生成後も再利用する）
+    private static SmbSessionManager smbSession;
+    private static Smb2SessionManager smb2Session;
+
+    private SopTransportFactory() {}
+
+    /***********************************************************************************
+     * <目的>
+     * 設定された通信方式の SopTransport を生成する
+     *
+     * <引数>
+     * type: 通信方式（TRANSPORT_SMB、TRANSPORT_SMB2 または TRANSPORT_LOCAL）
+     *
+     * <戻り値>
+     * 生成された SopTransport
+     ***********************************************************************************/
+    public static SopTransport create(String type) {
+        if (TRANSPORT_LOCAL.equals(type)) {
+            return new LocalSopTransport(Paths.get(LOCALSOPFOLDER));
+        }
+        if (TRANSPORT_SMB2.equals(type)) {
+            return new Smb2SopTransport(getSmb2Session());
+        }
+
+        // 既定はSMB共有フォルダー
+        return new SmbSopTransport(getSmbSession());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 共有のSMBセッションを返す（初回呼び出し時に生成する）
+     *
+     * <戻り値>
+     * SMBセッション
+     ***********************************************************************************/
+    public static synchronized SmbSessionManager getSmbSession() {
+        if (smbSession == null) {
+            NtlmPasswordAuthentication auth = new NtlmPasswordAuthentication(SMBDOMAIN, SMBUSER, SMBPASSWORD);
+            smbSession = new SmbSessionManager("smb:" + SOPFOLDER + RESPONSEFOLDER, auth);
+        }
+        return smbSession;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 共有のSMB2セッションを返す（初回呼び出し時に生成する）
+     *
+     * <戻り値>
+     * SMB2セッション
+     ***********************************************************************************/
+    public static synchronized Smb2SessionManager getSmb2Session() {
+        if (smb2Session == null) {
+            AuthenticationContext auth = new AuthenticationContext(SMBUSER, SMBPASSWORD.toCharArray(), SMBDOMAIN);
+            smb2Session = new Smb2SessionManager(SOPFOLDER.replace("/", ""), RESPONSEFOLDER, auth);
+        }
+        return smb2Session;
+    }
+}
@@ -0,0 +1,130 @@
+/***********************************************************************************
+ * <目的>
+ * 画像全体をコピーせずに、行単位で輝度を求める ZXing の LuminanceSource。
+ *
+ * <説明>
+ * - RGBLuminanceSource は画像全体の ARGB 配列（4バイト/画素）と輝度配列（1バイト/画素）を必要とするが、
+ *   このクラスは PixelSource から必要な行だけを読み出し、輝度に変換する。
+ * - getRow(): 要求された1行だけを読み出す（1次元バーコードの読み取りはこれだけで完結する）。
+ * - getMatrix(): 2次元コードの読み取りなどで全体が必要な場合は、STRIP_ROWS 行ずつ読み出して
+ *   輝度配列（1バイト/画素）だけを作成する。ARGB の全体コピーは行わない。
+ * - ARGB の読み出し用バッファと輝度配列はスレッドごとに保持して使い回す
+ *   （輝度配列は同じ大きさの画像が続く場合に再利用するため、getMatrix() の結果は同じスレッドで
+ *   次に getMatrix() を呼び出すまでの間だけ有効）。
+ * - crop() は元の画像を共有し、読み出す範囲だけを変える。
+ * 輝度の計算式は RGBLuminanceSource と同じ（(R + 2G + B) / 4）。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.LuminanceSource;
+
+// 行単位輝度変換クラス
+public final class StripLuminanceSource extends LuminanceSource {
+
+    private static final int STRIP_ROWS = 32; // getMatrix() で1回に読み出す行数
+
+    // スレッドごとに使い回すバッファ
+    private static final ThreadLocal<int[]> ARGB = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> MATRIX = new ThreadLocal<>();
+
+    private final PixelSource pixels;
+    private final int left; // 読み出す範囲の左端
+    private final int top; // 読み出す範囲の上端
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ（画像全体を対象とする）
+     *
+     * <引数>
+     * pixels: 画像
+     ***********************************************************************************/
+    public StripLuminanceSource(PixelSource pixels) {
+        this(pixels, 0, 0, pixels.getWidth(), pixels.getHeight());
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ（画像の一部を対象とする）
+     *
+     * <引数>
+     * pixels: 画像
+     * left, top: 対象範囲の左上
+     * width, height: 対象範囲の幅と高さ
+     ***********************************************************************************/
+    public StripLuminanceSource(PixelSource pixels, int left, int top, int width, int height) {
+        super(width, height);
+        if (left < 0 || top < 0 || left + width > pixels.getWidth() || top + height > pixels.getHeight()) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        this.pixels = pixels;
+        this.left = left;
+        this.top = top;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        int[] argb = argb(width);
+        pixels.getPixels(argb, 0, width, left, top + y, width, 1);
+        toLuminance(argb, 0, row, 0, width);
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+        int size = width * height;
+
+        byte[] matrix = MATRIX.get();
+        if (matrix == null || matrix.length != size) {
+            matrix = new byte[size];
+            MATRIX.set(matrix);
+        }
+
+        int[] argb = argb(width * Math.min(STRIP_ROWS, height));
+        for (int y = 0; y < height; y += STRIP_ROWS) {
+            int rows = Math.min(STRIP_ROWS, height - y);
+            pixels.getPixels(argb, 0, width, left, top + y, width, rows);
+            toLuminance(argb, 0, matrix, y * width, width * rows);
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return new StripLuminanceSource(pixels, this.left + left, this.top + top, width, height);
+    }
+
+    // 読み出し用バッファを取得する（足りない場合は作り直す）
+    private static int[] argb(int size) {
+        int[] buffer = ARGB.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new int[size];
+            ARGB.set(buffer);
+        }
+        return buffer;
+    }
+
+    // ARGB を輝度に変換する
+    private static void toLuminance(int[] argb, int from, byte[] dst, int to, int count) {
+        for (int i = 0; i < count; i++) {
+            int pixel = argb[from + i];
+            int r = (pixel >> 16) & 0xFF;
+            int g2 = (pixel >> 7) & 0x1FE;
+            int b = pixel & 0xFF;
+            dst[to + i] = (byte) ((r + g2 + b) / 4);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/***********************************************************************************
+ * <目的>
+ * 1枚の画像に写った複数のバーコード（パレットのラベルシートなど）を、画像をタイルに分割して
+ * 並列に読み取るクラス。
+ *
+ * <説明>
+ * - 画像を tileSize 四方のタイルに分割する。タイルは縦横に半分ずつ重ねるため、大きさが tileSize の半分以下の
+ *   バーコードは、境界にまたがっていてもいずれかのタイルに収まる（tileSize はバーコードの2倍以上にする）。
+ *   画像全体を1つのタスクで読み取ると、それが最も遅いタスクとなって並列化の効果がなくなるため、行わない。
+ * - タイルは ForkJoinPool 上で並列に読み取る（ZXing の Reader はスレッドセーフでないため、
+ *   タイルごとに生成する）。1つのタイルに複数のバーコードがある場合も全て読み取る。
+ *   読み取る種類はアプリで扱う Code39／Code128 に限定する。
+ * - 重なったタイルで同じバーコードを読み取った場合は、内容が同じで中心の距離が近い（タイルの半分以内）ものを
+ *   1件にまとめる。
+ *   内容が同じでも離れた位置にあるものは別のラベルとして残す。
+ * - 結果は読み取り順（上の行から、同じ行では左から）に並べる。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// タイル分割並列読み取りクラス
+public class TiledMultiDecoder {
+
+    // 読み取るバーコードの種類（端末No の Code39 とバーコードの Code128 のみ。2次元コードの検出を省く）
+    private static final Map<DecodeHintType, Object> HINTS = new EnumMap<>(DecodeHintType.class);
+
+    static {
+        HINTS.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.of(BarcodeFormat.CODE_39, BarcodeFormat.CODE_128));
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 読み取ったバーコード（位置は画像全体の座標）
+     ***********************************************************************************/
+    public static final class Hit {
+        public final String text; // 内容
+        public final BarcodeFormat format; // 種類
+        public final float x; // 中心のX座標
+        public final float y; // 中心のY座標
+
+        Hit(String text, BarcodeFormat format, float x, float y) {
+            this.text = text;
+            this.format = format;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int tileSize; // タイルの大きさ（画素）
+
+    /***********************************************************************************
+     * <目的>
+     * コンストラクタ
+     *
+     * <引数>
+     * pool: 読み取りに使用するスレッドプール
+     * tileSize: タイルの大きさ（画素）。読み取るバーコードの幅・高さの2倍以上にする
+     ***********************************************************************************/
+    public TiledMultiDecoder(ForkJoinPool pool, int tileSize) {
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 画像に写った全てのバーコードを読み取る
+     *
+     * <引数>
+     * source: 画像（crop() に対応していること）
+     *
+     * <戻り値>
+     * 読み取ったバーコード（読み取り順。見つからない場合は空）
+     ***********************************************************************************/
+    public List<Hit> decode(LuminanceSource source) {
+        List<int[]> tiles = tiles(source.getWidth(), source.getHeight());
+        List<Hit> hits = pool.invoke(new TileTask(source, tiles, 0, tiles.size()));
+        return order(dedupe(hits));
+    }
+
+    // タイルの一覧（左, 上, 幅, 高さ）を作成する。タイルは半分ずつ重ねる
+    private List<int[]> tiles(int width, int height) {
+        List<int[]> tiles = new ArrayList<>();
+        int step = tileSize / 2;
+        for (int top = 0; ; top += step) {
+            int h = Math.min(tileSize, height - top);
+            for (int left = 0; ; left += step) {
+                int w = Math.min(tileSize, width - left);
+                tiles.add(new int[]{left, top, w, h});
+                if (left + w >= width) break;
+            }
+            if (top + h >= height) break;
+        }
+        return tiles;
+    }
+
+    // 重なったタイルで読み取った同じバーコードを1件にまとめる。
+    // 1次元バーコードの位置は読み取った走査線の高さになり、タイルごとに最大でバーコードの高さ分ずれるため、
+    // 内容が同じで中心の距離がタイルの半分以内のものを同じバーコードとみなす
+    private List<Hit> dedupe(List<Hit> hits) {
+        float near = tileSize / 2f;
+        List<Hit> unique = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            boolean duplicate = false;
+            for (Hit u : unique) {
+                if (u.text.equals(hit.text) && Math.abs(u.x - hit.x) <= near && Math.abs(u.y - hit.y) <= near) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) unique.add(hit);
+        }
+        return unique;
+    }
+
+    // 読み取り順（上の行から、同じ行では左から）に並べる。
+    // 上から順に、行の先頭との高さの差がタイルの1/4以内のものを同じ行とみなす
+    private List<Hit> order(List<Hit> hits) {
+        float band = tileSize / 4f;
+        Collections.sort(hits, (a, b) -> Float.compare(a.y, b.y));
+        int start = 0;
+        for (int i = 1; i <= hits.size(); i++) {
+            if (i == hits.size() || hits.get(i).y - hits.get(start).y > band) {
+                Collections.sort(hits.subList(start, i), (a, b) -> Float.compare(a.x, b.x));
+                start = i;
+            }
+        }
+        return hits;
+    }
+
+    // タイルを分割して並列に読み取るタスク
+    private static final class TileTask extends RecursiveTask<List<Hit>> {
+        private static final long serialVersionUID = 1L; // 直列化は行わない（RecursiveTask の要件のみ）
+
+        private final LuminanceSource source;
+        private final List<int[]> tiles;
+        private final int from;
+        private final int to;
+
+        TileTask(LuminanceSource source, List<int[]> tiles, int from, int to) {
+            this.source = source;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Hit> compute() {
+            if (to - from == 1) {
+                return decodeTile(tiles.get(from));
+            }
+            int mid = (from + to) >>> 1;
+            TileTask left = new TileTask(source, tiles, from, mid);
+            left.fork();
+            List<Hit> hits = new TileTask(source, tiles, mid, to).compute();
+            hits.addAll(0, left.join());
+            return hits;
+        }
+
+        // 1つのタイルを読み取り、位置を画像全体の座標に変換する
+        private List<Hit> decodeTile(int[] tile) {
+            List<Hit> hits = new ArrayList<>();
+            LuminanceSource region = tile[2] == source.getWidth() && tile[3] == source.getHeight()
+                    ? source : source.crop(tile[0], tile[1], tile[2], tile[3]);
+            try {
+                MultiFormatReader reader = new MultiFormatReader();
+                reader.setHints(HINTS);
+                Result[] results = new GenericMultipleBarcodeReader(reader)
+                        .decodeMultiple(new BinaryBitmap(new GlobalHistogramBinarizer(region)), HINTS);
+                for (Result r : results) {
+                    float x = tile[2] / 2f, y = tile[3] / 2f;
+                    ResultPoint[] points = r.getResultPoints();
+                    if (points != null && points.length > 0) {
+                        x = 0;
+                        y = 0;
+                        int n = 0;
+                        for (ResultPoint p : points) {
+                            if (p == null) continue;
+                            x += p.getX();
+                            y += p.getY();
+                            n++;
+                        }
+                        if (n > 0) {
+                            x /= n;
+                            y /= n;
+                        }
+                    }
+                    hits.add(new Hit(r.getText(), r.getBarcodeFormat(), tile[0] + x, tile[1] + y));
+                }
+            } catch (NotFoundException e) {
+                // このタイルにはバーコードがない
+            }
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * BulkImporter のローカル単体テスト（画像のデータはバーコードの内容で、読み込み時にバーコードの画像を生成する）。
+ */
+public class BulkImporterTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<Object[]> results = new LinkedBlockingQueue<>();
+    private ContentHashCache cache;
+    private BulkImporter<String> importer;
+
+    // バーコードの内容から Code128 のラベルの画像を生成する
+    private static LuminanceSource label(byte[] data) {
+        String code = new String(data, StandardCharsets.UTF_8);
+        BitMatrix bars = new Code128Writer().encode(code, BarcodeFormat.CODE_128, 400, 80);
+        byte[] pixels = new byte[bars.getWidth() * bars.getHeight()];
+        for (int y = 0; y < bars.getHeight(); y++) {
+            for (int x = 0; x < bars.getWidth(); x++) {
+                pixels[y * bars.getWidth() + x] = (byte) (bars.get(x, y) ? 0 : 255);
+            }
+        }
+        return new PlanarYUVLuminanceSource(pixels, bars.getWidth(), bars.getHeight(), 0, 0,
+                bars.getWidth(), bars.getHeight(), false);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ContentHashCache(folder.getRoot().toPath().resolve("imported"));
+        importer = new BulkImporter<>(1, 4, code -> new ByteArrayInputStream(code.getBytes(StandardCharsets.UTF_8)),
+                BulkImporterTest::label, new DecodeEngine(false, DecodeEngine.DEFAULT_ORDER), cache,
+                (item, outcome, text, hash, progress) -> results.add(new Object[]{outcome, text, hash}));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        importer.shutdown();
+        cache.close();
+    }
+
+    private Object[] next() throws InterruptedException {
+        Object[] result = results.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no result", result);
+        return result;
+    }
+
+    @Test
+    public void decodedImage_isRecordedOnlyWhenMarked() throws Exception {
+        importer.submitAll(Arrays.asList("A100", "A100"));
+        Object[] first = next();
+        assertEquals(BulkImporter.Outcome.DECODED, first[0]);
+        assertEquals("A100", first[1]);
+        assertEquals(BulkImporter.Outcome.DUPLICATE, next()[0]); // 記録・解放前の同じ画像は処理中
+        assertEquals(0, cache.size());
+
+        // 送信しなかった画像は解放すると再度取り込める
+        importer.release((byte[]) first[2]);
+        importer.submitAll(Arrays.asList("A100"));
+        Object[] second = next();
+        assertEquals(BulkImporter.Outcome.DECODED, second[0]);
+
+        // 送信を受け付けられた画像は取り込み済みとなる
+        importer.markImported((byte[]) second[2]);
+        assertEquals(1, cache.size());
+        importer.submitAll(Arrays.asList("A100"));
+        Object[] third = next();
+        assertEquals(BulkImporter.Outcome.DUPLICATE, third[0]);
+        assertNull(third[2]);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * CoalescingUpdater のローカル単体テスト（投稿は手動で実行する）。
+ */
+public class CoalescingUpdaterTest {
+
+    private final Queue<Runnable> posted = new ArrayDeque<>();
+    private final List<String> applied = new ArrayList<>();
+
+    private void runPosted() {
+        for (Runnable r; (r = posted.poll()) != null; ) {
+            r.run();
+        }
+    }
+
+    @Test
+    public void sameKey_appliesOnlyLatestWithOnePost() {
+        CoalescingUpdater<String> updater = new CoalescingUpdater<>(posted::add, v -> v.charAt(0), applied::add);
+        updater.update("a:SENDING");
+        updater.update("a:AWAITING");
+        updater.update("a:DONE");
+
+        assertEquals(1, posted.size());
+        runPosted();
+        assertEquals(Arrays.asList("a:DONE"), applied);
+    }
+
+    @Test
+    public void differentKeys_keepFinalStateOfEachInUpdateOrder() {
+        CoalescingUpdater<String> updater = new CoalescingUpdater<>(posted::add, v -> v.charAt(0), applied::add);
+        updater.update("a:AWAITING");
+        updater.update("b:SENDING");
+        updater.update("a:DONE"); // 後から更新されたため b の後に反映する
+        updater.update("c:FAILED");
+
+        runPosted();
+        assertEquals(Arrays.asList("b:SENDING", "a:DONE", "c:FAILED"), applied);
+
+        // 反映後の更新は改めて投稿する
+        updater.update("b:DONE");
+        assertEquals(1, posted.size());
+        runPosted();
+        assertEquals("b:DONE", applied.get(3));
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * DeadlineWheel のローカル単体テスト（任意の時刻を返す Ticker を使用する）。
+ */
+public class DeadlineWheelTest {
+
+    private static final long START = 123_456_789L; // 基準時刻（0 以外から始める）
+
+    private final AtomicLong now = new AtomicLong(START);
+    private final List<String> expired = new ArrayList<>();
+
+    // 1スロット 100ms、8スロット（1周 800ms）
+    private DeadlineWheel<String> wheel() {
+        return new DeadlineWheel<>(100, 8, expired::add, now::get);
+    }
+
+    private void advanceTo(long millis) {
+        now.set(START + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    public void deadline_isNeverReportedEarly() {
+        DeadlineWheel<String> wheel = wheel();
+        wheel.schedule("a", 250);
+
+        advanceTo(200);
+        assertEquals(0, wheel.expire());
+        advanceTo(299);
+        assertEquals(0, wheel.expire());
+        advanceTo(300);
+        assertEquals(1, wheel.expire());
+        assertEquals(Collections.singletonList("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void deadlineBeyondOneRotation_isCarriedOver() {
+        DeadlineWheel<String> wheel = wheel();
+        wheel.schedule("long", 2000); // 2周半先（同じスロットを2回通過する）
+
+        for (long t = 100; t < 2000; t += 100) {
+            advanceTo(t);
+            assertEquals("at " + t, 0, wheel.expire());
+        }
+        advanceTo(2000);
+        assertEquals(1, wheel.expire());
+        assertEquals(Collections.singletonList("long"), expired);
+    }
+
+    @Test
+    public void gapLongerThanRotation_visitsEachSlotOnce() {
+        DeadlineWheel<String> wheel = wheel();
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 500);
+        wheel.schedule("c", 1500); // 2周目
+        wheel.schedule("d", 5000);
+
+        // 確認しないまま数周分経過する
+        advanceTo(3000);
+        assertEquals(3, wheel.expire());
+        Collections.sort(expired);
+        assertEquals(Arrays.asList("a", "b", "c"), expired);
+        assertEquals(1, wheel.size());
+
+        advanceTo(4900);
+        assertEquals(0, wheel.expire());
+        advanceTo(5000);
+        assertEquals(1, wheel.expire());
+        assertEquals("d", expired.get(3));
+    }
+
+    @Test
+    public void scheduleAfterIdleGap_usesCurrentTimeNotStaleTick() {
+        DeadlineWheel<String> wheel = wheel();
+
+        // expire() を呼ばないまま時間が経過した後に登録する（確認済みのスロット番号は古い）
+        advanceTo(1000);
+        wheel.schedule("late", 100);
+        advanceTo(1050);
+        assertEquals(0, wheel.expire());
+        advanceTo(1100);
+        assertEquals(1, wheel.expire());
+    }
+
+    @Test
+    public void zeroDelay_expiresOnNextSlotAfterLastCheck() {
+        DeadlineWheel<String> wheel = wheel();
+        advanceTo(1000);
+        wheel.expire();
+
+        // 確認済みのスロットには登録せず、次のスロットで通知する
+        wheel.schedule("now", 0);
+        assertEquals(0, wheel.expire());
+        advanceTo(1100);
+        assertEquals(1, wheel.expire());
+        assertEquals(Collections.singletonList("now"), expired);
+    }
+
+    @Test
+    public void cancel_removesOnlyPendingDeadlines() {
+        DeadlineWheel<String> wheel = wheel();
+        DeadlineWheel<String>.Timeout a = wheel.schedule("a", 300);
+        DeadlineWheel<String>.Timeout b = wheel.schedule("b", 300); // 同じスロット
+        DeadlineWheel<String>.Timeout c = wheel.schedule("c", 300);
+
+        assertTrue(b.cancel());
+        assertFalse(b.cancel());
+        assertEquals(2, wheel.size());
+
+        advanceTo(300);
+        assertEquals(2, wheel.expire());
+        Collections.sort(expired);
+        assertEquals(Arrays.asList("a", "c"), expired);
+        assertFalse(a.cancel());
+        assertFalse(c.cancel());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void nextExpiryMillis_returnsTimeUntilEarliestDeadlineIsDetected() {
+        DeadlineWheel<String> wheel = wheel();
+        assertEquals(-1, wheel.nextExpiryMillis());
+
+        wheel.schedule("late", 650);
+        wheel.schedule("early", 250);
+        assertEquals(300, wheel.nextExpiryMillis()); // 期限を含むスロットの終わり
+
+        advanceTo(280);
+        assertEquals(20, wheel.nextExpiryMillis());
+        advanceTo(300);
+        assertEquals(0, wheel.nextExpiryMillis());
+        assertEquals(1, wheel.expire());
+        assertEquals(400, wheel.nextExpiryMillis());
+
+        // 1周より先の期限のみの場合は1周後まで
+        wheel.schedule("long", 5000);
+        advanceTo(700);
+        assertEquals(1, wheel.expire());
+        assertEquals(800, wheel.nextExpiryMillis());
+    }
+}
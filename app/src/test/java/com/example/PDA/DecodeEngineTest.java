@@ -0,0 +1,66 @@
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * DecodeEngine のローカル単体テスト（影のかかったバーコードの見本画像を生成して使用する）。
+ */
+public class DecodeEngineTest {
+
+    private static final String CODE = "A1234567890";
+
+    // 右半分に影（右端で明るさが 1 - shade 倍）がかかり、ノイズを含むバーコードの画像
+    private static LuminanceSource shadedLabel(double shade, double noise) {
+        BitMatrix bars = new Code128Writer().encode(CODE, BarcodeFormat.CODE_128, 600, 120);
+        int width = 800, height = 200;
+        Random random = new Random(1);
+        byte[] pixels = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int bx = x - 100, by = y - 40;
+                boolean black = bx >= 0 && by >= 0 && bx < 600 && by < 120 && bars.get(bx, by);
+                double light = x < width / 2 ? 1 : 1 - shade * (x - width / 2) / (width / 2.0);
+                int v = (int) ((black ? 40 : 225) * light + random.nextGaussian() * noise);
+                pixels[y * width + x] = (byte) Math.max(0, Math.min(255, v));
+            }
+        }
+        return new PlanarYUVLuminanceSource(pixels, width, height, 0, 0, width, height, false);
+    }
+
+    @Test
+    public void shadedLabel_isReadByHybridButNotGlobal() throws Exception {
+        LuminanceSource source = shadedLabel(0.7, 6);
+
+        try {
+            new DecodeEngine(false, DecodeEngine.Strategy.GLOBAL).decode(source);
+            fail("global histogram should not read a label with a strong shadow");
+        } catch (NotFoundException expected) {
+            // 全体のヒストグラムでは影の中の白と明るい部分の黒を区別できない
+        }
+        assertEquals(CODE, new DecodeEngine(false, DecodeEngine.Strategy.HYBRID).decode(source).getText());
+    }
+
+    @Test
+    public void cascade_recordsHitOnHybridAfterGlobalMiss() throws Exception {
+        DecodeEngine engine = new DecodeEngine(false, DecodeEngine.Strategy.GLOBAL, DecodeEngine.Strategy.HYBRID);
+        assertEquals(CODE, engine.decode(shadedLabel(0.7, 6)).getText());
+        assertEquals(CODE, engine.decode(shadedLabel(0, 6)).getText());
+
+        List<DecodeEngine.StrategyStats> stats = engine.stats();
+        assertEquals(2, stats.get(0).attempts);
+        assertEquals(1, stats.get(0).hits);
+        assertEquals(1, stats.get(1).attempts);
+        assertEquals(1, stats.get(1).hits);
+    }
+}
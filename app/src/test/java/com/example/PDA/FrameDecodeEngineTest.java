@@ -0,0 +1,92 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * FrameDecodeEngine のローカル単体テスト（SyntheticFrameSource で生成したフレームを使用する）。
+ */
+public class FrameDecodeEngineTest {
+
+    private final List<String> codes = Collections.synchronizedList(new ArrayList<>());
+
+    private FrameDecodeEngine engine(double cpuBudget, long dedupeWindowMillis, FrameDecodeEngine.Recycler recycler) {
+        DecodeEngine decoder = new DecodeEngine(false, DecodeEngine.Strategy.GLOBAL, DecodeEngine.Strategy.HYBRID);
+        return new FrameDecodeEngine(decoder, cpuBudget, dedupeWindowMillis,
+                (result, timestamp) -> codes.add(result.getText()), recycler);
+    }
+
+    @Test
+    public void sameCodeInView_isReportedOnce() throws Exception {
+        FrameDecodeEngine engine = engine(1.0, 1000, null);
+        engine.start();
+        new SyntheticFrameSource(30)
+                .then(null, 200)
+                .then("A00000000001", 500)
+                .then(null, 200) // 重複判定の時間より短い中断
+                .then("A00000000001", 500)
+                .then("B00000000002", 500)
+                .then("A00000000001", 500)
+                .then(null, 100)
+                .play(engine, true);
+        Thread.sleep(200);
+        engine.stop();
+
+        assertEquals(Arrays.asList("A00000000001", "B00000000002", "A00000000001"), codes);
+        assertTrue(engine.stats().hits > codes.size());
+    }
+
+    @Test
+    public void sameCodeAfterWindow_isReportedAgain() throws Exception {
+        FrameDecodeEngine engine = engine(1.0, 300, null);
+        engine.start();
+        new SyntheticFrameSource(30)
+                .then("A00000000001", 300)
+                .then(null, 500)
+                .then("A00000000001", 300)
+                .then(null, 100)
+                .play(engine, true);
+        Thread.sleep(200);
+        engine.stop();
+
+        assertEquals(Arrays.asList("A00000000001", "A00000000001"), codes);
+    }
+
+    @Test
+    public void burst_dropsStaleFramesAndRecyclesEveryBuffer() throws Exception {
+        AtomicInteger recycled = new AtomicInteger();
+        FrameDecodeEngine engine = engine(1.0, 1000, data -> recycled.incrementAndGet());
+        engine.start();
+        SyntheticFrameSource source = new SyntheticFrameSource(1000).then("A00000000001", 500);
+        source.play(engine, false);
+        Thread.sleep(200);
+        engine.stop();
+
+        FrameDecodeEngine.Stats stats = engine.stats();
+        assertEquals(source.frameCount(), stats.offered);
+        assertTrue("dropped " + stats.dropped, stats.dropped > 0);
+        assertEquals(stats.offered, stats.decoded + stats.dropped);
+        assertEquals(stats.offered, recycled.get());
+        assertEquals(Arrays.asList("A00000000001"), codes);
+    }
+
+    @Test
+    public void decodeTime_staysWithinCpuBudget() throws Exception {
+        FrameDecodeEngine engine = engine(0.25, 1000, null);
+        engine.start();
+        new SyntheticFrameSource(200).then(null, 1500).play(engine, true);
+        FrameDecodeEngine.Stats stats = engine.stats();
+        engine.stop();
+
+        assertTrue("decoded " + stats.decoded, stats.decoded > 0);
+        assertTrue("dropped " + stats.dropped, stats.dropped > 0);
+        assertTrue("busy " + stats.busyRatio, stats.busyRatio < 0.25 + 0.05);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gs1Parser のローカル単体テスト。
+ */
+public class Gs1ParserTest {
+
+    private static final char GS = Gs1Parser.GS;
+
+    private final Gs1Parser.HriBuilder hri = new Gs1Parser.HriBuilder();
+
+    private int parse(String s) {
+        return Gs1Parser.parse(s, hri.reset());
+    }
+
+    @Test
+    public void fixedAndVariableFields_areSplitByTable() {
+        // GTIN（固定14桁）、賞味期限（固定6桁）、ロット（可変長、GSで区切る）、重量（4桁AI・固定6桁）
+        assertEquals(4, parse("]C101095011015300031519123110ABC123" + GS + "3103001250"));
+        assertEquals("(01)09501101530003(15)191231(10)ABC123(3103)001250", hri.toString());
+
+        // SSCC、GLN（AI 414）、シリアル（入力の終わりまで）
+        assertEquals(3, parse("00006141411234567890" + "4145412345678908" + "21XYZ"));
+        assertEquals(3103, Gs1Parser.ai("3103001250", 0, 4));
+    }
+
+    @Test
+    public void wrongCheckDigit_isRejectedAtCheckDigit() {
+        String s = "0109501101530004";
+        assertEquals(-s.length(), parse(s));
+        assertTrue(parse("00006141411234567891") < 0);
+    }
+
+    @Test
+    public void undefinedAiOrTooLongValue_isRejected() {
+        assertEquals(-1, parse("0512345"));
+        assertTrue(parse("10" + "123456789012345678901") < 0); // ロットは最大20文字
+        assertTrue(parse("3103" + "0012") < 0); // 固定長に満たない
+    }
+
+    @Test
+    public void dates_areCheckedAgainstMonthLength() {
+        assertTrue(parse("17190131") > 0);
+        assertTrue(parse("17190100") > 0); // 日の00は月末
+        assertTrue(parse("17200229") > 0); // うるう年
+        assertTrue(parse("17000229") > 0); // 2000年はうるう年
+        assertTrue(parse("17190229") < 0);
+        assertTrue(parse("17190231") < 0);
+        assertTrue(parse("17190431") < 0);
+        assertTrue(parse("17191301") < 0);
+        assertTrue(parse("17190001") < 0);
+    }
+
+    @Test
+    public void noFields_returnsZero() {
+        assertEquals(0, parse("]C1"));
+        assertEquals(0, parse("" + GS + GS));
+    }
+}
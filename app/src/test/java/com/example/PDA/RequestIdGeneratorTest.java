@@ -0,0 +1,97 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * RequestIdGenerator のローカル単体テスト。
+ */
+public class RequestIdGeneratorTest {
+
+    private static final TimeZone JST = TimeZone.getTimeZone("Asia/Tokyo");
+
+    @Test
+    public void format_matchesSimpleDateFormat() {
+        long[] times = {0L, 951782400000L /* 2000-02-29 */, 1716512400123L, 4102444799999L};
+        for (long t : times) {
+            RequestIdGenerator gen = new RequestIdGenerator("TC21", "a1b2c3d4", JST, () -> t);
+            SimpleDateFormat f = new SimpleDateFormat("yyyyMMddHHmmssSSS", Locale.US);
+            f.setTimeZone(JST);
+            assertEquals("TC21-a1b2c3d4_" + f.format(new Date(t)) + "000", gen.next());
+        }
+    }
+
+    @Test
+    public void prefix_replacesUnsafeCharacters() {
+        RequestIdGenerator gen = new RequestIdGenerator("SM G991_B", "id/1", JST, () -> 0L);
+        assertEquals("SM-G991-B-id-1_", gen.prefix());
+    }
+
+    @Test
+    public void sameMillisecond_usesSequenceAndStaysMonotonic() {
+        AtomicLong now = new AtomicLong(1716512400000L);
+        RequestIdGenerator gen = new RequestIdGenerator("TC21", "a1", JST, now::get);
+
+        String previous = "";
+        for (int i = 0; i < 2500; i++) {
+            String id = gen.next();
+            assertTrue(id.compareTo(previous) > 0);
+            previous = id;
+        }
+
+        // 時計が戻ってもIDは単調増加する
+        now.addAndGet(-60000);
+        assertTrue(gen.next().compareTo(previous) > 0);
+    }
+
+    @Test
+    public void concurrentGeneration_hasNoCollisions() throws Exception {
+        final int threads = 8;
+        final int perThread = 50000;
+        final RequestIdGenerator gen = new RequestIdGenerator("TC21", "a1b2c3d4");
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong malformed = new AtomicLong();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    String id = gen.next();
+                    if (!id.matches("TC21-a1b2c3d4_\\d{20}")) {
+                        malformed.incrementAndGet();
+                    }
+                    ids.add(id);
+                }
+            });
+            w.start();
+            workers.add(w);
+        }
+
+        start.countDown();
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        // 処理速度は RequestNameBenchmark.generatorContended で測定する
+        assertEquals(threads * perThread, ids.size());
+        assertEquals(0, malformed.get());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * ResponseParser のローカル単体テスト。
+ */
+public class ResponseParserTest {
+
+    private final ResponseParser parser = new ResponseParser(StandardCharsets.UTF_8, 1024, 10);
+
+    private ResponseParser.Response parse(String content) throws Exception {
+        return parser.parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void structured_readsRecordsUpToEndLine() throws Exception {
+        ResponseParser.Response r = parse("7\r\n7\tT1000 出荷済み\r\n8\r\nEND\r\n");
+        assertEquals(ResponseParser.OK, r.status());
+        assertEquals(2, r.recordCount());
+        assertEquals("T1000 出荷済み", r.recordText(0));
+        assertEquals(ResponseParser.NOT_FOUND, r.recordStatus(1));
+    }
+
+    @Test
+    public void truncatedStructured_isNotReady() throws Exception {
+        String full = "7\n7\tT1000\n7\tT1001\nEND\n";
+        for (int length : new int[]{0, 1, 3, full.length() - 5, full.length() - 2}) {
+            try {
+                parse(full.substring(0, length));
+                fail("accepted a response truncated to " + length + " bytes");
+            } catch (SopTransport.NotReadyException expected) {
+                // 書き込み中として応答ファイルを残す
+            }
+        }
+        assertEquals(2, parse(full.substring(0, full.length() - 1)).recordCount()); // 最終行の改行は省略できる
+    }
+
+    @Test
+    public void legacy_isAcceptedWithoutEndLine() throws Exception {
+        ResponseParser.Response r = parse("出荷済み\n\n");
+        assertEquals(ResponseParser.OK, r.status());
+        assertEquals(2, r.recordCount());
+        assertEquals(ResponseParser.NOT_FOUND, r.recordStatus(1));
+    }
+}
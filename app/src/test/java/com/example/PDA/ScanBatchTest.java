@@ -0,0 +1,38 @@
+package com.example.PDA;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ScanBatch のローカル単体テスト。
+ */
+public class ScanBatchTest {
+
+    private final ResponseParser parser = new ResponseParser(StandardCharsets.UTF_8, 1024, 10);
+    private final List<ScanBatch.Record> records = Arrays.asList(
+            new ScanBatch.Record("T1", "A1"), new ScanBatch.Record("T1", "A2"));
+
+    private ResponseParser.Response parse(String content) throws Exception {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(data, data.length);
+    }
+
+    @Test
+    public void formatResults_mapsRecordsAndMissingAsNotFound() throws Exception {
+        assertEquals("A1：出荷済み\nA2：" + Constants.PDAERR8 + "\n",
+                ScanBatch.formatResults(records, parse("7\n7\t出荷済み\nEND\n")));
+    }
+
+    @Test
+    public void formatResults_usesOverallStatusWhenRequestFailed() throws Exception {
+        ResponseParser.Response response = parse("5\nEND\n");
+        assertFalse(response.isOk());
+        assertEquals("A1：" + Constants.PDAERR5 + "\nA2：" + Constants.PDAERR5 + "\n",
+                ScanBatch.formatResults(records, response));
+    }
+}
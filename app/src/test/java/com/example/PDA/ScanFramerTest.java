@@ -0,0 +1,137 @@
+package com.example.PDA;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ScanFramer のローカル単体テスト（手動で進める時計とタイマーを使用する）。
+ */
+public class ScanFramerTest {
+
+    private static final long GAP = Constants.SCANBURSTGAP;
+    private static final long MANUAL = Constants.SCANMANUALDELAY;
+
+    private long now = 1000;
+    private Runnable task; // 予約中のタスク（ScanFramer は1つのタスクを使い回す）
+    private long due; // 予約中のタスクの実行時刻
+
+    private final List<String> scans = new ArrayList<>();
+    private final StringBuilder input = new StringBuilder(); // 入力欄（Editable の代わり）
+
+    private ScanFramer framer;
+
+    @Before
+    public void setUp() {
+        framer = new ScanFramer("\n\r\t", GAP, MANUAL, new ScanFramer.Timer() {
+            @Override
+            public void schedule(Runnable t, long delayMillis) {
+                task = t;
+                due = now + delayMillis;
+            }
+
+            @Override
+            public void cancel(Runnable t) {
+                if (task == t) task = null;
+            }
+        }, () -> now, (text, start, end) -> {
+            scans.add(text.subSequence(start, end).toString());
+            // アプリと同様に、処理後に入力欄をクリアする
+            input.setLength(0);
+            framer.onTextChanged(input);
+        });
+    }
+
+    // 時計を進め、期限の来たタスクを実行する
+    private void advance(long millis) {
+        now += millis;
+        if (task != null && due <= now) {
+            Runnable t = task;
+            task = null;
+            t.run();
+        }
+    }
+
+    // 1文字ずつ指定の間隔で入力する
+    private void type(String s, long gapMillis) {
+        for (int i = 0; i < s.length(); i++) {
+            if (i > 0) advance(gapMillis);
+            input.append(s.charAt(i));
+            framer.onTextChanged(input);
+        }
+    }
+
+    @Test
+    public void suffix_endsScanImmediatelyAndIsStripped() {
+        type("A123\n", 5);
+        assertEquals(1, scans.size());
+        assertEquals("A123", scans.get(0));
+        assertNull(task);
+
+        type("T01\t", 5);
+        assertEquals("T01", scans.get(1));
+    }
+
+    @Test
+    public void crLf_leftoverLineFeedIsNotPartOfNextScan() {
+        // CR で通知して入力欄をクリアした後、LF だけが入力欄に残る
+        type("B45\r\n", 5);
+        assertEquals(1, scans.size());
+        assertEquals("B45", scans.get(0));
+        assertEquals("\n", input.toString());
+
+        type("C67\r", 5);
+        assertEquals("C67", scans.get(1));
+    }
+
+    @Test
+    public void suffixOnly_isNotReported() {
+        type("\n", 5);
+        assertTrue(scans.isEmpty());
+    }
+
+    @Test
+    public void burst_endsAfterThreeBurstGaps() {
+        type("A1234", GAP / 2);
+        advance(GAP * 3 - 1);
+        assertTrue(scans.isEmpty());
+        advance(1);
+        assertEquals(1, scans.size());
+        assertEquals("A1234", scans.get(0));
+    }
+
+    @Test
+    public void shortBurst_waitsForManualDelay() {
+        type("A1", GAP / 2); // MIN_BURST 未満は手入力と同じ扱い
+        advance(GAP * 3);
+        assertTrue(scans.isEmpty());
+        advance(MANUAL - GAP * 3);
+        assertEquals("A1", scans.get(0));
+    }
+
+    @Test
+    public void manualTyping_endsAfterManualDelay() {
+        type("A1234", GAP + 100);
+        advance(MANUAL - 1);
+        assertTrue(scans.isEmpty());
+        advance(1);
+        assertEquals(1, scans.size());
+        assertEquals("A1234", scans.get(0));
+    }
+
+    @Test
+    public void slowCharacterInBurst_switchesToManualDelay() {
+        type("A12", GAP / 2);
+        advance(GAP + 1);
+        input.append('3');
+        framer.onTextChanged(input);
+        advance(GAP * 3);
+        assertTrue(scans.isEmpty());
+        advance(MANUAL - GAP * 3);
+        assertEquals("A123", scans.get(0));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.PDA;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * ScanJournalDrainer のローカル単体テスト（LocalSopTransport で一時フォルダーに再送する）。
+ */
+public class ScanJournalDrainerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final BlockingQueue<ScanJournal.Record> delivered = new LinkedBlockingQueue<>();
+    private ScanJournal journal;
+    private LocalSopTransport transport;
+    private ScanJournalDrainer drainer;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = new ScanJournal(folder.getRoot().toPath().resolve("journal"));
+        transport = new LocalSopTransport(folder.getRoot().toPath().resolve("sop"));
+        Files.createDirectories(transport.getFolder());
+        drainer = new ScanJournalDrainer(journal, transport, delivered::add);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        drainer.stop();
+        journal.close();
+    }
+
+    private ScanJournal.Record next() throws InterruptedException {
+        ScanJournal.Record r = delivered.poll(10, TimeUnit.SECONDS);
+        assertNotNull("not delivered", r);
+        return r;
+    }
+
+    private String read(String fileName) throws Exception {
+        return new String(Files.readAllBytes(transport.getFolder().resolve(fileName)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void records_areWrittenInAppendOrder() throws Exception {
+        journal.append("PDA_1.txt", "T1A1\n", 1);
+        journal.append("PDA_2.txt", "T1A2\n", 2);
+        drainer.start();
+
+        assertEquals("PDA_1.txt", next().fileName);
+        assertEquals("PDA_2.txt", next().fileName);
+        assertEquals("T1A1\n", read("PDA_1.txt"));
+        assertEquals("T1A2\n", read("PDA_2.txt"));
+        assertEquals(0, journal.depth());
+    }
+
+    @Test
+    public void existingResponse_isTreatedAsDeliveredAndRemoved() throws Exception {
+        // 失敗とした書き込みが届き、SOPサーバーが処理して要求ファイルを削除した状態
+        Path response = transport.getFolder().resolve("PDA_1R.txt");
+        Files.write(response, "7\nEND\n".getBytes(StandardCharsets.UTF_8));
+        journal.append("PDA_1.txt", "T1A1\n", 1);
+        drainer.start();
+
+        assertEquals("PDA_1.txt", next().fileName);
+        assertFalse(Files.exists(response));
+        assertFalse(Files.exists(transport.getFolder().resolve("PDA_1.txt"))); // 再送しない
+        assertEquals(0, journal.depth());
+    }
+
+    @Test
+    public void nameCollision_isTreatedAsDeliveredWithoutOverwriting() throws Exception {
+        // 前回の送信が送信済みの記録前に中断され、要求ファイルが残っている状態
+        Files.write(transport.getFolder().resolve("PDA_1.txt"), "T1A0\n".getBytes(StandardCharsets.UTF_8));
+        journal.append("PDA_1.txt", "T1A1\n", 1);
+        journal.append("PDA_2.txt", "T1A2\n", 2);
+        drainer.start();
+
+        assertEquals("PDA_1.txt", next().fileName);
+        assertEquals("PDA_2.txt", next().fileName);
+        assertEquals("T1A0\n", read("PDA_1.txt")); // 既存の要求ファイルは置き換えない
+        assertEquals(0, journal.depth());
+    }
+}
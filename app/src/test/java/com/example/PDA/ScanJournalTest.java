@@ -0,0 +1,152 @@
+package com.example.PDA;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ScanJournal のローカル単体テスト（一時フォルダーにジャーナルを作成し、開き直して復元を確認する）。
+ */
+public class ScanJournalTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path dir() {
+        return folder.getRoot().toPath().resolve("journal");
+    }
+
+    private Path journalFile() {
+        return dir().resolve("scan.journal");
+    }
+
+    // 未送信レコードを先頭から全て送信済みにし、ファイル名を返す
+    private static List<String> drain(ScanJournal journal) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (ScanJournal.Record r; (r = journal.peek()) != null; ) {
+            names.add(r.fileName);
+            journal.ack(r);
+        }
+        return names;
+    }
+
+    @Test
+    public void reopen_truncatesTornLastRecord() throws Exception {
+        ScanJournal journal = new ScanJournal(dir());
+        journal.append("a.txt", "T1A1\n", 1);
+        journal.append("b.txt", "T1A2\n", 2);
+        journal.append("c.txt", "T1A3\n", 3);
+        journal.close();
+
+        // 3件目の書き込み途中で中断された状態にする
+        long size = Files.size(journalFile());
+        try (FileChannel ch = FileChannel.open(journalFile(), StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3);
+        }
+
+        journal = new ScanJournal(dir());
+        assertEquals(2, journal.depth());
+        assertTrue(Files.size(journalFile()) < size - 3); // 不完全なレコードは切り捨てる
+
+        // 切り捨てた位置から追記を続け、連番も続く
+        ScanJournal.Record d = journal.append("d.txt", "T1A4\n", 4);
+        assertEquals(3, d.seq);
+        assertEquals(Arrays.asList("a.txt", "b.txt", "d.txt"), drain(journal));
+        journal.close();
+    }
+
+    @Test
+    public void reopen_restoresAckedPosition() throws Exception {
+        ScanJournal journal = new ScanJournal(dir());
+        journal.append("a.txt", "T1A1\n", 1);
+        journal.append("b.txt", "T1A2\n", 2);
+        journal.append("c.txt", "T1A3\n", 3);
+        journal.ack(journal.peek());
+        journal.close();
+
+        journal = new ScanJournal(dir());
+        assertEquals(2, journal.depth());
+        ScanJournal.Record head = journal.peek();
+        assertEquals(2, head.seq);
+        assertEquals("b.txt", head.fileName);
+        assertEquals("T1A2\n", head.data);
+        assertEquals(2, head.time);
+        journal.close();
+    }
+
+    @Test
+    public void reopen_skipsAckedRecordsWhenTruncateWasInterrupted() throws Exception {
+        ScanJournal journal = new ScanJournal(dir());
+        journal.append("a.txt", "T1A1\n", 1);
+        journal.append("b.txt", "T1A2\n", 2);
+        journal.sync();
+        byte[] beforeTruncate = Files.readAllBytes(journalFile());
+        assertEquals(Arrays.asList("a.txt", "b.txt"), drain(journal));
+        journal.close();
+        assertEquals(0, Files.size(journalFile()));
+
+        // 送信済み位置の保存後、ジャーナルの切り詰め前に中断された状態にする
+        Files.write(journalFile(), beforeTruncate);
+
+        journal = new ScanJournal(dir());
+        assertEquals(0, journal.depth());
+        assertNull(journal.peek());
+        assertEquals(3, journal.append("c.txt", "T1A3\n", 3).seq);
+        assertEquals(Arrays.asList("c.txt"), drain(journal));
+        journal.close();
+    }
+
+    @Test
+    public void replay_keepsAppendOrderAcrossRestarts() throws Exception {
+        ScanJournal journal = new ScanJournal(dir());
+        for (int i = 0; i < 20; i++) {
+            journal.append("r" + i + ".txt", "T1A" + i + "\n", i);
+        }
+        journal.close(); // SYNC_BATCH の途中の件数も close() で書き出す
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add("r" + i + ".txt");
+        }
+
+        // 一部を送信済みにして再起動し、残りを送信する
+        journal = new ScanJournal(dir());
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ScanJournal.Record r = journal.peek();
+            sent.add(r.fileName);
+            journal.ack(r);
+        }
+        journal.append("r20.txt", "T1A20\n", 20);
+        expected.add("r20.txt");
+        journal.close();
+
+        journal = new ScanJournal(dir());
+        assertEquals(16, journal.depth());
+        sent.addAll(drain(journal));
+        assertEquals(expected, sent);
+        journal.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void ack_rejectsOutOfOrderRecord() throws Exception {
+        ScanJournal journal = new ScanJournal(dir());
+        journal.append("a.txt", "T1A1\n", 1);
+        ScanJournal.Record b = journal.append("b.txt", "T1A2\n", 2);
+        try {
+            journal.ack(b);
+        } finally {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * カメラの代わりに NV21 のフレームを生成するテスト用のフレームソース。
+ * 区間（写っているバーコードの内容と時間）を記録しておき、一定のフレームレートで再生する。
+ */
+final class SyntheticFrameSource {
+
+    static final int WIDTH = 320;
+    static final int HEIGHT = 240;
+
+    private final int fps;
+    private final List<String> texts = new ArrayList<>();
+    private final List<Long> durations = new ArrayList<>();
+
+    SyntheticFrameSource(int fps) {
+        this.fps = fps;
+    }
+
+    /** 内容が text のバーコード（null の場合はバーコードなし）が写った区間を追加する。 */
+    SyntheticFrameSource then(String text, long millis) {
+        texts.add(text);
+        durations.add(millis);
+        return this;
+    }
+
+    /** 記録したフレームの数。 */
+    int frameCount() {
+        int count = 0;
+        for (long millis : durations) count += frames(millis);
+        return count;
+    }
+
+    /**
+     * 記録した区間を再生して engine に渡す。
+     * realTime が true の場合はフレームレートに合わせて待ち、false の場合は待たずに全てのフレームを渡す。
+     */
+    void play(FrameDecodeEngine engine, boolean realTime) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / fps;
+        long start = System.nanoTime();
+        long timestamp = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            byte[] frame = render(texts.get(i), i);
+            for (int n = frames(durations.get(i)); n > 0; n--) {
+                if (realTime) {
+                    long wait = start + timestamp - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                // 実際のカメラと同じく、フレームごとに別のバッファで渡す
+                engine.offer(frame.clone(), WIDTH, WIDTH, HEIGHT, timestamp);
+                timestamp += interval;
+            }
+        }
+    }
+
+    private int frames(long millis) {
+        return (int) (millis * fps / 1000);
+    }
+
+    // 灰色の背景とノイズの上にバーコードを描いたフレーム（輝度面の後に色差面が続く NV21）
+    private static byte[] render(String text, int seed) {
+        byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+        Random random = new Random(seed);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            nv21[i] = (byte) (140 + random.nextInt(40));
+        }
+        for (int i = WIDTH * HEIGHT; i < nv21.length; i++) {
+            nv21[i] = (byte) 128;
+        }
+        if (text == null) return nv21;
+
+        BitMatrix code = new Code128Writer().encode(text, BarcodeFormat.CODE_128, WIDTH * 3 / 4, HEIGHT / 3);
+        int x0 = (WIDTH - code.getWidth()) / 2;
+        int y0 = (HEIGHT - code.getHeight()) / 2;
+        for (int y = 0; y < code.getHeight(); y++) {
+            for (int x = 0; x < code.getWidth(); x++) {
+                int v = code.get(x, y) ? 20 + random.nextInt(30) : 220 + random.nextInt(30);
+                nv21[(y0 + y) * WIDTH + x0 + x] = (byte) v;
+            }
+        }
+        return nv21;
+    }
+}
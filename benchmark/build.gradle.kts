@@ -0,0 +1,42 @@
+// JVM上で送受信処理の性能を測定するJMHベンチマークモジュール
+// 実行: ./gradlew :benchmark:jmh
+// 結果: benchmark/build/results/jmh/results.json（前回の結果と比較して性能の低下を検出する）
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// アプリのソースは日本語のコメントを含むため、既定の文字コードによらず UTF-8 として読み込む
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+// アプリのAndroid非依存クラスをそのままJVM上でビルドする（Android APIを使用するクラスは除外）
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            exclude("**/MainActivity.java", "**/BitmapPixelSource.java")
+        }
+    }
+}
+
+dependencies {
+    implementation("com.google.zxing:core:3.5.3")
+    implementation("jcifs:jcifs:1.3.17")
+    implementation("com.hierynomus:smbj:0.13.0")
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    // 一部のベンチマークだけを実行する場合: ./gradlew :benchmark:jmh -Pjmh.includes=ResponseParse
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.set(listOf(it)) }
+    // プロファイラーを指定する場合（カンマ区切り）: ./gradlew :benchmark:jmh -Pjmh.profilers=gc
+    providers.gradleProperty("jmh.profilers").orNull?.let { profilers.set(it.split(",")) }
+}
@@ -0,0 +1,67 @@
+/***********************************************************************************
+ * <目的>
+ * バーコードの種類判定と検証について、従来の実装（正規表現・substring・chars().allMatch）と
+ * 参照表による BarcodeValidator の処理速度を比較するベンチマーク。
+ *
+ * <説明>
+ * 端末No（Code39、開始・終了文字あり／なし）、バーコード（Code128）、無効な文字列を混在させた
+ * 入力を1回の測定でまとめて判定する。従来の実装は MainActivity から処理をそのまま写したもの。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BarcodeValidationBenchmark {
+
+    // 判定する入力（スキャンで読み取る文字列の例）
+    private static final String[] INPUTS = {
+            "*T0001*", "T0002", "*P0103*", "P12-AB", "*T00 01$*",
+            "4901234567894", "A00000000123", "ABCdef-0123456789", "*ABC*", "T0001?",
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public int legacy() {
+        int valid = 0;
+        for (String input : INPUTS) {
+            boolean isCode39 = (input.startsWith("*") && input.length() > 1 && (input.charAt(1) == 'T' || input.charAt(1) == 'P')) ||
+                    (!input.startsWith("*") && (input.charAt(0) == 'T' || input.charAt(0) == 'P'));
+            if (isCode39 ? legacyCode39(input) : legacyCode128(input)) valid++;
+        }
+        return valid;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public int table() {
+        int valid = 0;
+        for (String input : INPUTS) {
+            if (BarcodeValidator.classify(input, false, BarcodeValidator.SET_ALL) != BarcodeValidator.Symbology.INVALID) valid++;
+        }
+        return valid;
+    }
+
+    // 従来の Code39 の検証（MainActivity.validateCode39）
+    private static boolean legacyCode39(String content) {
+        if (content.startsWith("*") && content.endsWith("*")) {
+            if (content.length() < 3) return false;
+            content = content.substring(1, content.length() - 1);
+        } else {
+            if (content.length() < 1) return false;
+        }
+        return content.matches("[A-Z0-9\\-\\. \\$/\\+%]+");
+    }
+
+    // 従来の Code128 の検証（MainActivity.validateCode128）
+    private static boolean legacyCode128(String content) {
+        return content.chars().allMatch(c -> c >= 0 && c <= 127);
+    }
+}
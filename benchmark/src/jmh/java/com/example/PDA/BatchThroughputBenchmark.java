@@ -0,0 +1,109 @@
+/***********************************************************************************
+ * <目的>
+ * 1件ずつの送信（batchSize=1）とバッチ送信のスループット（件/秒）を比較するベンチマーク。
+ *
+ * <説明>
+ * LocalSopTransport で一時ディレクトリを共有フォルダーの代わりに使用し、
+ * 1回の測定で ITEMS 件の端末No／バーコードを送信する。
+ * 1要求ごとに「要求ファイル作成 → SOPサーバー代替処理 → 応答確認 → 応答読込 → 応答削除」を行う。
+ * SOPサーバー代替処理は要求ファイルを読み込んで削除し、状態の行とレコードごとに1行の応答ファイルを書き込む。
+ * 応答は ResponseParser で解析する。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchThroughputBenchmark {
+
+    // 1回の測定で送信する件数（シフト交代時の一括スキャンを想定）
+    private static final int ITEMS = 200;
+
+    // 1要求ファイルあたりのレコード数（1: 1件ずつの送信）
+    @Param({"1", "10", "50", "200"})
+    public int batchSize;
+
+    private Path root;
+    private LocalSopTransport transport;
+    private List<ScanBatch.Record> items;
+    private long sequence;
+    private final ResponseParser parser = new ResponseParser(StandardCharsets.UTF_8, 64 * 1024, ITEMS);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("pda-bench");
+        transport = new LocalSopTransport(root);
+        Files.createDirectories(transport.getFolder());
+
+        items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(new ScanBatch.Record("T0001", String.format("A%011d", i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public int transmit() throws IOException {
+        int results = 0;
+        for (int i = 0; i < ITEMS; i += batchSize) {
+            List<ScanBatch.Record> batch = items.subList(i, Math.min(i + batchSize, ITEMS));
+            String name = "BENCH_" + (sequence++);
+
+            // 要求ファイルの作成
+            transport.writeRequest(name + ".txt", ScanBatch.format(batch));
+
+            // SOPサーバー代替処理
+            respond(name);
+
+            // 応答の確認・読込・削除
+            String response = name + "R.txt";
+            if (transport.responseExists(response)) {
+                ResponseParser.Response parsed;
+                try (InputStream in = transport.openResponse(response)) {
+                    parsed = parser.parse(in);
+                }
+                transport.deleteResponse(response);
+                results += ScanBatch.formatResults(batch, parsed).length();
+            }
+        }
+        return results;
+    }
+
+    // 要求ファイルを読み込んで削除し、状態の行、レコードごとに1行、終端の行の応答ファイルを書き込む
+    private void respond(String name) throws IOException {
+        Path request = transport.getFolder().resolve(name + ".txt");
+        int records = Files.readAllLines(request, StandardCharsets.UTF_8).size();
+        Files.delete(request);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(ResponseParser.OK).append('\n');
+        for (int i = 0; i < records; i++) {
+            sb.append(ResponseParser.OK).append('\n');
+        }
+        sb.append(ResponseParser.END).append('\n');
+        Files.write(transport.getFolder().resolve(name + "R.txt"), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
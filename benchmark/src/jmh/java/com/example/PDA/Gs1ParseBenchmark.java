@@ -0,0 +1,106 @@
+/***********************************************************************************
+ * <目的>
+ * GS1-128 ラベルの解析（Gs1Parser）の処理速度を測定するベンチマーク。
+ *
+ * <説明>
+ * 仕入先のラベルと同じ形式のデータを CORPUS 件生成し、1回の測定で全件を解析する。
+ * - GTIN + 有効期限 + ロット（可変長、GS区切り）+ 数量
+ * - GTIN + 正味重量（3103）+ シリアル
+ * - SSCC（出荷梱包）
+ * - シンボル識別子"]C1"あり／なし
+ * parse: 項目数を数えるだけ（入力のコピーなし）、hri: "(AI)データ" 形式への変換まで行う。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Gs1ParseBenchmark {
+
+    // 解析するラベルの件数
+    private static final int CORPUS = 5000;
+
+    private String[] labels;
+    private final Gs1Parser.HriBuilder hri = new Gs1Parser.HriBuilder();
+    private final int[] count = new int[1];
+    private final Gs1Parser.Visitor counter = (src, aiStart, valueStart, valueEnd) -> count[0] += valueEnd - valueStart;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        labels = new String[CORPUS];
+        for (int i = 0; i < CORPUS; i++) {
+            StringBuilder sb = new StringBuilder();
+            if (random.nextBoolean()) sb.append(Gs1Parser.SYMBOLOGY_ID);
+            switch (i % 3) {
+                case 0:
+                    sb.append("01").append(withCheckDigit("0" + digits(random, 12)));
+                    sb.append("17").append(String.format("%02d%02d%02d", 24 + random.nextInt(5), 1 + random.nextInt(12), random.nextInt(29)));
+                    sb.append("10").append("L").append(digits(random, 1 + random.nextInt(10))).append(Gs1Parser.GS);
+                    sb.append("30").append(1 + random.nextInt(9999));
+                    break;
+                case 1:
+                    sb.append("01").append(withCheckDigit("1" + digits(random, 12)));
+                    sb.append("3103").append(digits(random, 6));
+                    sb.append("21").append("SN").append(digits(random, 8));
+                    break;
+                default:
+                    sb.append("00").append(withCheckDigit("0" + digits(random, 16)));
+                    break;
+            }
+            labels[i] = sb.toString();
+        }
+        for (String label : labels) {
+            if (Gs1Parser.parse(label, counter) < 0) throw new IllegalStateException(label);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS)
+    public int parse() {
+        count[0] = 0;
+        int fields = 0;
+        for (String label : labels) {
+            fields += Gs1Parser.parse(label, counter);
+        }
+        return fields + count[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS)
+    public int hri() {
+        int length = 0;
+        for (String label : labels) {
+            Gs1Parser.parse(label, hri.reset());
+            length += hri.toString().length();
+        }
+        return length;
+    }
+
+    private static String digits(Random random, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+
+    // モジュラス10のチェックデジットを付加する
+    private static String withCheckDigit(String data) {
+        int sum = 0;
+        int weight = 3;
+        for (int i = data.length() - 1; i >= 0; i--) {
+            sum += (data.charAt(i) - '0') * weight;
+            weight = 4 - weight;
+        }
+        return data + (10 - sum % 10) % 10;
+    }
+}
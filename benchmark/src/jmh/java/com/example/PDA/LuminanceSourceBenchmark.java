@@ -0,0 +1,129 @@
+/***********************************************************************************
+ * <目的>
+ * 画像からのバーコード読み取りについて、従来の処理（画像全体の ARGB コピー + RGBLuminanceSource）と
+ * StripLuminanceSource の処理時間と一時メモリの量を比較するベンチマーク。
+ *
+ * <説明>
+ * Code128 のバーコードを灰色の背景とノイズの上に描いた見本画像（1MP／12MP）を生成する。
+ * 画像は配列に保持し、Bitmap と同様に PixelSource 経由で読み出す（Android では Bitmap の画素は
+ * Javaヒープの外にあるため、見本画像自体はメモリの比較に含めない）。
+ * 一時メモリの量は -prof gc の gc.alloc.rate.norm（1回あたりの割り当てバイト数）で確認する。
+ * 実行例: ./gradlew :benchmark:jmh -Pjmh.includes=LuminanceSource -Pjmh.profilers=gc
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.oned.Code128Writer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class LuminanceSourceBenchmark {
+
+    private static final String CONTENT = "A00000000123";
+
+    // 見本画像の大きさ（幅x高さ）
+    @Param({"1000x1000", "4000x3000"})
+    public String size;
+
+    private ArrayPixelSource image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] wh = size.split("x");
+        image = ArrayPixelSource.sample(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]), CONTENT);
+        if (!CONTENT.equals(strip())) throw new IllegalStateException("sample image is not decodable");
+    }
+
+    // 従来の処理（MainActivity の変更前の decodeBarcodeFromBitmap と同じ）
+    @Benchmark
+    public String fullCopy() throws NotFoundException {
+        int width = image.getWidth(), height = image.getHeight();
+        int[] pixels = new int[width * height];
+        image.getPixels(pixels, 0, width, 0, 0, width, height);
+        LuminanceSource source = new RGBLuminanceSource(width, height, pixels);
+        return decode(source);
+    }
+
+    @Benchmark
+    public String strip() {
+        try {
+            return decode(new StripLuminanceSource(image));
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    private static String decode(LuminanceSource source) throws NotFoundException {
+        Result result = new MultiFormatReader().decode(new BinaryBitmap(new GlobalHistogramBinarizer(source)));
+        return result.getText();
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 配列に保持した画像（Bitmap の代わり）
+     ***********************************************************************************/
+    static final class ArrayPixelSource implements PixelSource {
+        private final int width;
+        private final int height;
+        private final int[] argb;
+
+        ArrayPixelSource(int width, int height, int[] argb) {
+            this.width = width;
+            this.height = height;
+            this.argb = argb;
+        }
+
+        // 灰色の背景とノイズの上に、横幅の半分の大きさの Code128 を描いた画像を生成する
+        static ArrayPixelSource sample(int width, int height, String content) {
+            int[] argb = new int[width * height];
+            Random random = new Random(1);
+            for (int i = 0; i < argb.length; i++) {
+                int v = 150 + random.nextInt(40);
+                argb[i] = 0xFF000000 | v << 16 | v << 8 | v;
+            }
+            BitMatrix code = new Code128Writer().encode(content, BarcodeFormat.CODE_128, width / 2, height / 4);
+            int x0 = (width - code.getWidth()) / 2;
+            int y0 = (height - code.getHeight()) / 2;
+            for (int y = 0; y < code.getHeight(); y++) {
+                for (int x = 0; x < code.getWidth(); x++) {
+                    int v = code.get(x, y) ? 20 + random.nextInt(30) : 220 + random.nextInt(30);
+                    argb[(y0 + y) * width + x0 + x] = 0xFF000000 | v << 16 | v << 8 | v;
+                }
+            }
+            return new ArrayPixelSource(width, height, argb);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public void getPixels(int[] pixels, int offset, int stride, int x, int y, int w, int h) {
+            for (int row = 0; row < h; row++) {
+                System.arraycopy(argb, (y + row) * width + x, pixels, offset + row * stride, w);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/***********************************************************************************
+ * <目的>
+ * 要求ファイル名の生成について、従来の実装（Calendar と String.format による秒単位の日時）と
+ * RequestIdGenerator の処理速度を比較するベンチマーク。
+ *
+ * <説明>
+ * 従来の実装は MainActivity.createNewFile から共有フォルダーへのアクセスを除いて写したもの。
+ * RequestIdGenerator は文字列で返す next() と、呼び出し側のバッファに書き込む next(char[], int) を測定する。
+ * generatorContended は複数スレッドから同じ生成器を使用した場合のスループット（回/秒）を測定する。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestNameBenchmark {
+
+    private static final String HOST_NAME = "BHT-M60"; // 端末の機種名（Build.MODEL）の例
+    private static final String DEVICE_ID = "8f2c4e1a9b3d7c60"; // 端末識別子（ANDROID_ID）の例
+    private static final String EXTENSION = ".txt";
+
+    private RequestIdGenerator ids;
+    private char[] buffer;
+
+    @Setup
+    public void setup() {
+        ids = new RequestIdGenerator(HOST_NAME, DEVICE_ID);
+        buffer = new char[ids.length()];
+    }
+
+    @Benchmark
+    public String legacy() {
+        SystemTime st = new SystemTime();
+        SystemTime.getLocalTime(st);
+        String date = String.format("%04d%02d%02d%02d%02d%02d", st.Year, st.Month, st.Day, st.Hour, st.Minute, st.Second);
+        return HOST_NAME + "_" + date + EXTENSION;
+    }
+
+    @Benchmark
+    public String generator() {
+        return ids.next() + EXTENSION;
+    }
+
+    @Benchmark
+    public int generatorBuffer() {
+        return ids.next(buffer, 0);
+    }
+
+    // 8スレッドから同時に生成した場合のスループット（単体テストから移したもの）
+    @Benchmark
+    @Threads(8)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String generatorContended() {
+        return ids.next();
+    }
+}
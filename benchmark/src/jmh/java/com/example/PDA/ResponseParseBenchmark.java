@@ -0,0 +1,73 @@
+/***********************************************************************************
+ * <目的>
+ * 応答ファイルの読み込みについて、従来の実装（BufferedReader で1行ずつ読み、StringBuilder で連結）と
+ * ResponseParser の処理速度を比較するベンチマーク。
+ *
+ * <説明>
+ * 応答は状態の行とレコードごとに1行（バッチ送信の応答）で、メモリ上の内容から読み込む
+ * （共有フォルダーへのアクセスは含まない）。従来の実装は MainActivity の応答確認から写したもの。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParseBenchmark {
+
+    // 応答のレコード数（1: 1件ずつの送信）
+    @Param({"1", "50"})
+    public int records;
+
+    private byte[] content;
+    private ResponseParser parser;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ResponseParser.OK).append('\n');
+        for (int i = 0; i < records; i++) {
+            if (i % 10 == 9) {
+                sb.append(ResponseParser.NOT_FOUND).append('\n');
+            } else {
+                sb.append(ResponseParser.OK).append("\tT").append(1000 + i).append(" 出荷済み\r\n");
+            }
+        }
+        sb.append(ResponseParser.END).append("\r\n");
+        content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        parser = new ResponseParser(StandardCharsets.UTF_8, 16 * 1024, Math.max(1, records));
+    }
+
+    @Benchmark
+    public String legacy() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content)))) {
+            StringBuilder fileContent = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fileContent.append(line).append("\n");
+            }
+            return fileContent.toString();
+        }
+    }
+
+    @Benchmark
+    public int parser() throws IOException {
+        ResponseParser.Response response = parser.parse(new ByteArrayInputStream(content));
+        int ok = 0;
+        for (int i = 0; i < response.recordCount(); i++) {
+            if (response.recordStatus(i) == ResponseParser.OK) ok++;
+        }
+        return response.status() + ok;
+    }
+}
@@ -0,0 +1,91 @@
+/***********************************************************************************
+ * <目的>
+ * 複数バーコードの読み取り（TiledMultiDecoder）について、スレッド数ごとの処理時間を測定するベンチマーク。
+ *
+ * <説明>
+ * ラベルシート（LABEL_COLUMNS x LABEL_ROWS 枚の Code128 ラベル（400x150）を並べた 2400x1800 の画像）を生成し、
+ * threads のスレッド数の ForkJoinPool で全てのラベルを読み取る。1スレッドの結果との比が並列化の効果となる。
+ * コア数より多いスレッド数の結果は参考値（コア数を超えて速くはならない）。
+ * 実行例: ./gradlew :benchmark:jmh -Pjmh.includes=TiledDecode
+ ***********************************************************************************/
+package com.example.PDA;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class TiledDecodeBenchmark {
+
+    private static final int WIDTH = 2400;
+    private static final int HEIGHT = 1800;
+    private static final int LABEL_COLUMNS = 3;
+    private static final int LABEL_ROWS = 4;
+
+    // 読み取りに使用するスレッド数
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private LuminanceSourceBenchmark.ArrayPixelSource sheet;
+    private ForkJoinPool pool;
+    private TiledMultiDecoder decoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sheet = sheet();
+        pool = new ForkJoinPool(threads);
+        decoder = new TiledMultiDecoder(pool, Constants.TILESIZE);
+        int found = decode();
+        if (found != LABEL_COLUMNS * LABEL_ROWS) throw new IllegalStateException("found " + found + " labels");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int decode() {
+        List<TiledMultiDecoder.Hit> hits = decoder.decode(new StripLuminanceSource(sheet));
+        return hits.size();
+    }
+
+    // 灰色の背景とノイズの上に、ラベルを格子状に並べた画像を生成する
+    private static LuminanceSourceBenchmark.ArrayPixelSource sheet() {
+        int[] argb = new int[WIDTH * HEIGHT];
+        Random random = new Random(1);
+        for (int i = 0; i < argb.length; i++) {
+            int v = 150 + random.nextInt(40);
+            argb[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        int cellWidth = WIDTH / LABEL_COLUMNS;
+        int cellHeight = HEIGHT / LABEL_ROWS;
+        Code128Writer writer = new Code128Writer();
+        for (int row = 0; row < LABEL_ROWS; row++) {
+            for (int column = 0; column < LABEL_COLUMNS; column++) {
+                String content = String.format("A%011d", row * LABEL_COLUMNS + column + 1);
+                BitMatrix code = writer.encode(content, BarcodeFormat.CODE_128, cellWidth / 2, cellHeight / 3);
+                int x0 = column * cellWidth + (cellWidth - code.getWidth()) / 2;
+                int y0 = row * cellHeight + (cellHeight - code.getHeight()) / 2;
+                for (int y = 0; y < code.getHeight(); y++) {
+                    for (int x = 0; x < code.getWidth(); x++) {
+                        int v = code.get(x, y) ? 20 + random.nextInt(30) : 220 + random.nextInt(30);
+                        argb[(y0 + y) * WIDTH + x0 + x] = 0xFF000000 | v << 16 | v << 8 | v;
+                    }
+                }
+            }
+        }
+        return new LuminanceSourceBenchmark.ArrayPixelSource(WIDTH, HEIGHT, argb);
+    }
+}
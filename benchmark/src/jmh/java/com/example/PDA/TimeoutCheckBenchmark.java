@@ -0,0 +1,87 @@
+/***********************************************************************************
+ * <目的>
+ * 応答待ちのタイムアウト判定について、従来の実装（確認のたびに要求ファイル名の日時を
+ * SimpleDateFormat で解析）と DeadlineWheel の処理速度を比較するベンチマーク。
+ *
+ * <説明>
+ * 応答確認の1回分（応答待ちの全件のタイムアウト判定）を測定する。
+ * - legacy: MainActivity の isTimeout を応答待ちの件数だけ繰り返す。
+ * - wheel: DeadlineWheel.expire() を1回呼び出す。時計は呼び出しごとに1スロット進め、
+ *   期限切れになった要求は同じ期限で登録し直す（応答待ちの件数を一定に保つ）。
+ * - wheelScheduleCancel: 1件の送信で行う期限の登録と、応答受信時の取り消し。
+ ***********************************************************************************/
+package com.example.PDA;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeoutCheckBenchmark {
+
+    private static final long WAIT_MILLIS = 10_000; // 応答の待ち時間（WAITTIME）
+    private static final long TICK_MILLIS = 100; // 期限の精度
+    private static final int SLOTS = 512;
+
+    // 応答待ちの件数
+    @Param({"1", "16", "64"})
+    public int pending;
+
+    private String[] dates; // 応答待ちの要求ファイル名の日時（yyyyMMddHHmmss）
+    private long fakeNanos; // DeadlineWheel の時計
+    private DeadlineWheel<Integer> wheel;
+    private DeadlineWheel<Integer> idleWheel;
+
+    @Setup
+    public void setup() {
+        long now = System.currentTimeMillis();
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss", Locale.getDefault());
+        dates = new String[pending];
+        for (int i = 0; i < pending; i++) {
+            dates[i] = format.format(new Date(now - i * 100L));
+        }
+
+        // 期限切れになった要求は登録し直す
+        wheel = new DeadlineWheel<>(TICK_MILLIS, SLOTS, item -> wheel.schedule(item, WAIT_MILLIS), () -> fakeNanos);
+        for (int i = 0; i < pending; i++) {
+            wheel.schedule(i, WAIT_MILLIS - i * 100L);
+        }
+        idleWheel = new DeadlineWheel<>(TICK_MILLIS, SLOTS, item -> { });
+    }
+
+    @Benchmark
+    public int legacy() throws ParseException {
+        int expired = 0;
+        for (String date : dates) {
+            if (legacyIsTimeout(date)) expired++;
+        }
+        return expired;
+    }
+
+    @Benchmark
+    public int wheel() {
+        fakeNanos += TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+        return wheel.expire();
+    }
+
+    @Benchmark
+    public boolean wheelScheduleCancel() {
+        return idleWheel.schedule(0, WAIT_MILLIS).cancel();
+    }
+
+    // 従来のタイムアウト判定（MainActivity.isTimeout）
+    private static boolean legacyIsTimeout(String pstrDate) throws ParseException {
+        Date now = new Date();
+        Date createDate = new SimpleDateFormat("yyyyMMddHHmmss", Locale.getDefault()).parse(pstrDate);
+        return (now.getTime() - createDate.getTime()) / 1000 > WAIT_MILLIS / 1000;
+    }
+}
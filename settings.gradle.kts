@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "PDA"
 include(":app")
+include(":benchmark")
+include(":simulator")
  
\ No newline at end of file
@@ -0,0 +1,45 @@
+// 複数の端末からSOPサーバーの共有フォルダーへの負荷を再現するJVMコマンドラインモジュール
+// 実行: ./gradlew :simulator:run --args="--root=/tmp/sop --terminals=50 --rate=0.5 --duration=120"
+// SOPサーバーの代替: ./gradlew :simulator:responder --args="--root=/tmp/sop --latency=lognormal:300:0.8 --missing=0.01"
+plugins {
+    java
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// アプリのソースは日本語のコメントを含むため、既定の文字コードによらず UTF-8 として読み込む
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+// アプリのAndroid非依存クラスをそのままJVM上でビルドする（Android APIを使用するクラスは除外）
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            exclude("**/MainActivity.java", "**/BitmapPixelSource.java")
+        }
+    }
+}
+
+dependencies {
+    implementation("com.google.zxing:core:3.5.3")
+    implementation("jcifs:jcifs:1.3.17")
+    implementation("com.hierynomus:smbj:0.13.0")
+}
+
+application {
+    mainClass.set("com.example.PDA.LoadGenerator")
+}
+
+// SOPサーバーの代替（要求ファイルに遅延と障害を設定して応答する）
+tasks.register<JavaExec>("responder") {
+    group = "application"
+    description = "Runs the local SOP responder simulator."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.PDA.SopResponder")
+}
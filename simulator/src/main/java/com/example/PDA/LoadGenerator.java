@@ -0,0 +1,322 @@
+/***********************************************************************************
+ * <目的>
+ * 複数の端末（仮想端末）から1つの共有フォルダーに要求ファイルを送信し、SOPサーバーの負荷を再現する
+ * コマンドラインの負荷生成ツール。
+ *
+ * <説明>
+ * - 共有フォルダーの代わりにローカルディレクトリ（--root 配下の RESPONSEFOLDER）を使用する。
+ *   応答は SOPサーバー（またはその代替）が同じフォルダーに書き込むこと。
+ * - 仮想端末ごとに、アプリと同じ要求ファイル名の生成（RequestIdGenerator、または従来の
+ *   <ホスト名>_<yyyyMMddHHmmss>.txt）、要求ファイルの書き込み（LocalSopTransport）、
+ *   応答収集（ResponseHarvester）、応答待ちの枠（InFlightWindow）を使用する。
+ * - 各仮想端末は平均 --rate 回/秒（指数分布の間隔）でスキャンする。応答待ちの枠が満杯の場合は
+ *   入力を受け付けられないものとして数える。
+ * - --watch=false を指定すると応答フォルダーの変更を監視せず、定期的な確認のみで応答を収集する。
+ * - --report 秒ごとと終了時に、スループット、応答時間の分布（p50／p95／p99／最大）、
+ *   同名ファイルによる送信失敗（PDAERR16。同じ端末の応答待ちの要求と同名の場合を含む）、タイムアウト、エラーの件数、一覧取得の頻度、
+ *   変更を監視中の端末数を出力する。
+ *
+ * 使用例:
+ *   java com.example.PDA.LoadGenerator --root=/tmp/sop --terminals=50 --rate=0.5 --duration=120 --naming=legacy
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 負荷生成クラス
+public class LoadGenerator {
+
+    private static final String EXTENSION = ".txt"; // 要求ファイルの拡張子
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100); // 終了の確認間隔
+
+    // 要求ファイル名の付け方
+    enum Naming {
+        ID, // RequestIdGenerator（<ホスト名>-<端末識別子>_<ミリ秒までの日時><連番>）
+        LEGACY // 従来の createNewFile（<ホスト名>_<秒までの日時>。同じ機種の端末同士で重複する）
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コマンドラインの設定（--名前=値）
+     ***********************************************************************************/
+    static final class Options {
+        Path root; // 共有フォルダーの代わりのルートディレクトリ
+        int terminals = 10; // 仮想端末の数
+        double rate = 0.2; // 1端末あたりのスキャン回数（回/秒）
+        long durationSeconds = 60; // 送信を続ける時間（秒）
+        long timeoutMillis = WAITTIME * 1000L; // 応答の待ち時間（ミリ秒）
+        int window = PIPELINEWINDOW; // 1端末あたりの応答待ちの枠の数
+        Naming naming = Naming.ID;
+        boolean watch = RESPONSEWATCH; // 応答フォルダーの変更を監視するかどうか（false: 定期的な確認のみ）
+        String host = "BHT-M60"; // 全端末で共通のホスト名（Build.MODEL）
+        int threads = 8; // 要求ファイルを書き込むスレッド数
+        long reportSeconds = 5; // 途中経過の出力間隔（秒）
+        long seed = 1; // スキャン間隔の乱数の種
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) throw new IllegalArgumentException("unknown argument: " + arg);
+                String name = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (name) {
+                    case "root": o.root = Paths.get(value); break;
+                    case "terminals": o.terminals = Integer.parseInt(value); break;
+                    case "rate": o.rate = Double.parseDouble(value); break;
+                    case "duration": o.durationSeconds = Long.parseLong(value); break;
+                    case "timeout": o.timeoutMillis = Long.parseLong(value); break;
+                    case "window": o.window = Integer.parseInt(value); break;
+                    case "naming": o.naming = Naming.valueOf(value.toUpperCase(Locale.US)); break;
+                    case "watch": o.watch = Boolean.parseBoolean(value); break;
+                    case "host": o.host = value; break;
+                    case "threads": o.threads = Integer.parseInt(value); break;
+                    case "report": o.reportSeconds = Long.parseLong(value); break;
+                    case "seed": o.seed = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("unknown option: --" + name);
+                }
+            }
+            if (o.root == null) throw new IllegalArgumentException("--root is required");
+            if (o.terminals <= 0 || o.rate <= 0 || o.window <= 0) throw new IllegalArgumentException("terminals, rate and window must be positive");
+            return o;
+        }
+    }
+
+    // 応答待ちの要求
+    private static final class Request {
+        final String requestName;
+        final long sentNanos;
+
+        Request(String requestName, long sentNanos) {
+            this.requestName = requestName;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 仮想端末（1台のPDA）
+     ***********************************************************************************/
+    private final class Terminal implements ResponseHarvester.Listener {
+        final String terminalNo; // 端末No（Code39 のラベル）
+        final RequestIdGenerator ids; // Naming.ID の場合のみ使用する
+        final ResponseHarvester harvester;
+        final InFlightWindow window;
+        final Random random;
+        final Map<String, Request> pending = new ConcurrentHashMap<>(); // 応答ファイル名 → 応答待ちの要求
+
+        Terminal(int index, SopTransport transport) {
+            this.terminalNo = String.format(Locale.US, "T%04d", index);
+            this.ids = new RequestIdGenerator(options.host, String.format(Locale.US, "%016x", index));
+            String prefix = options.naming == Naming.ID ? ids.prefix() : options.host + "_";
+            this.harvester = new ResponseHarvester(transport, prefix,
+                    new ResponseParser(StandardCharsets.UTF_8, RESPONSEMAXBYTES, BATCHSIZE), options.watch);
+            this.window = new InFlightWindow(options.window);
+            this.random = new Random(options.seed + index);
+        }
+
+        // 次のスキャンを予約する（間隔は平均 1/rate 秒の指数分布）
+        void scheduleNext() {
+            if (System.nanoTime() >= endNanos) return;
+            long delayMicros = (long) (-Math.log(1 - random.nextDouble()) / options.rate * 1e6);
+            scheduler.schedule(this::scan, delayMicros, TimeUnit.MICROSECONDS);
+        }
+
+        // 1回分のスキャン：要求ファイルを書き込み、応答待ちに登録する
+        void scan() {
+            scans.incrementAndGet();
+            String requestName = options.naming == Naming.ID ? ids.next() + EXTENSION : legacyName(options.host);
+            String responseName = ResponseHarvester.responseName(requestName);
+            if (pending.containsKey(responseName)) {
+                // 同じ端末の応答待ちの要求と同名（従来の名前で同じ秒に送信）。応答を区別できないため
+                // 送信せずに PDAERR16 として数え、先の要求の応答待ちはそのまま残す
+                collisions.incrementAndGet();
+                scheduleNext();
+                return;
+            }
+            String correlationId = InFlightWindow.correlationId(requestName);
+            if (!window.tryAcquire(correlationId, System.currentTimeMillis())) {
+                blocked.incrementAndGet();
+                scheduleNext();
+                return;
+            }
+
+            String data = terminalNo + String.format(Locale.US, "49%011d", random.nextInt(1_000_000_000));
+            pending.put(responseName, new Request(requestName, System.nanoTime()));
+            try {
+                transport.writeRequest(requestName, data);
+                sent.incrementAndGet();
+                harvester.register(responseName, options.timeoutMillis, this);
+            } catch (FileAlreadyExistsException e) {
+                collisions.incrementAndGet(); // PDAERR16
+                finish(responseName);
+            } catch (IOException | RuntimeException e) {
+                errors.incrementAndGet();
+                finish(responseName);
+            }
+            scheduleNext();
+        }
+
+        @Override
+        public void onResponse(String responseName, ResponseParser.Response response) {
+            Request r = finish(responseName);
+            if (r == null) return;
+            latency.record(System.nanoTime() - r.sentNanos);
+            completed.incrementAndGet();
+            if (!response.isOk()) notOk.incrementAndGet();
+        }
+
+        @Override
+        public void onTimeout(String responseName) {
+            if (finish(responseName) != null) timeouts.incrementAndGet();
+        }
+
+        @Override
+        public void onError(String responseName, IOException e) {
+            if (finish(responseName) != null) errors.incrementAndGet();
+        }
+
+        // 応答待ちから外す
+        private Request finish(String responseName) {
+            Request r = pending.remove(responseName);
+            if (r != null) window.release(InFlightWindow.correlationId(r.requestName));
+            return r;
+        }
+    }
+
+    private final Options options;
+    private final SopTransport transport;
+    private final ScheduledExecutorService scheduler;
+    private final List<Terminal> terminals = new ArrayList<>();
+    private volatile long endNanos;
+
+    private final LatencyHistogram latency = new LatencyHistogram(); // 送信から応答の受信まで
+    private final AtomicLong scans = new AtomicLong(); // スキャン回数
+    private final AtomicLong sent = new AtomicLong(); // 要求ファイルを書き込んだ件数
+    private final AtomicLong completed = new AtomicLong(); // 応答を受信した件数
+    private final AtomicLong notOk = new AtomicLong(); // 応答の状態が正常終了以外の件数
+    private final AtomicLong collisions = new AtomicLong(); // 同名ファイルが存在した件数（PDAERR16）
+    private final AtomicLong timeouts = new AtomicLong(); // タイムアウトの件数
+    private final AtomicLong errors = new AtomicLong(); // 書き込み・読み込みエラーの件数
+    private final AtomicLong blocked = new AtomicLong(); // 応答待ちの枠が満杯で送信できなかった件数
+
+    LoadGenerator(Options options) throws IOException {
+        this.options = options;
+        LocalSopTransport local = new LocalSopTransport(options.root);
+        Files.createDirectories(local.getFolder());
+        this.transport = local;
+        this.scheduler = Executors.newScheduledThreadPool(options.threads, r -> {
+            Thread t = new Thread(r, "load-terminal");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 全ての仮想端末でスキャンを開始し、送信を続ける時間の経過後、応答待ちが終わるまで待つ
+     ***********************************************************************************/
+    void run() throws InterruptedException {
+        long start = System.nanoTime();
+        endNanos = start + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        for (int i = 1; i <= options.terminals; i++) {
+            Terminal terminal = new Terminal(i, transport);
+            terminals.add(terminal);
+            terminal.scheduleNext();
+        }
+
+        // 送信を続ける時間 ＋ 応答の待ち時間（最後の要求のタイムアウトまで）
+        long drainEnd = endNanos + TimeUnit.MILLISECONDS.toNanos(options.timeoutMillis + ResponseHarvester.MAX_INTERVAL);
+        long reportNanos = TimeUnit.SECONDS.toNanos(Math.max(1, options.reportSeconds));
+        for (long next = start + reportNanos; ; ) {
+            long now = System.nanoTime();
+            if (now >= endNanos && pendingCount() == 0) break;
+            if (now >= drainEnd) break;
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, Math.min(Math.min(next, drainEnd), now + POLL_NANOS) - now));
+            if (System.nanoTime() >= next) {
+                System.out.println(report(System.nanoTime() - start, false));
+                next += reportNanos;
+            }
+        }
+        scheduler.shutdownNow();
+        System.out.println(report(System.nanoTime() - start, true));
+    }
+
+    // 全端末の応答待ちの件数
+    private int pendingCount() {
+        int n = 0;
+        for (Terminal t : terminals) n += t.pending.size();
+        return n;
+    }
+
+    // 全端末の応答フォルダーの一覧取得の回数
+    private long listCalls() {
+        long n = 0;
+        for (Terminal t : terminals) n += t.harvester.getListCalls();
+        return n;
+    }
+
+    // 応答フォルダーの変更を監視中の端末数
+    private int watching() {
+        int n = 0;
+        for (Terminal t : terminals) if (t.harvester.isWatching()) n++;
+        return n;
+    }
+
+    // 途中経過または結果
+    private String report(long elapsedNanos, boolean summary) {
+        double seconds = elapsedNanos / 1e9;
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        String line = String.format(Locale.US,
+                "%7.1fs scans %d sent %d done %d (%.1f/s) pending %d | latency ms p50 %.0f p95 %.0f p99 %.0f max %.0f"
+                        + " | PDAERR16 %d timeouts %d errors %d not-ok %d blocked %d | list %.1f/s watching %d/%d",
+                seconds, scans.get(), sent.get(), completed.get(), completed.get() / seconds, pendingCount(),
+                s.p50Millis, s.p95Millis, s.p99Millis, s.maxMillis,
+                collisions.get(), timeouts.get(), errors.get(), notOk.get(), blocked.get(), listCalls() / seconds,
+                watching(), terminals.size());
+        return summary ? "RESULT " + line : line;
+    }
+
+    // 従来の要求ファイル名（MainActivity.createNewFile）。SystemTime は静的な項目に書き込むため排他する
+    private static synchronized String legacyName(String hostName) {
+        SystemTime st = new SystemTime();
+        SystemTime.getLocalTime(st);
+        String date = String.format("%04d%02d%02d%02d%02d%02d", st.Year, st.Month, st.Day, st.Hour, st.Minute, st.Second);
+        return hostName + "_" + date + EXTENSION;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: LoadGenerator --root=DIR [--terminals=10] [--rate=0.2] [--duration=60] [--timeout="
+                    + WAITTIME * 1000L + "] [--window=" + PIPELINEWINDOW + "] [--naming=id|legacy] [--watch=" + RESPONSEWATCH + "]"
+                    + " [--host=BHT-M60] [--threads=8] [--report=5] [--seed=1]");
+            System.exit(2);
+            return;
+        }
+        System.out.println(String.format(Locale.US, "%d terminals x %.2f scans/s for %ds, naming %s, folder %s",
+                options.terminals, options.rate, options.durationSeconds, options.naming,
+                options.root.resolve(RESPONSEFOLDER)));
+        new LoadGenerator(options).run();
+    }
+}
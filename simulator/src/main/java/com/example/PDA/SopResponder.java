@@ -0,0 +1,374 @@
+/***********************************************************************************
+ * <目的>
+ * SOPサーバーの代わりに要求ファイルに応答するコマンドラインツール。
+ * 応答の遅延と障害（遅い応答、応答なし、書きかけの応答、重複した応答）を設定に従って発生させ、
+ * 応答確認とタイムアウト（WAITTIME）の処理をローカルの環境で試験・測定する。
+ *
+ * <説明>
+ * - --root 配下の RESPONSEFOLDER を WatchService で監視し、要求ファイル（*.txt。応答ファイル *R.txt を除く）
+ *   が作成されると、--latency の分布から決めた時間の後に応答ファイル（<要求ファイル名>R.txt）を書き込む。
+ *   要求ファイルは応答時に読み込んで削除する。
+ * - 応答は ResponseParser の形式で、1行目に状態（正常終了）、2行目以降に要求の行ごとの結果、最終行に END を書く。
+ *   通常の応答は一時ファイルに書き込んでから名前を変更するため、書きかけの内容が見えることはない。
+ * - 障害は要求ごとに確率で発生させる（複数の障害が重なることはない）:
+ *   slow: 遅延に --slowms を加える／missing: 応答しない（要求ファイルは削除する）／
+ *   partial: 応答ファイル名に直接前半だけを書き込み、--partialgap 後に残りを書く／
+ *   duplicate: 応答ファイルを2回書き込む（端末が1回目を削除した後に2回目が残る）。
+ * - 監視イベントの取りこぼし（OVERFLOW）の場合や起動時は、フォルダーの一覧から要求ファイルを探す。
+ * - --report 秒ごとに受け付けた要求、応答、障害の件数を出力する。
+ *
+ * 遅延の分布（--latency）:
+ *   fixed:<ms> ／ uniform:<最小ms>:<最大ms> ／ exp:<平均ms> ／ lognormal:<中央値ms>:<σ>
+ *
+ * 使用例:
+ *   java com.example.PDA.SopResponder --root=/tmp/sop --latency=lognormal:300:0.8 --missing=0.01 --slow=0.05
+ ***********************************************************************************/
+package com.example.PDA;
+
+import static com.example.PDA.Constants.RESPONSEFOLDER;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// SOPサーバー代替クラス
+public class SopResponder {
+
+    private static final String EXTENSION = ".txt"; // 要求ファイルの拡張子
+    private static final String RESPONSE_SUFFIX = "R" + EXTENSION; // 応答ファイル名の末尾
+    private static final int READ_RETRIES = 20; // 要求ファイルが書き込み中（空）の場合の読み込みの再試行回数
+    private static final long READ_RETRY_MILLIS = 10; // 読み込みの再試行の間隔（ミリ秒）
+
+    // 障害の種類
+    enum Fault {
+        NONE, SLOW, MISSING, PARTIAL, DUPLICATE
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * 応答の遅延の分布
+     ***********************************************************************************/
+    static final class Latency {
+        private final String kind;
+        private final double a;
+        private final double b;
+
+        private Latency(String kind, double a, double b) {
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+        }
+
+        // "fixed:200"、"uniform:50:500"、"exp:200"、"lognormal:300:0.8" の形式から作成する
+        static Latency parse(String spec) {
+            String[] p = spec.split(":");
+            switch (p[0]) {
+                case "fixed":
+                case "exp":
+                    return new Latency(p[0], Double.parseDouble(p[1]), 0);
+                case "uniform":
+                case "lognormal":
+                    return new Latency(p[0], Double.parseDouble(p[1]), Double.parseDouble(p[2]));
+                default:
+                    throw new IllegalArgumentException("unknown latency: " + spec);
+            }
+        }
+
+        // 遅延（ミリ秒）を1つ選ぶ
+        long sample(Random random) {
+            double ms;
+            switch (kind) {
+                case "uniform":
+                    ms = a + (b - a) * random.nextDouble();
+                    break;
+                case "exp":
+                    ms = -Math.log(1 - random.nextDouble()) * a;
+                    break;
+                case "lognormal":
+                    ms = a * Math.exp(b * random.nextGaussian());
+                    break;
+                default:
+                    ms = a;
+                    break;
+            }
+            return Math.max(0, (long) ms);
+        }
+
+        @Override
+        public String toString() {
+            return kind + ":" + a + (b != 0 ? ":" + b : "");
+        }
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * コマンドラインの設定（--名前=値）
+     ***********************************************************************************/
+    static final class Options {
+        Path root; // 共有フォルダーの代わりのルートディレクトリ
+        Latency latency = Latency.parse("fixed:100"); // 応答の遅延の分布
+        double slow; // 遅い応答の確率
+        long slowMillis = 10_000; // 遅い応答で加える遅延（ミリ秒）
+        double missing; // 応答しない確率
+        double partial; // 書きかけの応答の確率
+        long partialGapMillis = 500; // 書きかけの応答の前半と後半の間隔（ミリ秒）
+        double duplicate; // 重複した応答の確率
+        int threads = 4; // 応答を書き込むスレッド数
+        long reportSeconds = 5; // 途中経過の出力間隔（秒）
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) throw new IllegalArgumentException("unknown argument: " + arg);
+                String name = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (name) {
+                    case "root": o.root = Paths.get(value); break;
+                    case "latency": o.latency = Latency.parse(value); break;
+                    case "slow": o.slow = Double.parseDouble(value); break;
+                    case "slowms": o.slowMillis = Long.parseLong(value); break;
+                    case "missing": o.missing = Double.parseDouble(value); break;
+                    case "partial": o.partial = Double.parseDouble(value); break;
+                    case "partialgap": o.partialGapMillis = Long.parseLong(value); break;
+                    case "duplicate": o.duplicate = Double.parseDouble(value); break;
+                    case "threads": o.threads = Integer.parseInt(value); break;
+                    case "report": o.reportSeconds = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("unknown option: --" + name);
+                }
+            }
+            if (o.root == null) throw new IllegalArgumentException("--root is required");
+            if (o.slow + o.missing + o.partial + o.duplicate > 1) throw new IllegalArgumentException("fault probabilities exceed 1");
+            return o;
+        }
+
+        // 要求ごとの障害を選ぶ
+        Fault pick(Random random) {
+            double r = random.nextDouble();
+            if ((r -= slow) < 0) return Fault.SLOW;
+            if ((r -= missing) < 0) return Fault.MISSING;
+            if ((r -= partial) < 0) return Fault.PARTIAL;
+            if ((r -= duplicate) < 0) return Fault.DUPLICATE;
+            return Fault.NONE;
+        }
+    }
+
+    private final Options options;
+    private final Path folder;
+    private final ScheduledExecutorService executor;
+    private final Set<String> accepted = ConcurrentHashMap.newKeySet(); // 応答待ち（受け付け済み）の要求ファイル名
+
+    private final AtomicLong received = new AtomicLong(); // 受け付けた要求
+    private final AtomicLong answered = new AtomicLong(); // 応答した要求
+    private final AtomicLong[] faults = new AtomicLong[Fault.values().length]; // 障害ごとの件数
+    private final AtomicLong errors = new AtomicLong(); // 読み込み・書き込みエラー
+    private final LatencyHistogram delay = new LatencyHistogram(); // 受け付けから応答の書き込みまで
+
+    SopResponder(Options options) throws IOException {
+        this.options = options;
+        this.folder = options.root.resolve(RESPONSEFOLDER);
+        Files.createDirectories(folder);
+        for (int i = 0; i < faults.length; i++) faults[i] = new AtomicLong();
+        this.executor = Executors.newScheduledThreadPool(options.threads, r -> {
+            Thread t = new Thread(r, "sop-responder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /***********************************************************************************
+     * <目的>
+     * フォルダーの監視を開始し、要求ファイルに応答し続ける（終了しない）
+     ***********************************************************************************/
+    void run() throws IOException, InterruptedException {
+        long reportNanos = TimeUnit.SECONDS.toNanos(Math.max(1, options.reportSeconds));
+        executor.scheduleAtFixedRate(() -> System.out.println(report()), reportNanos, reportNanos, TimeUnit.NANOSECONDS);
+
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            rescan(); // 監視の開始前に作成された要求ファイル
+            while (true) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else {
+                        accept(((Path) event.context()).getFileName().toString());
+                    }
+                }
+                if (!key.reset()) throw new IOException("folder is no longer accessible: " + folder);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // 終了
+        }
+    }
+
+    // フォルダーの一覧から未受け付けの要求ファイルを探す
+    private void rescan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, "*" + EXTENSION)) {
+            for (Path file : files) {
+                accept(file.getFileName().toString());
+            }
+        }
+    }
+
+    // 要求ファイルを受け付け、遅延の後に応答する
+    private void accept(String name) {
+        if (!name.endsWith(EXTENSION) || name.endsWith(RESPONSE_SUFFIX)) return;
+        if (!accepted.add(name)) return; // 作成と書き込みの両方のイベントで受け付けない
+        long acceptedNanos = System.nanoTime();
+        long latency = options.latency.sample(ThreadLocalRandom.current());
+        executor.schedule(() -> respond(name, acceptedNanos), latency, TimeUnit.MILLISECONDS);
+    }
+
+    // 要求ファイルを読み込んで削除し、障害を選んで応答する
+    private void respond(String name, long acceptedNanos) {
+        Path request = folder.resolve(name);
+        try {
+            String content = read(request);
+            if (content == null) return; // 応答済みの要求ファイルの遅れたイベント
+            Files.deleteIfExists(request);
+            received.incrementAndGet();
+
+            Fault fault = options.pick(ThreadLocalRandom.current());
+            faults[fault.ordinal()].incrementAndGet();
+            if (fault == Fault.MISSING) return;
+            byte[] body = body(content);
+            Path response = folder.resolve(name.substring(0, name.length() - EXTENSION.length()) + RESPONSE_SUFFIX);
+            if (fault == Fault.SLOW) {
+                executor.schedule(() -> write(response, body, fault, acceptedNanos), options.slowMillis, TimeUnit.MILLISECONDS);
+            } else {
+                write(response, body, fault, acceptedNanos);
+            }
+        } catch (IOException | InterruptedException e) {
+            errors.incrementAndGet();
+        } finally {
+            accepted.remove(name);
+        }
+    }
+
+    // 障害に応じて応答ファイルを書き込む
+    private void write(Path response, byte[] body, Fault fault, long acceptedNanos) {
+        try {
+            switch (fault) {
+                case PARTIAL:
+                    writePartial(response, body);
+                    break;
+                case DUPLICATE:
+                    writeAtomically(response, body);
+                    executor.schedule(() -> {
+                        try {
+                            writeAtomically(response, body);
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                    }, options.partialGapMillis, TimeUnit.MILLISECONDS);
+                    break;
+                default:
+                    writeAtomically(response, body);
+                    break;
+            }
+            delay.record(System.nanoTime() - acceptedNanos);
+            answered.incrementAndGet();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    // 要求ファイルを読み込む（作成直後で空の場合は少し待って再試行する。存在しない場合はnull）
+    private static String read(Path request) throws IOException, InterruptedException {
+        for (int i = 0; ; i++) {
+            byte[] data;
+            try {
+                data = Files.readAllBytes(request);
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            if (data.length > 0 || i == READ_RETRIES) return new String(data, StandardCharsets.UTF_8);
+            TimeUnit.MILLISECONDS.sleep(READ_RETRY_MILLIS);
+        }
+    }
+
+    // 応答の内容：状態の行、要求の行ごとの結果、終端の行
+    private static byte[] body(String request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ResponseParser.OK).append('\n');
+        for (String line : request.split("\r?\n")) {
+            if (line.isEmpty()) continue;
+            sb.append(ResponseParser.OK).append('\t').append(line).append('\n');
+        }
+        sb.append(ResponseParser.END).append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // 一時ファイルに書き込んでから名前を変更する
+    private static void writeAtomically(Path response, byte[] body) throws IOException {
+        Path tmp = response.resolveSibling("." + response.getFileName() + ".tmp");
+        Files.write(tmp, body);
+        Files.move(tmp, response, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 応答ファイル名に直接前半だけを書き込み、間隔を空けて残りを書き込む
+    private void writePartial(Path response, byte[] body) throws IOException {
+        int half = body.length / 2;
+        try (OutputStream out = Files.newOutputStream(response)) {
+            out.write(body, 0, half);
+        }
+        executor.schedule(() -> {
+            try (OutputStream out = Files.newOutputStream(response, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                out.write(body, half, body.length - half);
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+        }, options.partialGapMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // 途中経過
+    private String report() {
+        LatencyHistogram.Snapshot s = delay.snapshot();
+        return String.format(Locale.US,
+                "received %d answered %d waiting %d | delay ms p50 %.0f p95 %.0f p99 %.0f max %.0f"
+                        + " | slow %d missing %d partial %d duplicate %d errors %d",
+                received.get(), answered.get(), accepted.size(), s.p50Millis, s.p95Millis, s.p99Millis, s.maxMillis,
+                faults[Fault.SLOW.ordinal()].get(), faults[Fault.MISSING.ordinal()].get(),
+                faults[Fault.PARTIAL.ordinal()].get(), faults[Fault.DUPLICATE.ordinal()].get(), errors.get());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: SopResponder --root=DIR [--latency=fixed:100|uniform:MIN:MAX|exp:MEAN|lognormal:MEDIAN:SIGMA]"
+                    + " [--slow=P] [--slowms=10000] [--missing=P] [--partial=P] [--partialgap=500] [--duplicate=P]"
+                    + " [--threads=4] [--report=5]");
+            System.exit(2);
+            return;
+        }
+        System.out.println("responding in " + options.root.resolve(RESPONSEFOLDER) + " with latency " + options.latency);
+        new SopResponder(options).run();
+    }
+}